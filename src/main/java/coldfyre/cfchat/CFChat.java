@@ -17,6 +17,13 @@ public class CFChat extends JavaPlugin {
 	@Override
 	public void onEnable() { manager = new CFManager(this); }
 	
+	/**
+	 * Gets the Main Manager of this plugin.
+	 * 
+	 * @return {@link CFManager}
+	 */
+	public CFManager getManager() { return manager; }
+	
 	@Override
 	public void onDisable() {
 		manager.disable();
@@ -0,0 +1,212 @@
+package coldfyre.cfchat.channels;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.bukkit.entity.Player;
+
+import coldfyre.cfchat.channels.ChatChannel.Type;
+import coldfyre.cfchat.configuration.ConfigMain;
+import coldfyre.cfchat.manager.PermissionService;
+
+/**
+ * Holds the channels of the plugin; the main chat, the staff chat and the chat of each group. The members of each
+ * channel are kept within the channel itself; staff are added whenever their permissions are refreshed, as are the
+ * players spying on the group chats ('cfchat.spy'), and every player is removed from all channels when they
+ * leave.</br></br>
+ *
+ * Each player also has the channel their chat messages are sent to, set by commands such as '/staff'. Players that
+ * have not set a channel chat within the main chat.
+ *
+ * @author Sommod
+ * @version 1.0
+ *
+ */
+public class ChannelManager {
+
+	private PermissionService permissionService;
+	private ChatChannel publicChannel, staffChannel;
+	private Map<String, ChatChannel> groupChannels;
+	private Map<UUID, ChatChannel> focus;
+	private Set<Player> spies;
+
+	private volatile boolean staffEnabled;
+	private volatile String groupFormat;
+	private volatile boolean groupFiltered;
+
+	/**
+	 * Creates the channels of the plugin.
+	 *
+	 * @param config - Main Config
+	 * @param permissionService - Service of the permission snapshots
+	 */
+	public ChannelManager(ConfigMain config, PermissionService permissionService) {
+		this.permissionService = permissionService;
+		publicChannel = new ChatChannel(Type.PUBLIC, "Server", null, false);
+		staffChannel = new ChatChannel(Type.STAFF, "Staff", config.getStaffFormat(), config.isStaffFilterEnabled());
+		groupChannels = new ConcurrentHashMap<String, ChatChannel>();
+		focus = new ConcurrentHashMap<UUID, ChatChannel>();
+		spies = ConcurrentHashMap.newKeySet();
+		reload(config);
+	}
+
+	/**
+	 * Reads the formats and filter options of the channels from the config. Players focused on the staff chat are
+	 * moved back to the main chat if the staff chat has been disabled.
+	 *
+	 * @param config - Main Config
+	 */
+	public void reload(ConfigMain config) {
+		staffEnabled = config.isStaffEnabled();
+		staffChannel.setFormat(config.getStaffFormat());
+		staffChannel.setFiltered(config.isStaffFilterEnabled());
+		groupFormat = config.getGroupOptionFormat();
+		groupFiltered = config.isGroupFilterEnabled();
+
+		for(ChatChannel channel : groupChannels.values())
+			channel.setFiltered(groupFiltered);
+
+		if(!staffEnabled)
+			focus.values().remove(staffChannel);
+	}
+
+	/**
+	 * Gets the channel of the main chat.
+	 *
+	 * @return ChatChannel
+	 */
+	public ChatChannel getPublicChannel() { return publicChannel; }
+
+	/**
+	 * Gets the channel of the staff chat.
+	 *
+	 * @return ChatChannel
+	 */
+	public ChatChannel getStaffChannel() { return staffChannel; }
+
+	/**
+	 * Checks if the staff chat is enabled within the config.
+	 *
+	 * @return True - if enabled
+	 */
+	public boolean isStaffEnabled() { return staffEnabled; }
+
+	/**
+	 * Gets the channel of the group with the given name, creating it if it does not exist yet. A new channel is
+	 * spied on by every player with 'cfchat.spy' right away.
+	 *
+	 * @param group - Name of group
+	 * @return ChatChannel
+	 */
+	public ChatChannel getGroupChannel(String group) {
+		return groupChannels.computeIfAbsent(group.toLowerCase(), key -> {
+			ChatChannel channel = new ChatChannel(Type.GROUP, group, groupFormat, groupFiltered);
+
+			for(Player spy : spies)
+				channel.addSpy(spy);
+
+			return channel;
+		});
+	}
+
+	/**
+	 * Sets the format of the group's channel, such as through '/group option format'. The compiled template of the
+	 * channel is replaced; an empty format uses the default group format of the config.
+	 *
+	 * @param group - Name of group
+	 * @param format - Format of the group, or NULL
+	 */
+	public void setGroupFormat(String group, String format) { getGroupChannel(group).setFormat(format == null || format.isEmpty() ? groupFormat : format); }
+
+	/**
+	 * Removes the channel of the group, such as when the group is deleted. Players focused on the channel are moved
+	 * back to the main chat.
+	 *
+	 * @param group - Name of group
+	 */
+	public void removeGroupChannel(String group) {
+		ChatChannel channel = groupChannels.remove(group.toLowerCase());
+
+		if(channel != null)
+			focus.values().remove(channel);
+	}
+
+	/**
+	 * Gets every channel; the main chat, the staff chat, then the group chats.
+	 *
+	 * @return List of channels
+	 */
+	public List<ChatChannel> getChannels() {
+		List<ChatChannel> channels = new ArrayList<ChatChannel>();
+
+		channels.add(publicChannel);
+		channels.add(staffChannel);
+		channels.addAll(groupChannels.values());
+		return channels;
+	}
+
+	/**
+	 * Gets the channel the chat messages of the player are sent to.
+	 *
+	 * @param player - Player
+	 * @return Channel of the player
+	 */
+	public ChatChannel getFocus(Player player) { return focus.getOrDefault(player.getUniqueId(), publicChannel); }
+
+	/**
+	 * Sets the channel the chat messages of the player are sent to.
+	 *
+	 * @param player - Player
+	 * @param channel - Channel, or NULL for the main chat
+	 */
+	public void setFocus(Player player, ChatChannel channel) {
+		if(channel == null || channel == publicChannel)
+			focus.remove(player.getUniqueId());
+		else
+			focus.put(player.getUniqueId(), channel);
+	}
+
+	/**
+	 * Adds the player to, or removes them from, the staff chat and the spies of the group chats by their current
+	 * permissions. This is run whenever the permissions of the player change.
+	 *
+	 * @param player - Player
+	 */
+	public void refresh(Player player) {
+		if(permissionService.has(player, PermissionService.STAFF_USE))
+			staffChannel.join(player);
+		else {
+			staffChannel.leave(player);
+			focus.remove(player.getUniqueId(), staffChannel);
+		}
+
+		if(permissionService.has(player, PermissionService.SPY)) {
+			if(spies.add(player)) {
+				for(ChatChannel channel : groupChannels.values())
+					channel.addSpy(player);
+			}
+		} else if(spies.remove(player)) {
+			for(ChatChannel channel : groupChannels.values())
+				channel.removeSpy(player);
+		}
+	}
+
+	/**
+	 * Removes the player from every channel, such as when they leave the server.
+	 *
+	 * @param player - Player
+	 */
+	public void remove(Player player) {
+		focus.remove(player.getUniqueId());
+		spies.remove(player);
+
+		for(ChatChannel channel : getChannels()) {
+			channel.leave(player);
+			channel.removeSpy(player);
+		}
+	}
+}
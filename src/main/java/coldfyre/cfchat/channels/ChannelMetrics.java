@@ -0,0 +1,78 @@
+package coldfyre.cfchat.channels;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of the messages sent through a single {@link ChatChannel}; how many messages, how many players they were
+ * delivered to, and how long each took from being handed to the {@link ChatFanout} until the last player was sent it.
+ * The counters may be updated from any thread.
+ *
+ * @author Sommod
+ * @version 1.0
+ *
+ */
+public class ChannelMetrics {
+
+	private final LongAdder messages;
+	private final LongAdder deliveries;
+	private final LongAdder nanos;
+	private final AtomicLong maxNanos;
+
+	ChannelMetrics() {
+		messages = new LongAdder();
+		deliveries = new LongAdder();
+		nanos = new LongAdder();
+		maxNanos = new AtomicLong();
+	}
+
+	// Counts one sent message
+	void record(int delivered, long time) {
+		messages.increment();
+		deliveries.add(delivered);
+		nanos.add(time);
+		maxNanos.accumulateAndGet(time, Math::max);
+	}
+
+	/**
+	 * Gets the number of messages sent through the channel.
+	 *
+	 * @return Number of messages
+	 */
+	public long getMessages() { return messages.sum(); }
+
+	/**
+	 * Gets the number of times a message was sent to a player, counting every player of every message.
+	 *
+	 * @return Number of deliveries
+	 */
+	public long getDeliveries() { return deliveries.sum(); }
+
+	/**
+	 * Gets the average time taken to send a message to all of it's players.
+	 *
+	 * @return Average time in microseconds
+	 */
+	public long getAverageMicros() {
+		long count = messages.sum();
+
+		return count == 0 ? 0 : nanos.sum() / count / 1000;
+	}
+
+	/**
+	 * Gets the longest time taken to send a message to all of it's players.
+	 *
+	 * @return Longest time in microseconds
+	 */
+	public long getMaxMicros() { return maxNanos.get() / 1000; }
+
+	/**
+	 * Sets all counters back to zero.
+	 */
+	public void reset() {
+		messages.reset();
+		deliveries.reset();
+		nanos.reset();
+		maxNanos.set(0);
+	}
+}
@@ -0,0 +1,161 @@
+package coldfyre.cfchat.channels;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.bukkit.entity.Player;
+
+/**
+ * A channel messages are sent through; the main chat, the staff chat, or the chat of a group. Each channel keeps the
+ * set of online players that are within it, and the set of online players spying on it, so the recipients of a message
+ * are read straight from the channel rather than found by looking at every player online. The main chat has no
+ * members; it's recipients are those of the chat event.</br></br>
+ *
+ * The format of a channel is written with the placeholders '%dis%' (display name), '%name%' (player name), '%msg%'
+ * (message), '%group%' (group name) and '%rank%' (group rank), and may use '&' color codes. The format is compiled
+ * into a {@link MessageTemplate} when set, and the template is kept until the format is changed.
+ *
+ * @author Sommod
+ * @version 1.0
+ *
+ */
+public class ChatChannel {
+
+	public enum Type {
+		PUBLIC, STAFF, GROUP;
+	}
+
+	private final Type type;
+	private final String name;
+	private final Set<Player> members;
+	private final Set<Player> spies;
+	private final ChannelMetrics metrics;
+
+	private volatile MessageTemplate template;
+	private volatile boolean filtered;
+
+	/**
+	 * Creates a new channel without any members.
+	 *
+	 * @param type - Type of channel
+	 * @param name - Name of channel
+	 * @param format - Format of the channel messages
+	 * @param filtered - If the blacklist filter applies to this channel
+	 */
+	ChatChannel(Type type, String name, String format, boolean filtered) {
+		this.type = type;
+		this.name = name;
+		this.filtered = filtered;
+		members = ConcurrentHashMap.newKeySet();
+		spies = ConcurrentHashMap.newKeySet();
+		metrics = new ChannelMetrics();
+		setFormat(format);
+	}
+
+	/**
+	 * Gets the type of this channel.
+	 *
+	 * @return Type
+	 */
+	public Type getType() { return type; }
+
+	/**
+	 * Gets the name of this channel. For groups, this is the name of the group.
+	 *
+	 * @return Name
+	 */
+	public String getName() { return name; }
+
+	/**
+	 * Gets the online players within this channel. The returned set is read-only.
+	 *
+	 * @return Members
+	 */
+	public Set<Player> getMembers() { return Collections.unmodifiableSet(members); }
+
+	/**
+	 * Gets the online players spying on this channel. The returned set is read-only.
+	 *
+	 * @return Spies
+	 */
+	public Set<Player> getSpies() { return Collections.unmodifiableSet(spies); }
+
+	/**
+	 * Adds the player to this channel.
+	 *
+	 * @param player - Player
+	 */
+	public void join(Player player) { members.add(player); }
+
+	/**
+	 * Removes the player from this channel.
+	 *
+	 * @param player - Player
+	 */
+	public void leave(Player player) { members.remove(player); }
+
+	/**
+	 * Checks if the player is within this channel.
+	 *
+	 * @param player - Player
+	 * @return True - if a member
+	 */
+	public boolean isMember(Player player) { return members.contains(player); }
+
+	/**
+	 * Adds the player as a spy of this channel; they are sent the messages without being a member.
+	 *
+	 * @param player - Player
+	 */
+	public void addSpy(Player player) { spies.add(player); }
+
+	/**
+	 * Removes the player as a spy of this channel.
+	 *
+	 * @param player - Player
+	 */
+	public void removeSpy(Player player) { spies.remove(player); }
+
+	/**
+	 * Gets the format of this channel, as it was written.
+	 *
+	 * @return Format
+	 */
+	public String getFormat() { return template.getSource(); }
+
+	/**
+	 * Gets the compiled format of this channel.
+	 *
+	 * @return MessageTemplate
+	 */
+	public MessageTemplate getTemplate() { return template; }
+
+	/**
+	 * Sets the format of this channel, replacing the compiled template.
+	 *
+	 * @param format - Format using the placeholders of this channel
+	 */
+	public void setFormat(String format) { template = MessageTemplate.compile(format == null ? "%dis%: %msg%" : format); }
+
+	/**
+	 * Checks if the blacklist filter applies to this channel.
+	 *
+	 * @return True - if filtered
+	 */
+	public boolean isFiltered() { return filtered; }
+
+	/**
+	 * Sets if the blacklist filter applies to this channel.
+	 *
+	 * @param filtered - True if filtered
+	 */
+	public void setFiltered(boolean filtered) { this.filtered = filtered; }
+
+	/**
+	 * Gets the counters of the messages sent through this channel.
+	 *
+	 * @return ChannelMetrics
+	 */
+	public ChannelMetrics getMetrics() { return metrics; }
+}
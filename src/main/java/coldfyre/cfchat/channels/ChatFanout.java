@@ -0,0 +1,223 @@
+package coldfyre.cfchat.channels;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.bukkit.ChatColor;
+import org.bukkit.entity.Player;
+
+import coldfyre.cfchat.channels.ChatChannel.Type;
+import coldfyre.cfchat.configuration.ConfigAlternateFilter.Words;
+import coldfyre.cfchat.filter.FilterService;
+import coldfyre.cfchat.filter.FilterVerdict;
+import coldfyre.cfchat.manager.PermissionService;
+import coldfyre.cfchat.manager.PlayerManager;
+import coldfyre.cfchat.players.IgnoreIndex;
+import coldfyre.cfchat.players.PlayerConfig;
+import net.md_5.bungee.api.chat.BaseComponent;
+
+/**
+ * Sends the messages of every channel; the main chat, the staff chat, group chats and the spies of those chats all go
+ * through {@link #dispatch(ChatChannel, Player, String, MessageTemplate, Set)}. Each message is filtered once, then the
+ * recipients are split by which version of the message they see; the full message, the message with it's text hidden
+ * (selective words of the alternate filter) or the message as seen by a spy. Each version is formatted, colored and
+ * turned into chat components once, and the same components are then sent to every player of that version in a single
+ * pass. The work done for each recipient is only the checks of the ignore lists and the sending itself. Items shown
+ * with the item keyword are built by the {@link ItemDisplayRenderer}.</br></br>
+ *
+ * The time taken by each message is counted within the {@link ChannelMetrics} of it's channel. Messages may be sent
+ * from any thread, as with the chat event itself.
+ *
+ * @author Sommod
+ * @version 1.0
+ *
+ */
+public class ChatFanout {
+
+	// Text shown in place of a message with selective words
+	private static final String HIDDEN = "######";
+	private static final String SPY_PREFIX = ChatColor.GRAY + "[Spy] " + ChatColor.RESET;
+
+	// Most chat event formats kept at once
+	private static final int MAX_TEMPLATES = 32;
+
+	private FilterService filterService;
+	private PlayerManager playerManager;
+	private PermissionService permissionService;
+	private ItemDisplayRenderer itemRenderer;
+
+	// Templates of the chat event formats, keyed by the format; other chat plugins may change the format per player
+	private final Map<String, MessageTemplate> eventTemplates;
+
+	/**
+	 * Creates a new fan-out of the channel messages.
+	 *
+	 * @param filterService - Service of the blacklist filter
+	 * @param playerManager - Manager of player data
+	 * @param permissionService - Service of the permission snapshots
+	 * @param itemRenderer - Renderer of the shown items
+	 */
+	public ChatFanout(FilterService filterService, PlayerManager playerManager, PermissionService permissionService, ItemDisplayRenderer itemRenderer) {
+		this.filterService = filterService;
+		this.playerManager = playerManager;
+		this.permissionService = permissionService;
+		this.itemRenderer = itemRenderer;
+		eventTemplates = new ConcurrentHashMap<String, MessageTemplate>();
+	}
+
+	/**
+	 * Sends the message to the members and spies of the channel, using the format of the channel.
+	 *
+	 * @param channel - Channel to send through
+	 * @param sender - Player sending the message
+	 * @param message - Message
+	 * @return True - if sent, false if stopped by the filter
+	 */
+	public boolean send(ChatChannel channel, Player sender, String message) { return dispatch(channel, sender, message, channel.getTemplate(), channel.getMembers()); }
+
+	/**
+	 * Gets the template of the format of a chat event. The templates of recent formats are kept, so each format is only
+	 * compiled once. Should too many different formats be seen, then the kept templates are cleared.
+	 *
+	 * @param format - Format of a chat event
+	 * @return MessageTemplate
+	 */
+	public MessageTemplate getEventTemplate(String format) {
+		MessageTemplate template = eventTemplates.get(format);
+
+		if(template != null)
+			return template;
+
+		if(eventTemplates.size() >= MAX_TEMPLATES)
+			eventTemplates.clear();
+
+		template = MessageTemplate.fromEventFormat(format);
+		eventTemplates.put(format, template);
+		return template;
+	}
+
+	/**
+	 * Sends the message to the given recipients and the spies of the channel. The sender is always sent their own
+	 * message, and players ignoring the sender (or the main chat) are skipped.
+	 *
+	 * @param channel - Channel to send through
+	 * @param sender - Player sending the message
+	 * @param message - Message
+	 * @param template - Format of the message
+	 * @param recipients - Players to send to
+	 * @return True - if sent, false if stopped by the filter
+	 */
+	public boolean dispatch(ChatChannel channel, Player sender, String message, MessageTemplate template, Set<Player> recipients) {
+		long start = System.nanoTime();
+		boolean selective = false;
+
+		// The blacklist of the main chat is applied by the FilterListener, so other plugins see the filtered message
+		if(filterService.isAlternateEnabled() && (channel.getType() == Type.PUBLIC || channel.isFiltered())) {
+			Words category = filterService.classify(message);
+
+			if(category == Words.REJECT) {
+				respond(sender);
+				return false;
+			}
+
+			selective = category == Words.SELECTIVE;
+		} else if(filterService.isEnabled() && channel.isFiltered() && !permissionService.has(sender, PermissionService.BLACKLIST_EXEMPT)) {
+			FilterVerdict verdict = filterService.check(message);
+
+			if(verdict.getAction() == FilterVerdict.Action.BLOCKED) {
+				respond(sender);
+				return false;
+			}
+
+			if(verdict.getAction() == FilterVerdict.Action.MASKED) {
+				message = verdict.getMessage();
+				respond(sender);
+			}
+		}
+
+		BaseComponent item = null;
+
+		if(itemRenderer.isEnabled() && itemRenderer.hasKeyword(message) && permissionService.has(sender, PermissionService.ITEM_DISPLAY)) {
+			item = itemRenderer.render(sender);
+			message = itemRenderer.replaceKeyword(message, item != null);
+		}
+
+		IgnoreIndex ignoreIndex = playerManager.getIgnoreIndex();
+		boolean exempt = permissionService.has(sender, PermissionService.EXEMPT);
+		Set<Player> ignorers = exempt ? Collections.<Player>emptySet() : ignoreIndex.getIgnorers(sender.getUniqueId());
+		Set<Player> serverIgnorers = exempt || channel.getType() != Type.PUBLIC ? Collections.<Player>emptySet() : ignoreIndex.getServerIgnorers();
+
+		List<Player> full = new ArrayList<Player>(recipients.size() + 1);
+		List<Player> hidden = new ArrayList<Player>();
+		List<Player> spied = new ArrayList<Player>();
+
+		full.add(sender);
+
+		for(Player recipient : recipients) {
+			if(recipient == sender || ignorers.contains(recipient) || !isListening(channel, recipient, serverIgnorers))
+				continue;
+
+			if(selective && !isSelectiveView(recipient))
+				hidden.add(recipient);
+			else
+				full.add(recipient);
+		}
+
+		for(Player spy : channel.getSpies()) {
+			if(spy != sender && !recipients.contains(spy) && !ignorers.contains(spy))
+				spied.add(spy);
+		}
+
+		String text = render(channel, sender, message, template);
+
+		deliver(full, text, item);
+		deliver(hidden, hidden.isEmpty() ? null : render(channel, sender, HIDDEN, template), null);
+		deliver(spied, spied.isEmpty() ? null : SPY_PREFIX + text, item);
+
+		channel.getMetrics().record(full.size() + hidden.size() + spied.size(), System.nanoTime() - start);
+		return true;
+	}
+
+	// Checks if the recipient still receives messages of the channel; staff may have lost their permission since joining
+	private boolean isListening(ChatChannel channel, Player recipient, Set<Player> serverIgnorers) {
+		if(channel.getType() == Type.STAFF)
+			return permissionService.has(recipient, PermissionService.STAFF_USE);
+
+		return !serverIgnorers.contains(recipient) || !permissionService.has(recipient, PermissionService.IGNORE_SERVER);
+	}
+
+	// Checks if the recipient sees selective words of the alternate filter
+	private boolean isSelectiveView(Player recipient) {
+		PlayerConfig config = playerManager.getPlayerConfig(recipient);
+
+		return config != null && config.isSelectiveView() && permissionService.has(recipient, PermissionService.SELECTIVE);
+	}
+
+	// Formats the message once for every recipient of a version
+	private String render(ChatChannel channel, Player sender, String message, MessageTemplate template) {
+		return template.render(sender.getDisplayName(), message, sender.getName(), channel.getName(), "");
+	}
+
+	// Sends the same text to each of the players
+	private void deliver(List<Player> players, String text, BaseComponent item) {
+		if(players.isEmpty())
+			return;
+
+		BaseComponent[] components = ItemDisplayRenderer.toComponents(text, item);
+
+		for(Player player : players)
+			player.spigot().sendMessage(components);
+	}
+
+	// Sends the filter response to the player, if enabled
+	private void respond(Player player) {
+		String response = filterService.getResponse();
+
+		if(response != null)
+			player.sendMessage(ChatColor.translateAlternateColorCodes('&', response));
+	}
+}
@@ -0,0 +1,314 @@
+package coldfyre.cfchat.channels;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.bukkit.ChatColor;
+import org.bukkit.Material;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+
+import coldfyre.cfchat.CFChat;
+import coldfyre.cfchat.configuration.ConfigMain;
+import coldfyre.cfchat.configuration.ConfigMain.ItemDisplayType;
+import net.md_5.bungee.api.chat.BaseComponent;
+import net.md_5.bungee.api.chat.HoverEvent;
+import net.md_5.bungee.api.chat.ItemTag;
+import net.md_5.bungee.api.chat.TextComponent;
+import net.md_5.bungee.api.chat.hover.content.Item;
+
+/**
+ * Builds the chat component shown in place of the item keyword (such as '[i]'); the text set by the display type of
+ * the config, which shows the item held by the sender when hovered over. Building the hover means writing out all of
+ * the item's data, so the built components are kept within a cache by the item's type, amount and meta. Players showing
+ * the same item again reuse the built component, and every recipient of a message is sent the same copy of it.</br></br>
+ *
+ * The keyword is found with a plain search of the message; within the message it is swapped for a marker character,
+ * which is where the component is placed once the message has been formatted. The cache holds the most recently shown
+ * items, and is cleared when reloaded.</br></br>
+ *
+ * The inventory of a player may only be read on the main thread, so messages sent from the chat thread have the held
+ * item copied by a task on the main thread. The key of the cache is made from that copy, with the hash of the meta
+ * worked out there as well; the chat thread only compares copies no one else holds.
+ *
+ * @author Sommod
+ * @version 1.0
+ *
+ */
+public class ItemDisplayRenderer {
+
+	// Placed within the message where the item is shown; can not be typed within chat
+	private static final char MARKER = '\u0000';
+
+	// Number of built components kept
+	private static final int CACHE_SIZE = 256;
+
+	// Milliseconds the chat thread waits for the held item to be read; the item is not shown if it takes longer
+	private static final long SNAPSHOT_TIMEOUT = 1000L;
+
+	private final CFChat plugin;
+	private final Map<ItemKey, BaseComponent> cache;
+
+	private volatile boolean enabled;
+	private volatile String keyword;
+	private volatile ItemDisplayType type;
+	private volatile String customText;
+
+	/**
+	 * Creates a new renderer using the item options of the config.
+	 *
+	 * @param plugin - Main Plugin
+	 * @param config - Main Config
+	 */
+	@SuppressWarnings("serial")
+	public ItemDisplayRenderer(CFChat plugin, ConfigMain config) {
+		this.plugin = plugin;
+		cache = new LinkedHashMap<ItemKey, BaseComponent>(16, 0.75F, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<ItemKey, BaseComponent> eldest) { return size() > CACHE_SIZE; }
+		};
+
+		reload(config);
+	}
+
+	/**
+	 * Reads the item options of the config. As the display type may have changed, the cache is cleared.
+	 *
+	 * @param config - Main Config
+	 */
+	public void reload(ConfigMain config) {
+		keyword = config.getItemKeyword();
+		type = config.getItemDisplayType();
+		customText = ChatColor.translateAlternateColorCodes('&', String.valueOf(config.getItemDisplayFormat()));
+		enabled = config.isItemDisplayingEnabled() && keyword != null && !keyword.isEmpty();
+
+		synchronized(cache) {
+			cache.clear();
+		}
+	}
+
+	/**
+	 * Checks if items may be shown within chat.
+	 *
+	 * @return True - if enabled
+	 */
+	public boolean isEnabled() { return enabled; }
+
+	/**
+	 * Checks if the message contains the item keyword.
+	 *
+	 * @param message - Message
+	 * @return True - if found
+	 */
+	public boolean hasKeyword(String message) { return message.indexOf(keyword) >= 0; }
+
+	/**
+	 * Marks each keyword of the message as the place to show the item, or removes the keywords if there is no item to
+	 * show.
+	 *
+	 * @param message - Message containing the keyword
+	 * @param item - True if an item is shown
+	 * @return Message with the keywords replaced
+	 */
+	public String replaceKeyword(String message, boolean item) {
+		String keyword = this.keyword;
+		StringBuilder builder = new StringBuilder(message.length());
+		int from = 0;
+
+		for(int index = message.indexOf(keyword); index >= 0; index = message.indexOf(keyword, from)) {
+			builder.append(message, from, index);
+
+			if(item)
+				builder.append(MARKER);
+
+			from = index + keyword.length();
+		}
+
+		return builder.append(message, from, message.length()).toString();
+	}
+
+	/**
+	 * Gets the component of the item held by the player, building it if it is not within the cache. The returned
+	 * component is a copy of the cached one, as messages may be sent at the same time from different threads. When
+	 * called off the main thread, this waits for the held item to be read on the main thread.
+	 *
+	 * @param player - Player showing the item
+	 * @return Component of the item, NULL if the player is not holding an item
+	 */
+	public BaseComponent render(Player player) {
+		ItemDisplayType type = this.type;
+		ItemKey key = plugin.getServer().isPrimaryThread() ? snapshot(player, type) : snapshotOnMain(player, type);
+
+		if(key == null)
+			return null;
+
+		BaseComponent component;
+
+		synchronized(cache) {
+			component = cache.get(key);
+		}
+
+		if(component == null) {
+			component = build(key, type);
+
+			synchronized(cache) {
+				cache.put(key, component);
+			}
+		}
+
+		return component.duplicate();
+	}
+
+	// Reads the held item on the main thread, waiting for it from the chat thread
+	private ItemKey snapshotOnMain(Player player, ItemDisplayType type) {
+		try {
+			return plugin.getServer().getScheduler().callSyncMethod(plugin, () -> snapshot(player, type)).get(SNAPSHOT_TIMEOUT, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		} catch (ExecutionException | TimeoutException e) {
+			return null;
+		}
+	}
+
+	// Copies what is shown of the held item. Must be called on the main thread.
+	private static ItemKey snapshot(Player player, ItemDisplayType type) {
+		ItemStack stack = player.getInventory().getItemInMainHand();
+
+		if(stack == null || stack.getType() == null || stack.getType().isAir())
+			return null;
+
+		// The meta returned is a copy, so it may be read on the chat thread afterwards
+		ItemMeta meta = stack.hasItemMeta() ? stack.getItemMeta() : null;
+
+		return new ItemKey(stack.getType(), stack.getAmount(), meta, type == ItemDisplayType.PLAYER ? player.getName() : null);
+	}
+
+	/**
+	 * Turns the formatted text into components, placing the item component at each marker.
+	 *
+	 * @param text - Formatted text
+	 * @param item - Component of the item, or NULL
+	 * @return Components of the text
+	 */
+	public static BaseComponent[] toComponents(String text, BaseComponent item) {
+		if(item == null || text.indexOf(MARKER) < 0)
+			return TextComponent.fromLegacyText(text);
+
+		List<BaseComponent> components = new ArrayList<BaseComponent>();
+		String colors = "";
+		int from = 0;
+
+		for(int index = text.indexOf(MARKER); index >= 0; index = text.indexOf(MARKER, from)) {
+			String part = colors + text.substring(from, index);
+
+			addAll(components, part);
+			components.add(item);
+			colors = ChatColor.getLastColors(part);
+			from = index + 1;
+		}
+
+		addAll(components, colors + text.substring(from));
+		return components.toArray(new BaseComponent[components.size()]);
+	}
+
+	// Adds the components of the legacy text
+	private static void addAll(List<BaseComponent> components, String text) {
+		if(text.isEmpty())
+			return;
+
+		for(BaseComponent component : TextComponent.fromLegacyText(text))
+			components.add(component);
+	}
+
+	// Builds the text and hover of the item
+	private BaseComponent build(ItemKey key, ItemDisplayType type) {
+		String text;
+
+		switch(type) {
+			case NAME:
+				text = key.meta != null && key.meta.hasDisplayName() ? key.meta.getDisplayName() : getTypeName(key.type);
+				break;
+
+			case PLAYER:
+				text = key.owner + "'s " + getTypeName(key.type);
+				break;
+
+			case ITEM:
+				text = "Item";
+				break;
+
+			default:
+				text = customText;
+				break;
+		}
+
+		TextComponent component = new TextComponent(TextComponent.fromLegacyText(text));
+
+		component.setHoverEvent(new HoverEvent(HoverEvent.Action.SHOW_ITEM, new Item(key.type.getKey().toString(), key.amount,
+				ItemTag.ofNbt(key.meta == null ? null : key.meta.getAsString()))));
+		return component;
+	}
+
+	// Name of the type, such as 'Diamond Sword'
+	private static String getTypeName(Material type) {
+		StringBuilder name = new StringBuilder();
+
+		for(String word : type.name().toLowerCase().split("_")) {
+			if(word.isEmpty())
+				continue;
+
+			if(name.length() > 0)
+				name.append(' ');
+
+			name.append(Character.toUpperCase(word.charAt(0))).append(word, 1, word.length());
+		}
+
+		return name.toString();
+	}
+
+	/**
+	 * Key of a built component; the type, amount and copied meta of the item, and the name of the player for
+	 * displays showing it. The hash is worked out when the key is made, on the main thread.
+	 *
+	 * @author Sommod
+	 * @version 1.0
+	 *
+	 */
+	private static class ItemKey {
+
+		private final Material type;
+		private final int amount;
+		private final ItemMeta meta;
+		private final String owner;
+		private final int hash;
+
+		private ItemKey(Material type, int amount, ItemMeta meta, String owner) {
+			this.type = type;
+			this.amount = amount;
+			this.meta = meta;
+			this.owner = owner;
+			hash = Objects.hash(type, amount, meta, owner);
+		}
+
+		@Override
+		public int hashCode() { return hash; }
+
+		@Override
+		public boolean equals(Object other) {
+			if(!(other instanceof ItemKey))
+				return false;
+
+			ItemKey key = (ItemKey) other;
+
+			return hash == key.hash && type == key.type && amount == key.amount && Objects.equals(owner, key.owner) && Objects.equals(meta, key.meta);
+		}
+	}
+}
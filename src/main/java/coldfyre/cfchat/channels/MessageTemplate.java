@@ -0,0 +1,204 @@
+package coldfyre.cfchat.channels;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bukkit.ChatColor;
+
+/**
+ * A message format read once into the pieces it is made of; pieces of plain text, with the color codes already
+ * translated, between the placeholders. Rendering a message is then a single pass appending each piece into a
+ * builder made exactly the size of the result, rather than a chain of replacements over the whole format.</br></br>
+ *
+ * Formats of the plugin use the placeholders '%dis%', '%msg%', '%name%', '%group%' and '%rank%' (see
+ * {@link #compile(String)}). The formats of chat events use the arguments of {@link String#format(String, Object...)}
+ * (see {@link #fromEventFormat(String)}). Templates do not change once made, and may be rendered from any thread.
+ *
+ * @author Sommod
+ * @version 1.0
+ *
+ */
+public final class MessageTemplate {
+
+	/**
+	 * Values that may be placed within a template.
+	 *
+	 * @author Sommod
+	 * @version 1.0
+	 *
+	 */
+	public enum Placeholder {
+		DISPLAY_NAME("%dis%"), MESSAGE("%msg%"), NAME("%name%"), GROUP("%group%"), RANK("%rank%");
+
+		private final String key;
+
+		private Placeholder(String key) { this.key = key; }
+
+		/**
+		 * Gets the text of this placeholder within a format.
+		 *
+		 * @return Placeholder text
+		 */
+		public String getKey() { return key; }
+	}
+
+	private static final Placeholder[] PLACEHOLDERS = Placeholder.values();
+
+	// Builder of each thread, kept between renders
+	private static final ThreadLocal<StringBuilder> BUILDER = ThreadLocal.withInitial(() -> new StringBuilder(256));
+
+	private final String source;
+	private final String[] literals;
+	private final Placeholder[] placeholders;
+	private final int literalLength;
+
+	// Format given to String.format, for event formats this template can not read
+	private final String fallback;
+
+	private MessageTemplate(String source, List<String> literals, List<Placeholder> placeholders, String fallback) {
+		int length = 0;
+
+		for(String literal : literals)
+			length += literal.length();
+
+		this.source = source;
+		this.literals = literals.toArray(new String[literals.size()]);
+		this.placeholders = placeholders.toArray(new Placeholder[placeholders.size()]);
+		this.fallback = fallback;
+		literalLength = length;
+	}
+
+	/**
+	 * Reads a format of the plugin. Color codes written with '&' are translated; color codes within the values placed
+	 * into the template are left as they are.
+	 *
+	 * @param format - Format using the placeholders of {@link Placeholder}
+	 * @return MessageTemplate
+	 */
+	public static MessageTemplate compile(String format) {
+		List<String> literals = new ArrayList<String>();
+		List<Placeholder> placeholders = new ArrayList<Placeholder>();
+		StringBuilder literal = new StringBuilder();
+
+		for(int i = 0; i < format.length();) {
+			Placeholder placeholder = format.charAt(i) == '%' ? placeholderAt(format, i) : null;
+
+			if(placeholder == null) {
+				literal.append(format.charAt(i++));
+				continue;
+			}
+
+			literals.add(ChatColor.translateAlternateColorCodes('&', literal.toString()));
+			placeholders.add(placeholder);
+			literal.setLength(0);
+			i += placeholder.getKey().length();
+		}
+
+		literals.add(ChatColor.translateAlternateColorCodes('&', literal.toString()));
+		return new MessageTemplate(format, literals, placeholders, null);
+	}
+
+	/**
+	 * Reads the format of a chat event, where the first argument is the display name and the second is the message.
+	 * Formats using anything other than '%s', '%1$s', '%2$s', '%%' and '%n' are rendered through
+	 * {@link String#format(String, Object...)} instead.
+	 *
+	 * @param format - Format of a chat event
+	 * @return MessageTemplate
+	 */
+	public static MessageTemplate fromEventFormat(String format) {
+		List<String> literals = new ArrayList<String>();
+		List<Placeholder> placeholders = new ArrayList<Placeholder>();
+		StringBuilder literal = new StringBuilder();
+		int next = 0;
+
+		for(int i = 0; i < format.length(); i++) {
+			char c = format.charAt(i);
+
+			if(c != '%') {
+				literal.append(c);
+				continue;
+			}
+
+			int argument;
+
+			if(format.startsWith("%%", i) || format.startsWith("%n", i)) {
+				literal.append(format.charAt(i + 1) == '%' ? "%" : System.lineSeparator());
+				i++;
+				continue;
+			} else if(format.startsWith("%s", i)) {
+				argument = next++;
+				i++;
+			} else if(format.startsWith("%1$s", i) || format.startsWith("%2$s", i)) {
+				argument = format.charAt(i + 1) - '1';
+				i += 3;
+			} else
+				return new MessageTemplate(format, new ArrayList<String>(), placeholders, format);
+
+			if(argument > 1)
+				return new MessageTemplate(format, new ArrayList<String>(), placeholders, format);
+
+			literals.add(literal.toString());
+			placeholders.add(argument == 0 ? Placeholder.DISPLAY_NAME : Placeholder.MESSAGE);
+			literal.setLength(0);
+		}
+
+		literals.add(literal.toString());
+		return new MessageTemplate(format, literals, placeholders, null);
+	}
+
+	/**
+	 * Gets the format this template was read from.
+	 *
+	 * @return Format
+	 */
+	public String getSource() { return source; }
+
+	/**
+	 * Places the values into this template.
+	 *
+	 * @param displayName - Display name of the sender
+	 * @param message - Message
+	 * @param name - Name of the sender
+	 * @param group - Name of the group, or the channel
+	 * @param rank - Rank of the sender within the group
+	 * @return Rendered message
+	 */
+	public String render(String displayName, String message, String name, String group, String rank) {
+		if(fallback != null)
+			return String.format(fallback, displayName, message);
+
+		String[] values = new String[PLACEHOLDERS.length];
+		int length = literalLength;
+
+		values[Placeholder.DISPLAY_NAME.ordinal()] = displayName;
+		values[Placeholder.MESSAGE.ordinal()] = message;
+		values[Placeholder.NAME.ordinal()] = name;
+		values[Placeholder.GROUP.ordinal()] = group;
+		values[Placeholder.RANK.ordinal()] = rank;
+
+		for(Placeholder placeholder : placeholders)
+			length += String.valueOf(values[placeholder.ordinal()]).length();
+
+		StringBuilder builder = BUILDER.get();
+
+		builder.setLength(0);
+		builder.ensureCapacity(length);
+		builder.append(literals[0]);
+
+		for(int i = 0; i < placeholders.length; i++)
+			builder.append(values[placeholders[i].ordinal()]).append(literals[i + 1]);
+
+		return builder.toString();
+	}
+
+	// Placeholder starting at the given position of the format, NULL if none
+	private static Placeholder placeholderAt(String format, int index) {
+		for(Placeholder placeholder : PLACEHOLDERS) {
+			if(format.startsWith(placeholder.getKey(), index))
+				return placeholder;
+		}
+
+		return null;
+	}
+}
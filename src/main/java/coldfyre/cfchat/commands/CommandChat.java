@@ -0,0 +1,414 @@
+package coldfyre.cfchat.commands;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.bukkit.ChatColor;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
+
+import com.coldfyre.api.manager.FilesManager;
+
+import coldfyre.cfchat.CFChat;
+import coldfyre.cfchat.channels.ChannelMetrics;
+import coldfyre.cfchat.channels.ChatChannel;
+import coldfyre.cfchat.manager.CFManager;
+import coldfyre.cfchat.manager.PlayerManager;
+import coldfyre.cfchat.players.BinaryPlayerStore;
+import coldfyre.cfchat.players.LogSearchIndex;
+import coldfyre.cfchat.players.PlayerConfig;
+import coldfyre.cfchat.players.PlayerLog;
+import coldfyre.cfchat.players.PlayerLog.LogType;
+import coldfyre.cfchat.players.PlayerStore;
+import coldfyre.cfchat.players.ShardedPlayerStore;
+import coldfyre.cfchat.players.YamlPlayerStore;
+
+/**
+ * Executor of the '/chat' command. Each sub-command is handled within it's own method, the
+ * arguments given to those methods still contain the sub-command names.
+ *
+ * @author Sommod
+ * @version 1.0
+ *
+ */
+public class CommandChat implements CommandExecutor {
+
+	// Number of logs shown on each page of '/chat log'
+	private static final int LOG_PAGE_SIZE = 10;
+
+	private CFChat plugin;
+
+	/**
+	 * Creates a new executor for the chat command.
+	 *
+	 * @param plugin - Main Plugin
+	 */
+	public CommandChat(CFChat plugin) { this.plugin = plugin; }
+
+	@Override
+	public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
+		if(args.length >= 1 && args[0].equalsIgnoreCase("log")) {
+			log(sender, args);
+			return true;
+		}
+
+		if(args.length >= 1 && args[0].equalsIgnoreCase("ignore")) {
+			ignore(sender, args);
+			return true;
+		}
+
+		if(args.length >= 1 && args[0].equalsIgnoreCase("selective")) {
+			selective(sender, args);
+			return true;
+		}
+
+		if(args.length >= 2 && args[0].equalsIgnoreCase("admin")) {
+			switch(args[1].toLowerCase()) {
+				case "migrate":
+					migrate(sender, args);
+					return true;
+
+				case "blacklist":
+					blacklist(sender, args);
+					return true;
+
+				case "channels":
+					channels(sender);
+					return true;
+			}
+		}
+
+		sender.sendMessage(ChatColor.RED + "Unknown command. Use '/" + label + " help' for a list of commands.");
+		return true;
+	}
+
+	// /chat ignore [player]
+	@SuppressWarnings("deprecation")
+	private void ignore(CommandSender sender, String[] args) {
+		if(!(sender instanceof Player)) {
+			sender.sendMessage(ChatColor.RED + "Only players may use this command.");
+			return;
+		}
+
+		if(!sender.hasPermission(args.length >= 2 ? "cfchat.ignore" : "cfchat.ignore.server")) {
+			sender.sendMessage(ChatColor.RED + "You do not have permission to use this command.");
+			return;
+		}
+
+		PlayerConfig config = plugin.getManager().getPlayerManager().getPlayerConfig((Player) sender);
+
+		if(args.length < 2) {
+			boolean ignoring = !config.isIgnoringServer();
+
+			config.setIgnoringServer(ignoring);
+			sender.sendMessage(ChatColor.GREEN + "You are " + (ignoring ? "now ignoring" : "no longer ignoring") + " the main chat.");
+			return;
+		}
+
+		Player online = plugin.getServer().getPlayerExact(args[1]);
+		OfflinePlayer target = online != null ? online : plugin.getServer().getOfflinePlayer(args[1]);
+
+		if(target.getUniqueId().equals(((Player) sender).getUniqueId())) {
+			sender.sendMessage(ChatColor.RED + "You can not ignore yourself.");
+			return;
+		}
+
+		String name = target.getName() == null ? args[1] : target.getName();
+
+		if(config.isIgnoring(target.getUniqueId())) {
+			config.removeIgnore(target.getUniqueId());
+			sender.sendMessage(ChatColor.GREEN + "You are no longer ignoring " + name + ".");
+		} else {
+			config.addIgnore(target.getUniqueId());
+			sender.sendMessage(ChatColor.GREEN + "You are now ignoring " + name + ".");
+		}
+	}
+
+	// /chat selective [on | off]
+	private void selective(CommandSender sender, String[] args) {
+		if(!(sender instanceof Player)) {
+			sender.sendMessage(ChatColor.RED + "Only players may use this command.");
+			return;
+		}
+
+		if(!sender.hasPermission("cfchat.selective")) {
+			sender.sendMessage(ChatColor.RED + "You do not have permission to use this command.");
+			return;
+		}
+
+		PlayerConfig config = plugin.getManager().getPlayerManager().getPlayerConfig((Player) sender);
+		boolean show = !config.isSelectiveView();
+
+		if(args.length >= 2) {
+			if(!args[1].equalsIgnoreCase("on") && !args[1].equalsIgnoreCase("off")) {
+				sender.sendMessage(ChatColor.RED + "Usage: /chat selective [on | off]");
+				return;
+			}
+
+			show = args[1].equalsIgnoreCase("on");
+		}
+
+		config.setSelectiveView(show);
+		sender.sendMessage(ChatColor.GREEN + "Selective words are now " + (show ? "shown." : "hidden."));
+	}
+
+	// /chat admin migrate <yaml | binary | sharded>
+	private void migrate(CommandSender sender, String[] args) {
+		CFManager manager = plugin.getManager();
+
+		if(!sender.hasPermission("cfchat.migrate")) {
+			sender.sendMessage(ChatColor.RED + "You do not have permission to use this command.");
+			return;
+		}
+
+		if(args.length < 3) {
+			sender.sendMessage(ChatColor.RED + "Usage: /chat admin migrate <yaml | binary | sharded>");
+			return;
+		}
+
+		String type = null;
+
+		for(String name : new String[] {YamlPlayerStore.NAME, BinaryPlayerStore.NAME, ShardedPlayerStore.NAME}) {
+			if(name.equalsIgnoreCase(args[2]))
+				type = name;
+		}
+
+		if(type == null) {
+			sender.sendMessage(ChatColor.RED + "Unknown storage type: " + args[2]);
+			return;
+		}
+
+		if(type.equals(manager.getPlayerManager().getStore().getName())) {
+			sender.sendMessage(ChatColor.RED + "Player data is already stored as " + type + ".");
+			return;
+		}
+
+		PlayerStore target;
+
+		// The storage may find files within the data folder it can not use, such as shards of another count
+		try {
+			target = manager.getPlayerManager().createStore(manager, type);
+		} catch (RuntimeException e) {
+			FilesManager.LogException(plugin, e);
+			sender.sendMessage(ChatColor.RED + "Could not open the " + type + " storage: " + e.getMessage());
+			return;
+		}
+
+		sender.sendMessage(ChatColor.GRAY + "Moving player data into " + target.getName() + " storage...");
+
+		plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
+			long start = System.currentTimeMillis();
+			int count;
+
+			try {
+				count = manager.getPlayerManager().migrate(target);
+			} catch (RuntimeException e) {
+				target.close();
+				FilesManager.LogException(plugin, e);
+				plugin.getServer().getScheduler().runTask(plugin, () -> sender.sendMessage(ChatColor.RED + "Could not move the player data: " + e.getMessage()));
+				return;
+			}
+
+			long time = System.currentTimeMillis() - start;
+
+			plugin.getServer().getScheduler().runTask(plugin, () -> {
+				YamlConfiguration config = YamlConfiguration.loadConfiguration(manager.getFilesManager().getFile("config_file"));
+
+				config.set("storage.type", target.getName());
+
+				try {
+					config.save(manager.getFilesManager().getFile("config_file"));
+				} catch (IOException e) {
+					FilesManager.LogException(plugin, e);
+				}
+
+				sender.sendMessage(ChatColor.GREEN + "Moved " + count + " players into " + target.getName() + " storage in " + time + "ms.");
+			});
+		});
+	}
+
+	// /chat admin channels
+	private void channels(CommandSender sender) {
+		if(!sender.hasPermission("cfchat.channels")) {
+			sender.sendMessage(ChatColor.RED + "You do not have permission to use this command.");
+			return;
+		}
+
+		sender.sendMessage(ChatColor.GOLD + "---- Channels ----");
+
+		for(ChatChannel channel : plugin.getManager().getChannelManager().getChannels()) {
+			ChannelMetrics metrics = channel.getMetrics();
+
+			sender.sendMessage(ChatColor.YELLOW + channel.getName() + ChatColor.GRAY + " (" + channel.getType().name().toLowerCase() + "): " + metrics.getMessages()
+					+ " messages, " + metrics.getDeliveries() + " sent, " + metrics.getAverageMicros() + "us average, " + metrics.getMaxMicros() + "us max");
+		}
+	}
+
+	// /chat admin blacklist <add | remove> <word>
+	private void blacklist(CommandSender sender, String[] args) {
+		if(args.length < 4 || !(args[2].equalsIgnoreCase("add") || args[2].equalsIgnoreCase("remove"))) {
+			sender.sendMessage(ChatColor.RED + "Usage: /chat admin blacklist <add | remove> <word>");
+			return;
+		}
+
+		boolean add = args[2].equalsIgnoreCase("add");
+
+		if(!sender.hasPermission(add ? "cfchat.blacklist.add" : "cfchat.blacklist.remove")) {
+			sender.sendMessage(ChatColor.RED + "You do not have permission to use this command.");
+			return;
+		}
+
+		CFManager manager = plugin.getManager();
+		String word = args[3].toLowerCase();
+
+		manager.getFilterService().editBlacklist(word, add, manager.getFilesManager().getFile("blacklist_file")).thenAccept(changed -> {
+			if(!changed)
+				sender.sendMessage(ChatColor.RED + "'" + word + "' is " + (add ? "already" : "not") + " on the blacklist.");
+			else
+				sender.sendMessage(ChatColor.GREEN + (add ? "Added '" + word + "' to" : "Removed '" + word + "' from") + " the blacklist.");
+		});
+	}
+
+	// /chat log <mail | message | commands> <player> [page]
+	// /chat log clear [player]
+	// /chat log search <time | all> <words...>
+	@SuppressWarnings("deprecation")
+	private void log(CommandSender sender, String[] args) {
+		if(args.length >= 2 && args[1].equalsIgnoreCase("search")) {
+			search(sender, args);
+			return;
+		}
+
+		if(args.length >= 2 && args[1].equalsIgnoreCase("clear")) {
+			if(!sender.hasPermission("cfchat.log.clear")) {
+				sender.sendMessage(ChatColor.RED + "You do not have permission to use this command.");
+				return;
+			}
+
+			if(args.length < 3 && !(sender instanceof OfflinePlayer)) {
+				sender.sendMessage(ChatColor.RED + "Usage: /chat log clear <player>");
+				return;
+			}
+
+			OfflinePlayer target = args.length >= 3 ? plugin.getServer().getOfflinePlayer(args[2]) : (OfflinePlayer) sender;
+
+			plugin.getManager().getPlayerManager().loadPlayerConfig(target.getUniqueId()).thenAcceptAsync(config -> {
+				config.getPlayerLog().clear();
+				sender.sendMessage(ChatColor.GREEN + "Cleared the logs of " + target.getName() + ".");
+			}, this::runAsync);
+			return;
+		}
+
+		if(args.length < 3) {
+			sender.sendMessage(ChatColor.RED + "Usage: /chat log <mail | message | commands> <player> [page]");
+			return;
+		}
+
+		LogType type = args[1].equalsIgnoreCase("mail") ? LogType.MAIL : args[1].equalsIgnoreCase("message") ? LogType.MESSAGES
+				: args[1].equalsIgnoreCase("commands") ? LogType.COMMANDS : null;
+
+		if(type == null) {
+			sender.sendMessage(ChatColor.RED + "Unknown log type: " + args[1]);
+			return;
+		}
+
+		if(!sender.hasPermission(type == LogType.MAIL ? "cfchat.log.mail" : type == LogType.COMMANDS ? "cfchat.log.commands" : "cfchat.log.message")) {
+			sender.sendMessage(ChatColor.RED + "You do not have permission to use this command.");
+			return;
+		}
+
+		int page;
+
+		try {
+			page = args.length >= 4 ? Math.max(1, Integer.parseInt(args[3])) : 1;
+		} catch (NumberFormatException e) {
+			sender.sendMessage(ChatColor.RED + "Not a page number: " + args[3]);
+			return;
+		}
+
+		OfflinePlayer target = plugin.getServer().getOfflinePlayer(args[2]);
+
+		plugin.getManager().getPlayerManager().loadPlayerConfig(target.getUniqueId()).thenAcceptAsync(config -> {
+			PlayerLog log = config.getPlayerLog();
+			int pages = Math.max(1, (log.count(type, Long.MIN_VALUE, Long.MAX_VALUE) + LOG_PAGE_SIZE - 1) / LOG_PAGE_SIZE);
+			List<String> entries = log.getPage(type, Long.MIN_VALUE, Long.MAX_VALUE, page, LOG_PAGE_SIZE);
+
+			sender.sendMessage(ChatColor.GOLD + "---- " + target.getName() + " " + type.name().toLowerCase() + " log (" + Math.min(page, pages) + "/" + pages + ") ----");
+
+			if(entries.isEmpty())
+				sender.sendMessage(ChatColor.GRAY + "No logs on this page.");
+
+			for(String entry : entries)
+				sender.sendMessage(ChatColor.GRAY + entry);
+		}, this::runAsync);
+	}
+
+	// /chat log search <time | all> <words...>
+	private void search(CommandSender sender, String[] args) {
+		if(!sender.hasPermission("cfchat.log.search")) {
+			sender.sendMessage(ChatColor.RED + "You do not have permission to use this command.");
+			return;
+		}
+
+		if(args.length < 4) {
+			sender.sendMessage(ChatColor.RED + "Usage: /chat log search <time | all> <words>");
+			return;
+		}
+
+		long age = args[2].equalsIgnoreCase("all") ? Long.MAX_VALUE : parseAge(args[2]);
+
+		if(age <= 0L) {
+			sender.sendMessage(ChatColor.RED + "Not a time: " + args[2] + " (such as 30m, 12h or 7d)");
+			return;
+		}
+
+		String query = String.join(" ", Arrays.copyOfRange(args, 3, args.length));
+		long to = System.currentTimeMillis() + 1L;
+		long from = age == Long.MAX_VALUE ? Long.MIN_VALUE : to - age;
+		PlayerManager players = plugin.getManager().getPlayerManager();
+
+		runAsync(() -> {
+			List<LogSearchIndex.Result> results = players.getSearchIndex().search(query, from, to, LOG_PAGE_SIZE);
+
+			sender.sendMessage(ChatColor.GOLD + "---- Search: " + query + " (" + results.size() + (results.size() == LOG_PAGE_SIZE ? "+" : "") + " found) ----");
+
+			for(LogSearchIndex.Result result : results) {
+				List<String> entries = players.readLogs(result.getPlayer(), LogType.MESSAGES, result.getTime(), result.getTime() + 1L, 1);
+
+				// The log may have been cleared since the message was indexed
+				if(!entries.isEmpty())
+					sender.sendMessage(ChatColor.YELLOW + plugin.getServer().getOfflinePlayer(result.getPlayer()).getName() + ChatColor.GRAY + " " + entries.get(0));
+			}
+		});
+	}
+
+	// Reads a time such as '30m', '12h' or '7d' into milliseconds; returns -1 if not valid
+	private static long parseAge(String value) {
+		if(value.length() < 2)
+			return -1L;
+
+		long unit;
+
+		switch(Character.toLowerCase(value.charAt(value.length() - 1))) {
+			case 'm': unit = 60000L; break;
+			case 'h': unit = 3600000L; break;
+			case 'd': unit = 86400000L; break;
+			case 'w': unit = 604800000L; break;
+			default: return -1L;
+		}
+
+		try {
+			return Long.parseLong(value.substring(0, value.length() - 1)) * unit;
+		} catch (NumberFormatException e) {
+			return -1L;
+		}
+	}
+
+	// Runs the task off the main thread, used for commands that read files
+	private void runAsync(Runnable task) { plugin.getServer().getScheduler().runTaskAsynchronously(plugin, task); }
+}
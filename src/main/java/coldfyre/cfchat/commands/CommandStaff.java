@@ -0,0 +1,119 @@
+package coldfyre.cfchat.commands;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.bukkit.ChatColor;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
+
+import com.coldfyre.api.manager.FilesManager;
+
+import coldfyre.cfchat.CFChat;
+import coldfyre.cfchat.channels.ChannelManager;
+import coldfyre.cfchat.manager.CFManager;
+import coldfyre.cfchat.manager.PermissionService;
+
+/**
+ * Executor of the '/staff' command. Without arguments, the player's chat is switched between the staff chat and the
+ * main chat; '/staff format' sets the format of the staff chat, otherwise the arguments are sent as a message to the
+ * staff chat.
+ *
+ * @author Sommod
+ * @version 1.0
+ *
+ */
+public class CommandStaff implements CommandExecutor {
+
+	private CFChat plugin;
+
+	/**
+	 * Creates a new executor for the staff command.
+	 *
+	 * @param plugin - Main Plugin
+	 */
+	public CommandStaff(CFChat plugin) { this.plugin = plugin; }
+
+	@Override
+	public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
+		CFManager manager = plugin.getManager();
+		ChannelManager channels = manager.getChannelManager();
+
+		if(args.length >= 1 && args[0].equalsIgnoreCase("format")) {
+			format(sender, label, args, manager);
+			return true;
+		}
+
+		if(!(sender instanceof Player)) {
+			sender.sendMessage(ChatColor.RED + "Only players may use this command.");
+			return true;
+		}
+
+		if(!channels.isStaffEnabled()) {
+			sender.sendMessage(ChatColor.RED + "The staff chat is disabled.");
+			return true;
+		}
+
+		Player player = (Player) sender;
+
+		if(!manager.getPermissionService().has(player, PermissionService.STAFF_USE)) {
+			sender.sendMessage(ChatColor.RED + "You do not have permission to use this command.");
+			return true;
+		}
+
+		if(args.length == 0) {
+			toggle(player, channels);
+			return true;
+		}
+
+		// /staff message <message>, or /staff <message>
+		String[] words = args[0].equalsIgnoreCase("message") ? Arrays.copyOfRange(args, 1, args.length) : args;
+
+		if(words.length == 0) {
+			sender.sendMessage(ChatColor.RED + "Usage: /" + label + " message <message>");
+			return true;
+		}
+
+		manager.getChatFanout().send(channels.getStaffChannel(), player, String.join(" ", words));
+		return true;
+	}
+
+	// /staff format <format>
+	private void format(CommandSender sender, String label, String[] args, CFManager manager) {
+		if(!sender.hasPermission("cfchat.staff.format")) {
+			sender.sendMessage(ChatColor.RED + "You do not have permission to use this command.");
+			return;
+		}
+
+		if(args.length < 2) {
+			sender.sendMessage(ChatColor.RED + "Usage: /" + label + " format <format>");
+			return;
+		}
+
+		String format = String.join(" ", Arrays.copyOfRange(args, 1, args.length));
+
+		manager.getChannelManager().getStaffChannel().setFormat(format);
+		sender.sendMessage(ChatColor.GREEN + "The staff chat format is now: " + ChatColor.RESET + ChatColor.translateAlternateColorCodes('&', format));
+
+		YamlConfiguration config = YamlConfiguration.loadConfiguration(manager.getFilesManager().getFile("config_file"));
+
+		config.set("staff.format", format);
+
+		try {
+			config.save(manager.getFilesManager().getFile("config_file"));
+		} catch (IOException e) {
+			FilesManager.LogException(plugin, e);
+		}
+	}
+
+	// /staff
+	private void toggle(Player player, ChannelManager channels) {
+		boolean staff = channels.getFocus(player) != channels.getStaffChannel();
+
+		channels.setFocus(player, staff ? channels.getStaffChannel() : null);
+		player.sendMessage(ChatColor.GREEN + "You are now chatting in " + (staff ? "the staff chat." : "the main chat."));
+	}
+}
@@ -1,28 +1,29 @@
 package coldfyre.cfchat.configuration;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.util.ArrayList;
-import java.util.List;
 
 import com.coldfyre.api.AbstractConfig;
 import com.coldfyre.api.manager.FilesManager;
 
 import coldfyre.cfchat.CFChat;
+import coldfyre.cfchat.filter.TextNormalizer;
+import coldfyre.cfchat.filter.WordDictionary;
 
 public class ConfigAlternateFilter extends AbstractConfig {
-
-	private List<String> pub, select, reject, allWords, blockedWords;
+	
+	private WordDictionary pub, select, reject, allWords, blockedWords;
+	
+	// Plain form of the default word collections, used to find the category of words
+	private WordDictionary plainAllowed, plainBlocked;
 	
 	public ConfigAlternateFilter(File ymlFile) {
 		super(ymlFile);
 		
-		pub = bukkitConfig[0].getStringList("public");
-		select = bukkitConfig[0].getStringList("selective");
-		reject = bukkitConfig[0].getStringList("reject");
+		pub = WordDictionary.of(bukkitConfig[0].getStringList("public")).normalize();
+		select = WordDictionary.of(bukkitConfig[0].getStringList("selective")).normalize();
+		reject = WordDictionary.of(bukkitConfig[0].getStringList("reject")).normalize();
 		
 		loadDefaultWords();
 	}
@@ -30,29 +31,34 @@ public class ConfigAlternateFilter extends AbstractConfig {
 	private void loadDefaultWords() {
 		CFChat plugin = CFChat.getPlugin(CFChat.class);
 
-		blockedWords = readFile(plugin.getClass().getResourceAsStream("blocked_words.txt"));
+		blockedWords = readFile(plugin, "blocked_words.txt");
+		allWords = readFile(plugin, "all_words.txt").without(blockedWords);
+		plainBlocked = blockedWords.normalize();
+		plainAllowed = allWords.normalize().without(plainBlocked);
 		
-		allWords = readFile(plugin.getClass().getResourceAsStream("all_words.txt"));
-		allWords.removeAll(blockedWords);
+		// Without the allowed words every word would be rejected, so unknown words are allowed instead
+		if(allWords.size() == 0)
+			plugin.getLogger().severe("No allowed words were loaded for the alternate filter; words not within the config or the blocked words are ALLOWED, and words close to a blacklisted word are not looked for, until 'all_words.txt' is provided.");
 	}
 	
-	private List<String> readFile(InputStream is) {
-		List<String> ret = new ArrayList<String>();
+	// Reads a word collection from the jar; if the collection is missing, then it is treated as empty
+	private WordDictionary readFile(CFChat plugin, String name) {
+		InputStream is = plugin.getResource(name);
 		
-		try(BufferedReader reader = new BufferedReader(new InputStreamReader(is))) {
-			String line;
-			
-			while((line = reader.readLine()) != null)
-				allWords.add(line);
-			
+		if(is == null) {
+			plugin.getLogger().warning("The word collection '" + name + "' is missing from the plugin jar; it will be treated as empty.");
+			return WordDictionary.EMPTY;
+		}
+		
+		try {
+			return WordDictionary.read(is);
 		} catch (IOException e) {
 			FilesManager.LogException(e);
+			return WordDictionary.EMPTY;
 		}
-		
-		return ret;
 	}
 	
-	public List<String> getWords(Words word) {
+	public WordDictionary getWords(Words word) {
 		return switch (word) {
 			case PUBLIC:
 				yield pub;
@@ -68,9 +74,34 @@ public class ConfigAlternateFilter extends AbstractConfig {
 			};
 	}
 	
-	public List<String> getDefaultAllowedWords() { return allWords; }
+	public WordDictionary getDefaultAllowedWords() { return allWords; }
+	
+	public WordDictionary getDefaultBlockedWords() { return blockedWords; }
 	
-	public List<String> getDefaultBlockedWords() { return blockedWords; }
+	/**
+	 * Gets the category of the word. Words set within the config come first, then the default word
+	 * collections; allowed words are public and blocked words are selective. Any other word is rejected,
+	 * unless the collection of allowed words is missing, in which case it is public. The word lists are
+	 * kept in their plain form, so the word must be changed by the {@link TextNormalizer} first.
+	 * 
+	 * @param word - Plain form of the word to check
+	 * @return Category of the word
+	 */
+	public Words getCategory(CharSequence word) {
+		if(reject.contains(word))
+			return Words.REJECT;
+		
+		if(select.contains(word))
+			return Words.SELECTIVE;
+		
+		if(pub.contains(word) || plainAllowed.contains(word))
+			return Words.PUBLIC;
+		
+		if(plainBlocked.contains(word))
+			return Words.SELECTIVE;
+		
+		return allWords.size() == 0 ? Words.PUBLIC : Words.REJECT;
+	}
 	
 	public enum Words {
 		PUBLIC, SELECTIVE, REJECT;
@@ -2,102 +2,138 @@ package coldfyre.cfchat.configuration;
 
 import java.io.File;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
 import org.bukkit.entity.Player;
 
 import com.coldfyre.api.AbstractConfig;
 import com.coldfyre.api.utilities.Util;
 
+import coldfyre.cfchat.manager.AnnouncementScheduler;
 import net.md_5.bungee.api.ChatMessageType;
+import net.md_5.bungee.api.chat.BaseComponent;
 import net.md_5.bungee.api.chat.TextComponent;
 
-public class ConfigAnnouncement extends AbstractConfig implements Runnable {
-	
-	private Map<String, AnnouncementData> announcements;
+public class ConfigAnnouncement extends AbstractConfig {
+
+	private Map<String, Announcement> announcements;
 
 	public ConfigAnnouncement(File ymlFile) {
 		super(ymlFile);
-		announcements = new HashMap<String, AnnouncementData>();
-		
+		announcements = new LinkedHashMap<String, Announcement>();
+
 		for(String data : bukkitConfig[0].getConfigurationSection("").getKeys(false))
-			announcements.put(data, new AnnouncementData(data + "."));
+			announcements.put(data, new Announcement(data));
 	}
-	
+
 	public Set<String> getAnnouncementKeys() { return announcements.keySet(); }
-	
+
+	/**
+	 * Gets all announcements, in the order they are within the file. The announcements are scheduled
+	 * by the {@link AnnouncementScheduler}.
+	 *
+	 * @return Announcements
+	 */
+	public Collection<Announcement> getAnnouncements() { return announcements.values(); }
+
 	public String getLocation(String announcement) { return announcements.get(announcement).location; }
 	public long getDefaultTime(String announcement) { return announcements.get(announcement).defaultTime; }
-	public long getTimeCounter(String announcement) { return announcements.get(announcement).nextShowTimeCounter; }
-	public void resetTimeCounter(String announcement) { announcements.get(announcement).nextShowTimeCounter = announcements.get(announcement).defaultTime; }
 	public List<String> getAnnouncement(String announcement) { return announcements.get(announcement).message; }
 	public List<String> getExemptPermissions(String announcement) { return announcements.get(announcement).exemptPermissions; }
-	
-	@Override
-	public void run() {
-		for(AnnouncementData ad : announcements.values()) {
-			ad.nextShowTimeCounter--;
-			
-			if(ad.nextShowTimeCounter <= 0) {
-				for(Player p : Bukkit.getServer().getOnlinePlayers()) {
-					boolean found = false;
-					
-					if(ad.exemptPermissions != null) {
-						for(String perm : ad.exemptPermissions) {
-							if(p.hasPermission(perm)) {
-								found = true;
-								break;
-							}
-						}
-					}
-					
-					if(!found) {
-						TextComponent send = new TextComponent();
-							
-						for(String line : ad.message)
-							send.addExtra(line.replace('&', '§') + "\n");
-						
-						send.setText(send.getText().substring(0,send.getText().length() - 2));
-						
-						p.spigot().sendMessage(ChatMessageType.valueOf(ad.location.toUpperCase()), send);
-					}
-				}
-			}
-		}
-	}
-	
-	private class AnnouncementData {
+
+	/**
+	 * A single announcement of the file. The message is built once when loaded and shared by every player it
+	 * is sent to.
+	 *
+	 * @author Sommod
+	 * @version 1.0
+	 *
+	 */
+	public class Announcement {
+		private String key;
 		private String location;
 		private long defaultTime;
-		private long nextShowTimeCounter;
 		private List<String> message;
 		private List<String> exemptPermissions;
-		
+
+		// Built message; components for the chat and action bar, or the lines of a title
+		private ChatMessageType type;
+		private BaseComponent[] components;
+		private String title, subtitle;
+
 		@SuppressWarnings("unchecked")
-		public AnnouncementData(String data) {
-			location = bukkitConfig[0].getString(data + "loc");
+		private Announcement(String key) {
+			String data = key + ".";
+
+			this.key = key;
+			location = bukkitConfig[0].getString(data + "loc", "CHAT");
 			defaultTime = Util.toTime(bukkitConfig[0].getString(data + "time"));
-			nextShowTimeCounter = defaultTime;
 			message = getMessageList(data);
-			ChatMessageType.valueOf("CHAT");
-			
 			exemptPermissions = bukkitConfig[0].contains(data + "exempt") ? (List<String>) bukkitConfig[0].getList(data + "exempt") : null;
+
+			switch(location.toUpperCase().replace("_", "")) {
+				case "SCREEN":
+					title = message.isEmpty() ? "" : translate(message.get(0));
+					subtitle = message.size() < 2 ? "" : translate(message.get(1));
+					break;
+
+				case "ACTIONBAR":
+					type = ChatMessageType.ACTION_BAR;
+					components = TextComponent.fromLegacyText(translate(String.join(" ", message)));
+					break;
+
+				default:
+					type = ChatMessageType.CHAT;
+					components = TextComponent.fromLegacyText(translate(String.join("\n", message)));
+					break;
+			}
+		}
+
+		/**
+		 * Gets the key of this announcement within the file.
+		 *
+		 * @return Key
+		 */
+		public String getKey() { return key; }
+
+		/**
+		 * Gets the time between each showing of this announcement.
+		 *
+		 * @return Time between showings
+		 */
+		public long getDefaultTime() { return defaultTime; }
+
+		/**
+		 * Sends this announcement to the player. This does not check if the player is exempt.
+		 *
+		 * @param player - Player to send to
+		 */
+		public void send(Player player) {
+			if(components == null)
+				player.sendTitle(title, subtitle, 10, 70, 20);
+			else
+				player.spigot().sendMessage(type, components);
 		}
-		
+
 		private List<String> getMessageList(String data) {
 			if(bukkitConfig[0].isList(data + "message"))
 				return bukkitConfig[0].getStringList(data + "message");
 			else {
 				List<String> collect = new ArrayList<String>();
-				collect.add(bukkitConfig[0].getString(data + "message"));
-				
+
+				if(bukkitConfig[0].getString(data + "message") != null)
+					collect.add(bukkitConfig[0].getString(data + "message"));
+
 				return collect;
 			}
 		}
+
+		private String translate(String text) { return ChatColor.translateAlternateColorCodes('&', text); }
 	}
 
 }
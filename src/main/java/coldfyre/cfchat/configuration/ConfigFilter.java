@@ -1,23 +1,121 @@
 package coldfyre.cfchat.configuration;
 
 import java.io.File;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
 
 import com.coldfyre.api.AbstractConfig;
 
+import coldfyre.cfchat.filter.FilterSnapshot;
+import coldfyre.cfchat.filter.TextNormalizer;
+
 public class ConfigFilter extends AbstractConfig {
 
-	private List<String> blacklist, whitelist;
-	
+	// Compiled lists; swapped as a whole when a list is changed
+	private final AtomicReference<FilterSnapshot> snapshot;
+
 	public ConfigFilter(File... ymlFiles) {
 		super(ymlFiles);
-		
-		blacklist = bukkitConfig[0].getStringList("blacklist");
-		whitelist = bukkitConfig[1].getStringList("whitelist");
+
+		snapshot = new AtomicReference<FilterSnapshot>(new FilterSnapshot(bukkitConfig[0].getStringList("blacklist"), bukkitConfig[1].getStringList("whitelist")));
+	}
+
+	public List<String> getBlacklist() { return snapshot.get().getBlacklist(); }
+	public List<String> getWhitelist() { return snapshot.get().getWhitelist(); }
+
+	public boolean contains(int which, String word) { return snapshot.get().contains(which, word); }
+
+	/**
+	 * Gets the current compiled lists. The returned snapshot never changes; hold on to it for the whole
+	 * check of a message.
+	 *
+	 * @return Current snapshot
+	 */
+	public FilterSnapshot getSnapshot() { return snapshot.get(); }
+
+	/**
+	 * Changes the compiled lists. The change is retried against the newest snapshot should another change
+	 * happen at the same time, so the function may be called more than once.
+	 *
+	 * @param change - Creates the new snapshot from the current one
+	 * @return The snapshot that was swapped in
+	 */
+	public FilterSnapshot update(UnaryOperator<FilterSnapshot> change) { return snapshot.updateAndGet(change); }
+
+	/**
+	 * Finds the blacklisted words within the message. Blacklisted words that are part of a whitelisted
+	 * word (such as 'ass' within 'assume') are not returned, as the whitelist takes priority. The message
+	 * is searched in it's plain form (see {@link TextNormalizer}); the returned positions are those within
+	 * the original message.
+	 *
+	 * @param message - Message to search
+	 * @return Pairs of start and end (exclusive) positions, sorted by start
+	 */
+	public int[] findBlacklisted(String message) {
+		TextNormalizer plain = TextNormalizer.forThread().normalize(message);
+
+		return plain.toOriginal(snapshot.get().findBlacklisted(plain));
+	}
+
+	/**
+	 * Checks if the message contains any blacklisted word that is not part of a whitelisted word.
+	 *
+	 * @param message - Message to search
+	 * @return True - if a blacklisted word was found
+	 */
+	public boolean isBlacklisted(String message) {
+		FilterSnapshot current = snapshot.get();
+		TextNormalizer plain = TextNormalizer.forThread().normalize(message);
+
+		return current.mayContain(plain) && current.findBlacklisted(plain).length > 0;
+	}
+
+	/**
+	 * Replaces every character of the blacklisted words within the message with a '*'. This is used when
+	 * the filter type is 'WORD'.
+	 *
+	 * @param message - Message to mask
+	 * @return Masked message, or the same message if nothing was found
+	 */
+	public String mask(String message) { return mask(message, findBlacklisted(message)); }
+
+	/**
+	 * Finds the words of the message that are close to a blacklisted word, such as 'fvck'. How close a word
+	 * must be is set by the filter percent (chat.blacklist.percent); the lower the percent, the more changes
+	 * are allowed. Whitelisted words are never returned.
+	 *
+	 * @param message - Message to search
+	 * @param percent - Filter percent, 0 ~ 1
+	 * @return Pairs of start and end (exclusive) positions of the words, sorted by start
+	 */
+	public int[] findSimilar(String message, double percent) {
+		TextNormalizer plain = TextNormalizer.forThread().normalize(message);
+
+		return plain.toOriginal(snapshot.get().findSimilar(plain, message, percent, null));
+	}
+
+	/**
+	 * Replaces every character of the blacklisted words, and the words close to them, within the message
+	 * with a '*'.
+	 *
+	 * @param message - Message to mask
+	 * @param percent - Filter percent, 0 ~ 1
+	 * @return Masked message, or the same message if nothing was found
+	 */
+	public String mask(String message, double percent) { return mask(mask(message), findSimilar(message, percent)); }
+
+	// Stars out the characters of each pair of positions
+	private static String mask(String message, int[] spans) {
+		if(spans.length == 0)
+			return message;
+
+		char[] chars = message.toCharArray();
+
+		for(int i = 0; i < spans.length; i += 2)
+			Arrays.fill(chars, spans[i], spans[i + 1], '*');
+
+		return new String(chars);
 	}
-	
-	public List<String> getBlacklist() { return blacklist; }
-	public List<String> getWhitelist() { return whitelist; }
-	
-	public boolean contains(int which, String word) { return which == 0 ? blacklist.contains(word) : whitelist.contains(word); }
 }
@@ -36,14 +36,24 @@ public class ConfigMain extends AbstractConfig {
 	public boolean isFilterWordOnly() { return bukkitConfig[0].getString("chat.blacklist.type").equalsIgnoreCase("word"); }
 	public boolean isFilterReponseEnabled() { return bukkitConfig[0].getBoolean("chat.blacklist.respond"); }
 	public String getFilterReponse() { return bukkitConfig[0].getString("chat.blacklist.message"); }
+	public int getFilterCacheSize() { return bukkitConfig[0].getInt("chat.blacklist.cache_size", 1024); }
 	public boolean isSpamFilterEnabled() { return bukkitConfig[0].getBoolean("chat.spam.enabled"); }
 	public int getSpamMessageInterval() { return bukkitConfig[0].getInt("chat.spam.message_interval"); }
 	public boolean isSpamResetTimer() { return bukkitConfig[0].getBoolean("chat.spam.reset_timer"); }
 	public String getSpamMessage() { return bukkitConfig[0].getString("chat.spam.message"); }
+	public int getSpamBurst() { return bukkitConfig[0].getInt("chat.spam.burst", 1); }
+	public boolean isDuplicateFilterEnabled() { return bukkitConfig[0].getBoolean("chat.spam.duplicates.enabled"); }
+	public int getDuplicateDistance() { return bukkitConfig[0].getInt("chat.spam.duplicates.distance", 8); }
+	public int getDuplicateSeconds() { return bukkitConfig[0].getInt("chat.spam.duplicates.seconds", 30); }
+	public int getDuplicatePlayers() { return bukkitConfig[0].getInt("chat.spam.duplicates.players", 3); }
+	public String getDuplicateMessage() { return bukkitConfig[0].getString("chat.spam.duplicates.message"); }
 	public boolean isLoggerEnabled() { return bukkitConfig[0].getBoolean("chat.logger.enabled"); }
 	public boolean isLoggingMessages() { return bukkitConfig[0].getBoolean("chat.logger.log_messages"); }
 	public boolean isLoggingMail() { return bukkitConfig[0].getBoolean("chat.logger.log_mail"); }
 	public boolean isLoggingCommands() { return bukkitConfig[0].getBoolean("chat.logger.log_commands"); }
+	public int getLoggerQueueSize() { return bukkitConfig[0].getInt("chat.logger.queue_size", 8192); }
+	public String getLoggerOverflowPolicy() { return bukkitConfig[0].getString("chat.logger.overflow", "DROP_OLDEST"); }
+	public int getLoggerSampleRate() { return bukkitConfig[0].getInt("chat.logger.sample_rate", 4); }
 	
 	public boolean isGroupEnabled() { return bukkitConfig[0].getBoolean("group.enabled"); }
 	public boolean isGroupOptionPublic() { return bukkitConfig[0].getBoolean("group.options.public"); }
@@ -52,8 +62,24 @@ public class ConfigMain extends AbstractConfig {
 	public boolean isGroupOptionIgnore() { return bukkitConfig[0].getBoolean("group.options.ignore.default"); }
 	public boolean isGroupOptionIngoreEditable() { return bukkitConfig[0].getBoolean("group.options.ignore.allow_edit"); }
 	public String getGroupOptionFormat() { return bukkitConfig[0].getString("group.options.format"); }
+	public boolean isStaffEnabled() { return bukkitConfig[0].getBoolean("staff.enabled", true); }
+	public String getStaffFormat() { return bukkitConfig[0].getString("staff.format"); }
 	public boolean isWarnSystemEnabled() { return bukkitConfig[0].getBoolean("warn.enabled"); }
 	public boolean isAutoWarnEnabled() { return bukkitConfig[0].getBoolean("warn.enable_auto"); }
+	public int getSpamLimit() { return bukkitConfig[0].getInt("warn.spam.spam_limit", 5); }
+	public int getSpamTimer() { return bukkitConfig[0].getInt("warn.spam.spam_timer", 300); }
+	public boolean isSpamTimerReset() { return bukkitConfig[0].getBoolean("warn.spam.spam_timer_reset", true); }
 	public boolean isWarnDecayEnabled() { return bukkitConfig[0].getBoolean("warn.decay.enabled"); }
 	public String getRawDecayTime() { return bukkitConfig[0].getString("warn.decay.time"); }
+	
+	public int getPlayerCacheSize() { return bukkitConfig[0].getInt("storage.cache_size", 500); }
+	public String getStorageType() { return bukkitConfig[0].getString("storage.type", "YAML"); }
+	public int getStorageShards() { return bukkitConfig[0].getInt("storage.shards", 16); }
+	public int getFlushInterval() { return bukkitConfig[0].getInt("storage.flush_interval", 30); }
+	public int getLogSegmentSize() { return bukkitConfig[0].getInt("storage.logs.segment_size", 256); }
+	public int getLogSegmentHours() { return bukkitConfig[0].getInt("storage.logs.segment_hours", 24); }
+	public int getLogRetentionDays() { return bukkitConfig[0].getInt("storage.logs.retention_days", 90); }
+	public int getLogMaxSegments() { return bukkitConfig[0].getInt("storage.logs.max_segments", 100); }
+	public int getLogSearchDays() { return bukkitConfig[0].getInt("storage.logs.search_days", 30); }
+	public boolean isJournalEnabled() { return bukkitConfig[0].getBoolean("storage.journal", true); }
 }
@@ -0,0 +1,339 @@
+package coldfyre.cfchat.filter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import com.coldfyre.api.manager.FilesManager;
+
+import coldfyre.cfchat.CFChat;
+import coldfyre.cfchat.configuration.ConfigAlternateFilter;
+import coldfyre.cfchat.configuration.ConfigAlternateFilter.Words;
+import coldfyre.cfchat.configuration.ConfigFilter;
+import coldfyre.cfchat.configuration.ConfigMain;
+
+/**
+ * Passes messages through the blacklist filter and gives the {@link FilterVerdict} of each message. Chat, staff chat,
+ * groups and mail all use this same service, so a message is only searched once no matter how many parts of the plugin
+ * check it.</br></br>
+ *
+ * The found words of recent messages are kept within a cache, keyed by the normalized message (see
+ * {@link TextNormalizer}); repeated and copy-pasted messages, such as during spam, are not searched again. The cache holds
+ * the positions of the found words within the normalized message, so messages written differently but with the same
+ * normalized form can still be masked correctly. The number of cache hits and misses is kept to help choose the size of
+ * the cache.</br></br>
+ *
+ * Checking a message can be done from any thread; {@link #checkAsync(String)} runs the check off the main thread. The
+ * lists are read from the {@link FilterSnapshot} of the filter config once per check, so changing the lists never blocks
+ * or disturbs a check in progress.</br></br>
+ *
+ * When the alternate filter is used instead, {@link #classify(String)} gives the category of the whole message from the
+ * word lists of the {@link ConfigAlternateFilter}.
+ *
+ * @author Sommod
+ * @version 1.0
+ *
+ */
+public class FilterService {
+
+	// Number of separately locked parts of the cache
+	private static final int SEGMENTS = 16;
+
+	private CFChat plugin;
+	private volatile ConfigFilter filter;
+	private volatile ConfigAlternateFilter alternate;
+	private volatile ConfigMain config;
+	private volatile Segment[] cache;
+	private LongAdder hits, misses;
+
+	/**
+	 * Creates a new filter service using the given configs.
+	 *
+	 * @param plugin - Main Plugin
+	 * @param filter - Filter Config
+	 * @param alternate - Alternate Filter Config
+	 * @param config - Main Config
+	 */
+	public FilterService(CFChat plugin, ConfigFilter filter, ConfigAlternateFilter alternate, ConfigMain config) {
+		this.plugin = plugin;
+		hits = new LongAdder();
+		misses = new LongAdder();
+		reload(filter, alternate, config);
+	}
+
+	/**
+	 * Sets the configs used by the filter. As the lists or settings may have changed, the cache is cleared.
+	 *
+	 * @param filter - Filter Config
+	 * @param alternate - Alternate Filter Config
+	 * @param config - Main Config
+	 */
+	public void reload(ConfigFilter filter, ConfigAlternateFilter alternate, ConfigMain config) {
+		int size = Math.max(0, config.getFilterCacheSize());
+		Segment[] segments = new Segment[SEGMENTS];
+
+		for(int i = 0; i < SEGMENTS; i++)
+			segments[i] = new Segment((size + SEGMENTS - 1) / SEGMENTS);
+
+		this.filter = filter;
+		this.alternate = alternate;
+		this.config = config;
+		this.cache = segments;
+	}
+
+	/**
+	 * Checks if the blacklist filter is enabled. When the alternate filter is used, this filter is not.
+	 *
+	 * @return True - if enabled
+	 */
+	public boolean isEnabled() { return config.isBlacklistEnabled() && !config.isUsingAlternateFilter(); }
+
+	/**
+	 * Checks if the alternate filter is enabled, in place of the blacklist filter.
+	 *
+	 * @return True - if enabled
+	 */
+	public boolean isAlternateEnabled() { return config.isBlacklistEnabled() && config.isUsingAlternateFilter(); }
+
+	/**
+	 * Gets the message sent to a player whose message was masked or blocked.
+	 *
+	 * @return Response message, or NULL if no response is sent
+	 */
+	public String getResponse() { return config.isFilterReponseEnabled() ? config.getFilterReponse() : null; }
+
+	/**
+	 * Passes the message through the filter. This does not check if the filter is enabled.
+	 *
+	 * @param message - Message to check
+	 * @return Verdict of the message
+	 */
+	public FilterVerdict check(String message) {
+		FilterSnapshot snapshot = filter.getSnapshot();
+		ConfigMain config = this.config;
+		ConfigAlternateFilter alternate = this.alternate;
+		Segment[] cache = this.cache;
+		TextNormalizer plain = TextNormalizer.forThread().normalize(message);
+		String key = plain.toString();
+		int hash = key.hashCode();
+		Segment segment = cache[(hash ^ (hash >>> 16)) & (SEGMENTS - 1)];
+		Found found = segment.get(key);
+
+		// Results of an older snapshot are not used, the lists may have changed since
+		if(found != null && found.snapshot == snapshot)
+			hits.increment();
+		else {
+			misses.increment();
+			found = search(snapshot, config, alternate.getDefaultAllowedWords(), plain, message);
+			segment.put(key, found);
+		}
+
+		if(found.spans.length == 0)
+			return FilterVerdict.allowed();
+
+		if(!config.isFilterWordOnly())
+			return found.blocked;
+
+		int[] spans = plain.toOriginal(found.spans.clone());
+		char[] chars = message.toCharArray();
+
+		for(int i = 0; i < spans.length; i += 2)
+			Arrays.fill(chars, spans[i], spans[i + 1], '*');
+
+		return FilterVerdict.masked(new String(chars), found.blocked.getReason());
+	}
+
+	/**
+	 * Gets the category of the message from the word lists of the alternate filter. Each word of the message
+	 * is looked up once; the message takes the strictest category of it's words, so a single rejected word
+	 * rejects the whole message. The message is changed by the {@link TextNormalizer} first, the same way as
+	 * for the blacklist, so color codes are removed and hidden words are found. This does not check if the
+	 * alternate filter is enabled.
+	 *
+	 * @param message - Message to check
+	 * @return Category of the message
+	 */
+	public Words classify(String message) {
+		ConfigAlternateFilter alternate = this.alternate;
+		TextNormalizer plain = TextNormalizer.forThread().normalize(message);
+		StringBuilder word = new StringBuilder(16);
+		Words result = Words.PUBLIC;
+
+		for(int i = 0; i <= plain.length(); i++) {
+			char c = i < plain.length() ? plain.charAt(i) : ' ';
+
+			if(Character.isLetterOrDigit(c)) {
+				word.append(c);
+				continue;
+			}
+
+			if(word.length() == 0)
+				continue;
+
+			Words category = alternate.getCategory(word);
+
+			if(category == Words.REJECT)
+				return Words.REJECT;
+
+			if(category == Words.SELECTIVE)
+				result = Words.SELECTIVE;
+
+			word.setLength(0);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Passes the message through the filter off the main thread.
+	 *
+	 * @param message - Message to check
+	 * @return Future of the verdict
+	 */
+	public CompletableFuture<FilterVerdict> checkAsync(String message) {
+		return CompletableFuture.supplyAsync(() -> check(message), task -> plugin.getServer().getScheduler().runTaskAsynchronously(plugin, task));
+	}
+
+	/**
+	 * Adds the word to, or removes it from, the blacklist. The new lists are compiled off the main thread
+	 * and swapped in once complete; messages being checked meanwhile use the old lists. The blacklist is
+	 * then written into the given file.
+	 *
+	 * @param word - Word to add or remove
+	 * @param add - True to add the word, false to remove it
+	 * @param file - Blacklist file
+	 * @return Future that completes with true if the blacklist changed
+	 */
+	public CompletableFuture<Boolean> editBlacklist(String word, boolean add, File file) {
+		ConfigFilter filter = this.filter;
+
+		return CompletableFuture.supplyAsync(() -> {
+			FilterSnapshot[] before = new FilterSnapshot[1];
+			FilterSnapshot after = filter.update(current -> (before[0] = current).withBlacklisted(word, add));
+
+			if(after == before[0])
+				return false;
+
+			save(filter, file);
+			return true;
+		}, task -> plugin.getServer().getScheduler().runTaskAsynchronously(plugin, task));
+	}
+
+	/**
+	 * Gets the number of checks that were answered by the cache.
+	 *
+	 * @return Cache hits
+	 */
+	public long getHits() { return hits.sum(); }
+
+	/**
+	 * Gets the number of checks that had to search the message.
+	 *
+	 * @return Cache misses
+	 */
+	public long getMisses() { return misses.sum(); }
+
+	/**
+	 * Gets the number of messages currently within the cache.
+	 *
+	 * @return Cache size
+	 */
+	public int getCacheSize() {
+		int size = 0;
+
+		for(Segment segment : cache)
+			size += segment.size();
+
+		return size;
+	}
+
+	// Writes the current blacklist into the file; done one at a time so the newest list is written last
+	private synchronized void save(ConfigFilter filter, File file) {
+		YamlConfiguration yml = YamlConfiguration.loadConfiguration(file);
+
+		yml.set("blacklist", filter.getBlacklist());
+
+		try {
+			yml.save(file);
+		} catch (IOException e) {
+			FilesManager.LogException(plugin, e);
+		}
+	}
+
+	// Searches the normalized message for blacklisted words, and words close to them that are not known words. Without
+	// a dictionary, too many real words are close to a blacklisted word ('pitch', 'fussy'), so only exact words are found.
+	private static Found search(FilterSnapshot snapshot, ConfigMain config, WordDictionary dictionary, TextNormalizer plain, String message) {
+		int[] exact = snapshot.findBlacklisted(plain);
+		int[] similar = dictionary.size() == 0 ? new int[0] : snapshot.findSimilar(plain, message, config.getFilterPercent(), dictionary);
+		int[] spans = Arrays.copyOf(exact, exact.length + similar.length);
+
+		System.arraycopy(similar, 0, spans, exact.length, similar.length);
+
+		Set<String> words = new LinkedHashSet<String>();
+
+		for(int i = 0; i < spans.length; i += 2)
+			words.add(plain.subSequence(spans[i], spans[i + 1]).toString());
+
+		return new Found(snapshot, spans, words.isEmpty() ? null : FilterVerdict.blocked(String.join(", ", words)));
+	}
+
+	/**
+	 * The words found within a normalized message.
+	 *
+	 * @author Sommod
+	 * @version 1.0
+	 *
+	 */
+	private static class Found {
+
+		private final FilterSnapshot snapshot;
+		private final int[] spans;
+		private final FilterVerdict blocked;
+
+		private Found(FilterSnapshot snapshot, int[] spans, FilterVerdict blocked) {
+			this.snapshot = snapshot;
+			this.spans = spans;
+			this.blocked = blocked;
+		}
+	}
+
+	/**
+	 * Part of the cache, removing the least recently used message once full.
+	 *
+	 * @author Sommod
+	 * @version 1.0
+	 *
+	 */
+	private static class Segment {
+
+		private final Map<String, Found> entries;
+		private final int capacity;
+
+		@SuppressWarnings("serial")
+		private Segment(int capacity) {
+			this.capacity = capacity;
+
+			entries = new LinkedHashMap<String, Found>(16, 0.75F, true) {
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, Found> eldest) { return size() > Segment.this.capacity; }
+			};
+		}
+
+		private synchronized Found get(String key) { return capacity == 0 ? null : entries.get(key); }
+
+		private synchronized void put(String key, Found found) {
+			if(capacity > 0)
+				entries.put(key, found);
+		}
+
+		private synchronized int size() { return entries.size(); }
+	}
+}
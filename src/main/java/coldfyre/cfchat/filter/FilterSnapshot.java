@@ -0,0 +1,237 @@
+package coldfyre.cfchat.filter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The compiled blacklist and whitelist of the filter. A snapshot never changes once built; changing a list creates a
+ * new snapshot (see {@link #withBlacklisted(String, boolean)}), which is then swapped in place of the old one. Messages
+ * being checked keep using the snapshot they started with, so a list is never seen half-built and checks never wait on
+ * a change.</br></br>
+ *
+ * The lists are compiled in their plain form (see {@link TextNormalizer}); written variants of a word ('b1tch') become
+ * the same word.
+ *
+ * @author Sommod
+ * @version 1.0
+ *
+ */
+public final class FilterSnapshot {
+
+	private final List<String> blacklist, whitelist;
+	private final Set<String> blacklistSet, whitelistSet;
+	private final PatternMatcher blacklistMatcher, whitelistMatcher;
+
+	// Built the first time it is needed, and again only if the percent changes
+	private volatile FuzzyMatcher fuzzyMatcher;
+
+	/**
+	 * Compiles the given lists. The lists are copied.
+	 *
+	 * @param blacklist - Blacklisted words
+	 * @param whitelist - Whitelisted words
+	 */
+	public FilterSnapshot(List<String> blacklist, List<String> whitelist) {
+		this.blacklist = Collections.unmodifiableList(new ArrayList<String>(blacklist));
+		this.whitelist = Collections.unmodifiableList(new ArrayList<String>(whitelist));
+
+		blacklistSet = normalize(blacklist);
+		whitelistSet = normalize(whitelist);
+		blacklistMatcher = new PatternMatcher(blacklistSet);
+		whitelistMatcher = new PatternMatcher(whitelistSet);
+	}
+
+	/**
+	 * Creates a new snapshot with the word added to, or removed from, the blacklist. The whitelist is shared
+	 * with this snapshot. If nothing would change, then this snapshot is returned.
+	 *
+	 * @param word - Word to add or remove
+	 * @param add - True to add the word, false to remove it
+	 * @return New snapshot, or this snapshot if unchanged
+	 */
+	public FilterSnapshot withBlacklisted(String word, boolean add) {
+		List<String> list = new ArrayList<String>(blacklist);
+		boolean changed = add ? list.stream().noneMatch(w -> w.equalsIgnoreCase(word)) && list.add(word) : list.removeIf(w -> w.equalsIgnoreCase(word));
+
+		return changed ? new FilterSnapshot(list, whitelist) : this;
+	}
+
+	/**
+	 * Gets the blacklisted words as they were written. The list can not be changed.
+	 *
+	 * @return Blacklist
+	 */
+	public List<String> getBlacklist() { return blacklist; }
+
+	/**
+	 * Gets the whitelisted words as they were written. The list can not be changed.
+	 *
+	 * @return Whitelist
+	 */
+	public List<String> getWhitelist() { return whitelist; }
+
+	/**
+	 * Checks if the plain form of the word is within the blacklist (0) or whitelist (1).
+	 *
+	 * @param which - 0 for the blacklist, 1 for the whitelist
+	 * @param word - Word to check
+	 * @return True - if listed
+	 */
+	public boolean contains(int which, String word) {
+		String plain = TextNormalizer.normalizeWord(word);
+		return which == 0 ? blacklistSet.contains(plain) : whitelistSet.contains(plain);
+	}
+
+	/**
+	 * Checks if a normalized message may contain a blacklisted word. This stops at the first blacklisted
+	 * word, and does not check the whitelist.
+	 *
+	 * @param plain - Normalized message
+	 * @return True - if a blacklisted word was found
+	 */
+	public boolean mayContain(TextNormalizer plain) { return blacklistMatcher.matches(plain); }
+
+	/**
+	 * Finds the blacklisted words within a normalized message. Blacklisted words that are part of a
+	 * whitelisted word (such as 'ass' within 'assume') are not returned, as the whitelist takes priority. The
+	 * returned positions are those within the normalized message.
+	 *
+	 * @param plain - Normalized message
+	 * @return Pairs of start and end (exclusive) positions, sorted by start
+	 */
+	public int[] findBlacklisted(TextNormalizer plain) {
+		int[] black = blacklistMatcher.find(plain);
+
+		if(black.length == 0)
+			return black;
+
+		int[] white = whitelistMatcher.find(plain);
+
+		sortSpans(black);
+
+		if(white.length == 0)
+			return black;
+
+		sortSpans(white);
+
+		// Walks both lists by start; a blacklisted span is dropped if any whitelisted span that starts
+		// at or before it also reaches past it's end
+		int[] ret = new int[black.length];
+		int size = 0, w = 0, reach = -1;
+
+		for(int b = 0; b < black.length; b += 2) {
+			while(w < white.length && white[w] <= black[b]) {
+				reach = Math.max(reach, white[w + 1]);
+				w += 2;
+			}
+
+			if(reach < black[b + 1]) {
+				ret[size++] = black[b];
+				ret[size++] = black[b + 1];
+			}
+		}
+
+		return Arrays.copyOf(ret, size);
+	}
+
+	/**
+	 * Finds the words of a normalized message that are close to a blacklisted word. Whitelisted
+	 * words and words of the dictionary (real words, such as 'pitch' being close to 'bitch') are never
+	 * returned. The dictionary is checked with the word as it was written, as the plain form of a real
+	 * word may not be a real word ('whole' becomes 'whoie'). The returned positions are those within
+	 * the normalized message.
+	 *
+	 * @param plain - Normalized message
+	 * @param message - Message that was normalized
+	 * @param percent - Filter percent, 0 ~ 1
+	 * @param dictionary - Known words, or NULL
+	 * @return Pairs of start and end (exclusive) positions of the words, sorted by start
+	 */
+	public int[] findSimilar(TextNormalizer plain, CharSequence message, double percent, WordDictionary dictionary) {
+		FuzzyMatcher matcher = getFuzzyMatcher(percent);
+		int[] ret = new int[0];
+		int size = 0, start = -1;
+
+		for(int i = 0; i <= plain.length(); i++) {
+			if(i < plain.length() && Character.isLetterOrDigit(plain.charAt(i))) {
+				if(start < 0)
+					start = i;
+
+				continue;
+			}
+
+			if(start < 0)
+				continue;
+
+			String word = plain.subSequence(start, i).toString();
+
+			if(!whitelistSet.contains(word) && (dictionary == null || !dictionary.contains(written(plain, message, start, i))) && matcher.match(word) != null) {
+				if(size == ret.length)
+					ret = Arrays.copyOf(ret, Math.max(8, size * 2));
+
+				ret[size++] = start;
+				ret[size++] = i;
+			}
+
+			start = -1;
+		}
+
+		return Arrays.copyOf(ret, size);
+	}
+
+	// Gets the letters of the word as written within the message, in lower-case
+	private static String written(TextNormalizer plain, CharSequence message, int start, int end) {
+		StringBuilder builder = new StringBuilder(end - start);
+
+		for(int i = plain.getOriginalIndex(start); i <= plain.getOriginalIndex(end - 1); i++) {
+			if(Character.isLetter(message.charAt(i)))
+				builder.append(Character.toLowerCase(message.charAt(i)));
+		}
+
+		return builder.toString();
+	}
+
+	// Gets the fuzzy matcher of the blacklist, it is rebuilt only when the percent has changed
+	private FuzzyMatcher getFuzzyMatcher(double percent) {
+		FuzzyMatcher matcher = fuzzyMatcher;
+
+		if(matcher == null || matcher.getPercent() != percent)
+			fuzzyMatcher = matcher = new FuzzyMatcher(blacklistSet, percent);
+
+		return matcher;
+	}
+
+	// Gets the plain form of each word of the list, without duplicates
+	private static Set<String> normalize(List<String> words) {
+		Set<String> ret = new HashSet<String>();
+
+		for(String word : words) {
+			String plain = TextNormalizer.normalizeWord(word).trim();
+
+			if(!plain.isEmpty())
+				ret.add(plain);
+		}
+
+		return ret;
+	}
+
+	// Sorts the pairs of positions by their start, the lists are small so an insertion sort is used
+	private static void sortSpans(int[] spans) {
+		for(int i = 2; i < spans.length; i += 2) {
+			int start = spans[i], end = spans[i + 1], j = i - 2;
+
+			while(j >= 0 && spans[j] > start) {
+				spans[j + 2] = spans[j];
+				spans[j + 3] = spans[j + 1];
+				j -= 2;
+			}
+
+			spans[j + 2] = start;
+			spans[j + 3] = end;
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package coldfyre.cfchat.filter;
+
+/**
+ * The result of passing a message through the {@link FilterService}. A verdict does not change once created, and may be
+ * shared between threads.
+ *
+ * @author Sommod
+ * @version 1.0
+ *
+ */
+public final class FilterVerdict {
+
+	/**
+	 * What is to be done with the message.
+	 *
+	 * @author Sommod
+	 * @version 1.0
+	 *
+	 */
+	public enum Action {
+		/** The message is sent as it is. */
+		ALLOWED,
+		/** The message is sent with the blacklisted words starred out. */
+		MASKED,
+		/** The message is not sent. */
+		BLOCKED;
+	}
+
+	private static final FilterVerdict ALLOWED = new FilterVerdict(Action.ALLOWED, null, null);
+
+	private final Action action;
+	private final String message, reason;
+
+	private FilterVerdict(Action action, String message, String reason) {
+		this.action = action;
+		this.message = message;
+		this.reason = reason;
+	}
+
+	/**
+	 * Gets the verdict of a message without any blacklisted words.
+	 *
+	 * @return Allowed verdict
+	 */
+	public static FilterVerdict allowed() { return ALLOWED; }
+
+	/**
+	 * Creates the verdict of a message that is sent with words starred out.
+	 *
+	 * @param message - Masked message
+	 * @param reason - Blacklisted words that were found
+	 * @return Masked verdict
+	 */
+	public static FilterVerdict masked(String message, String reason) { return new FilterVerdict(Action.MASKED, message, reason); }
+
+	/**
+	 * Creates the verdict of a message that is not sent.
+	 *
+	 * @param reason - Blacklisted words that were found
+	 * @return Blocked verdict
+	 */
+	public static FilterVerdict blocked(String reason) { return new FilterVerdict(Action.BLOCKED, null, reason); }
+
+	/**
+	 * Gets what is to be done with the message.
+	 *
+	 * @return Action
+	 */
+	public Action getAction() { return action; }
+
+	/**
+	 * Gets the message with the blacklisted words starred out. This is NULL unless the action is
+	 * {@link Action#MASKED}.
+	 *
+	 * @return Masked message
+	 */
+	public String getMessage() { return message; }
+
+	/**
+	 * Gets the reason the message was masked or blocked; the blacklisted words that were found, in their
+	 * plain form. This is NULL if the message was allowed.
+	 *
+	 * @return Reason
+	 */
+	public String getReason() { return reason; }
+
+	/**
+	 * Gets the message to send; the masked message if masked, otherwise the given original message.
+	 *
+	 * @param original - Original message
+	 * @return Message to send, or NULL if blocked
+	 */
+	public String apply(String original) {
+		switch(action) {
+			case MASKED: return message;
+			case BLOCKED: return null;
+			default: return original;
+		}
+	}
+}
@@ -0,0 +1,277 @@
+package coldfyre.cfchat.filter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds words that are close to, but not the same as, a set of words; such as 'fvck' or 'shiit'. How close a word is, is
+ * the number of single character changes (added, removed or replaced) needed to turn one into the other. A word matches if
+ * at least the filter percent of the blacklisted word is unchanged, which allows <i>floor((1 - percent) * length)</i>
+ * changes. Words shorter than {@link #MIN_LENGTH} allow no changes, as most short words are a change or two away from
+ * another real word; those are only found by the exact search of the blacklist.</br></br>
+ *
+ * Words are not compared against every blacklisted word. Each blacklisted word that allows k changes is split into k + 1
+ * pieces; as k changes can break at most k pieces, a close word must contain one of the pieces near the same position.
+ * Only the words with a piece found within the checked word are compared, which keeps the cost of a check about the same
+ * no matter how many words are blacklisted.</br></br>
+ *
+ * The number of changes between two words is computed 64 characters at a time using the bits of a long (Myers / Hyyrö),
+ * rather than filling a table for every pair of characters. This object does not change once built, and can be used by
+ * any number of threads at the same time.
+ *
+ * @author Sommod
+ * @version 1.0
+ *
+ */
+public class FuzzyMatcher {
+
+	/** Length a blacklisted word needs before it allows any changes. */
+	public static final int MIN_LENGTH = 5;
+
+	private final double percent;
+	private final Pattern[] patterns;
+
+	// Pieces of the words; each value holds pairs of (PATTERN, START OF PIECE)
+	private final Map<String, int[]> pieces;
+	private final int[] pieceLengths;
+
+	// Words that allow as many changes as they have characters, these can't be split and are always compared
+	private final Pattern[] unsplit;
+
+	/**
+	 * Builds the matcher of the given words. Words are made lower-case; empty and duplicate words are ignored.
+	 *
+	 * @param words - Words to match against
+	 * @param percent - Filter percent, 0 ~ 1
+	 */
+	public FuzzyMatcher(Collection<String> words, double percent) {
+		this.percent = percent;
+
+		Map<String, List<Integer>> building = new HashMap<String, List<Integer>>();
+		List<Pattern> all = new ArrayList<Pattern>(), always = new ArrayList<Pattern>();
+		BitSet lengths = new BitSet();
+		Set<String> added = new HashSet<String>();
+
+		for(String word : words) {
+			String lower = word.toLowerCase();
+
+			if(lower.isEmpty() || !added.add(lower))
+				continue;
+
+			Pattern pattern = new Pattern(lower, getMaxDistance(lower.length(), percent));
+
+			// Words that allow no changes are already found by the exact search
+			if(pattern.k == 0)
+				continue;
+
+			int index = all.size();
+
+			all.add(pattern);
+
+			if(pattern.k >= lower.length()) {
+				always.add(pattern);
+				continue;
+			}
+
+			// Splits the word into k + 1 pieces of (nearly) the same length
+			int count = pattern.k + 1;
+
+			for(int i = 0; i < count; i++) {
+				int start = lower.length() * i / count, end = lower.length() * (i + 1) / count;
+				List<Integer> list = building.computeIfAbsent(lower.substring(start, end), s -> new ArrayList<Integer>());
+
+				list.add(index);
+				list.add(start);
+				lengths.set(end - start);
+			}
+		}
+
+		patterns = all.toArray(new Pattern[all.size()]);
+		unsplit = always.toArray(new Pattern[always.size()]);
+		pieceLengths = lengths.stream().toArray();
+		pieces = new HashMap<String, int[]>();
+
+		for(Map.Entry<String, List<Integer>> entry : building.entrySet())
+			pieces.put(entry.getKey(), entry.getValue().stream().mapToInt(Integer::intValue).toArray());
+	}
+
+	/**
+	 * Gets the filter percent this matcher was built with.
+	 *
+	 * @return Filter percent
+	 */
+	public double getPercent() { return percent; }
+
+	/**
+	 * Gets the allowed number of changes for a word of the given length. Words shorter than
+	 * {@link #MIN_LENGTH} allow none.
+	 *
+	 * @param length - Length of the blacklisted word
+	 * @param percent - Filter percent, 0 ~ 1
+	 * @return Allowed number of changes
+	 */
+	public static int getMaxDistance(int length, double percent) {
+		if(length < MIN_LENGTH)
+			return 0;
+
+		return (int) Math.floor((1.0D - Math.max(0.0D, Math.min(1.0D, percent))) * length);
+	}
+
+	/**
+	 * Finds a blacklisted word that is within it's allowed number of changes of the given word.
+	 *
+	 * @param word - Lower-case word to check
+	 * @return Matched word, or NULL if none
+	 */
+	public String match(String word) {
+		if(word.isEmpty())
+			return null;
+
+		BitSet checked = null;
+
+		for(int i = 0; i < word.length(); i++) {
+			for(int length : pieceLengths) {
+				if(i + length > word.length())
+					break;
+
+				int[] found = pieces.get(word.substring(i, i + length));
+
+				if(found == null)
+					continue;
+
+				for(int n = 0; n < found.length; n += 2) {
+					Pattern pattern = patterns[found[n]];
+
+					// The piece must be found within k characters of where it is in the word
+					if(Math.abs(i - found[n + 1]) > pattern.k || Math.abs(word.length() - pattern.word.length()) > pattern.k)
+						continue;
+
+					if(checked == null)
+						checked = new BitSet(patterns.length);
+					else if(checked.get(found[n]))
+						continue;
+
+					checked.set(found[n]);
+
+					if(pattern.distance(word) <= pattern.k)
+						return pattern.word;
+				}
+			}
+		}
+
+		for(Pattern pattern : unsplit) {
+			if(pattern.distance(word) <= pattern.k)
+				return pattern.word;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Gets the number of single character changes needed to turn one word into the other.
+	 *
+	 * @param a - First word
+	 * @param b - Second word
+	 * @return Edit distance
+	 */
+	public static int distance(String a, String b) { return a.isEmpty() ? b.length() : new Pattern(a, 0).distance(b); }
+
+	// Edit distance by filling a table, used for words longer than 64 characters
+	private static int tableDistance(String a, String b) {
+		int[] prev = new int[b.length() + 1], cur = new int[b.length() + 1];
+
+		for(int j = 0; j <= b.length(); j++)
+			prev[j] = j;
+
+		for(int i = 1; i <= a.length(); i++) {
+			cur[0] = i;
+
+			for(int j = 1; j <= b.length(); j++)
+				cur[j] = Math.min(Math.min(cur[j - 1], prev[j]) + 1, prev[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1));
+
+			int[] swap = prev;
+			prev = cur;
+			cur = swap;
+		}
+
+		return prev[b.length()];
+	}
+
+	/**
+	 * A blacklisted word, with the bit masks used to compute the number of changes to it.
+	 *
+	 * @author Sommod
+	 * @version 1.0
+	 *
+	 */
+	private static class Pattern {
+
+		private final String word;
+		private final int k;
+
+		// Bit masks of the positions of each character within the word, characters sorted for a binary search
+		private final char[] chars;
+		private final long[] masks;
+
+		private Pattern(String word, int k) {
+			this.word = word;
+			this.k = k;
+
+			char[] sorted = word.toCharArray();
+			Arrays.sort(sorted);
+
+			int unique = 0;
+			for(int i = 0; i < sorted.length; i++) {
+				if(i == 0 || sorted[i] != sorted[i - 1])
+					sorted[unique++] = sorted[i];
+			}
+
+			chars = Arrays.copyOf(sorted, unique);
+			masks = new long[unique];
+
+			for(int i = 0; i < word.length() && i < 64; i++)
+				masks[Arrays.binarySearch(chars, word.charAt(i))] |= 1L << i;
+		}
+
+		// Edit distance between this word and the text, each bit of the longs being a character of this word
+		private int distance(String text) {
+			int m = word.length();
+
+			if(m > 64)
+				return tableDistance(word, text);
+
+			long last = 1L << (m - 1);
+			long vp = m == 64 ? ~0L : (1L << m) - 1L, vn = 0L;
+			int score = m;
+
+			for(int j = 0; j < text.length(); j++) {
+				int index = Arrays.binarySearch(chars, text.charAt(j));
+				long eq = index < 0 ? 0L : masks[index];
+				long xv = eq | vn;
+				long xh = (((eq & vp) + vp) ^ vp) | eq;
+				long ph = vn | ~(xh | vp);
+				long mh = vp & xh;
+
+				if((ph & last) != 0L)
+					score++;
+				else if((mh & last) != 0L)
+					score--;
+
+				// The first row grows by one for each character of the text
+				ph = (ph << 1) | 1L;
+				mh <<= 1;
+				vp = mh | ~(xv | ph);
+				vn = ph & xv;
+			}
+
+			return score;
+		}
+	}
+}
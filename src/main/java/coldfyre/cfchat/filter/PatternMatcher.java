@@ -0,0 +1,204 @@
+package coldfyre.cfchat.filter;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+
+/**
+ * Finds every occurrence of a fixed set of words within a text in a single pass over the text (Aho-Corasick). The words
+ * are compiled into a tree of characters once; each state of the tree knows where to continue when the next character
+ * does not match, so the text is never read more than once no matter how many words are searched for.</br></br>
+ *
+ * Matching ignores case. Found occurrences are returned as pairs of <strong>(START, END)</strong> positions within the
+ * text, END being exclusive, in the order their ends are found. This object does not change once built, and can be used
+ * by any number of threads at the same time.
+ *
+ * @author Sommod
+ * @version 1.0
+ *
+ */
+public class PatternMatcher {
+
+	private static final int[] NO_SPANS = new int[0];
+
+	// Transitions of each state, labels sorted for a binary search
+	private final char[][] labels;
+	private final int[][] targets;
+
+	// State to continue from when no transition matches
+	private final int[] fail;
+
+	// Length of the word ending at each state (0 if none), and the next state along the fail links that ends a word
+	private final int[] length;
+	private final int[] output;
+
+	private final int size;
+
+	/**
+	 * Compiles the given words. Empty words are ignored.
+	 *
+	 * @param words - Words to search for
+	 */
+	public PatternMatcher(Collection<String> words) {
+		int capacity = 1;
+
+		for(String word : words)
+			capacity += word.length();
+
+		char[][] labels = new char[capacity][];
+		int[][] targets = new int[capacity][];
+		int[] length = new int[capacity];
+		int states = 1;
+
+		labels[0] = new char[0];
+		targets[0] = new int[0];
+
+		for(String word : words) {
+			int state = 0;
+
+			for(int i = 0; i < word.length(); i++) {
+				char c = Character.toLowerCase(word.charAt(i));
+				int next = step(labels[state], targets[state], c);
+
+				if(next < 0) {
+					next = states++;
+					labels[next] = new char[0];
+					targets[next] = new int[0];
+					add(labels, targets, state, c, next);
+				}
+
+				state = next;
+			}
+
+			if(state != 0)
+				length[state] = Math.max(length[state], word.length());
+		}
+
+		this.size = states;
+		this.labels = Arrays.copyOf(labels, states);
+		this.targets = Arrays.copyOf(targets, states);
+		this.length = Arrays.copyOf(length, states);
+		this.fail = new int[states];
+		this.output = new int[states];
+
+		link();
+	}
+
+	/**
+	 * Checks if no words were compiled into this matcher.
+	 *
+	 * @return True - if nothing can be found
+	 */
+	public boolean isEmpty() { return size == 1; }
+
+	/**
+	 * Finds every occurrence of the words within the text, including overlapping occurrences.
+	 *
+	 * @param text - Text to search
+	 * @return Pairs of start and end positions
+	 */
+	public int[] find(CharSequence text) {
+		if(isEmpty())
+			return NO_SPANS;
+
+		int[] spans = NO_SPANS;
+		int count = 0, state = 0;
+
+		for(int i = 0; i < text.length(); i++) {
+			char c = Character.toLowerCase(text.charAt(i));
+			int next;
+
+			while((next = step(labels[state], targets[state], c)) < 0 && state != 0)
+				state = fail[state];
+
+			state = Math.max(next, 0);
+
+			for(int out = length[state] > 0 ? state : output[state]; out != 0; out = output[out]) {
+				if(count + 2 > spans.length)
+					spans = Arrays.copyOf(spans, Math.max(8, spans.length * 2));
+
+				spans[count++] = i + 1 - length[out];
+				spans[count++] = i + 1;
+			}
+		}
+
+		return count == spans.length ? spans : Arrays.copyOf(spans, count);
+	}
+
+	/**
+	 * Checks if any of the words occur within the text. This stops at the first occurrence.
+	 *
+	 * @param text - Text to search
+	 * @return True - if a word was found
+	 */
+	public boolean matches(CharSequence text) {
+		int state = 0;
+
+		for(int i = 0; i < text.length() && !isEmpty(); i++) {
+			char c = Character.toLowerCase(text.charAt(i));
+			int next;
+
+			while((next = step(labels[state], targets[state], c)) < 0 && state != 0)
+				state = fail[state];
+
+			state = Math.max(next, 0);
+
+			if(length[state] > 0 || output[state] != 0)
+				return true;
+		}
+
+		return false;
+	}
+
+	// Computes the fail and output links of each state, closest to the root first
+	private void link() {
+		Deque<Integer> queue = new ArrayDeque<Integer>();
+
+		for(int child : targets[0])
+			queue.add(child);
+
+		while(!queue.isEmpty()) {
+			int state = queue.poll();
+
+			for(int i = 0; i < labels[state].length; i++) {
+				int child = targets[state][i];
+				int f = fail[state], next;
+
+				while((next = step(labels[f], targets[f], labels[state][i])) < 0 && f != 0)
+					f = fail[f];
+
+				fail[child] = Math.max(next, 0);
+				output[child] = length[fail[child]] > 0 ? fail[child] : output[fail[child]];
+				queue.add(child);
+			}
+		}
+	}
+
+	// Gets the state after the character, or -1 if the state has no such transition
+	private static int step(char[] labels, int[] targets, char c) {
+		int index = Arrays.binarySearch(labels, c);
+
+		return index < 0 ? -1 : targets[index];
+	}
+
+	// Adds a transition, keeping the labels sorted
+	private static void add(char[][] labels, int[][] targets, int state, char c, int next) {
+		char[] l = labels[state];
+		int[] t = targets[state];
+		int index = -Arrays.binarySearch(l, c) - 1;
+
+		char[] nl = new char[l.length + 1];
+		int[] nt = new int[t.length + 1];
+
+		System.arraycopy(l, 0, nl, 0, index);
+		System.arraycopy(t, 0, nt, 0, index);
+		nl[index] = c;
+		nt[index] = next;
+		System.arraycopy(l, index, nl, index + 1, l.length - index);
+		System.arraycopy(t, index, nt, index + 1, t.length - index);
+
+		labels[state] = nl;
+		targets[state] = nt;
+	}
+}
@@ -0,0 +1,269 @@
+package coldfyre.cfchat.filter;
+
+import java.util.Arrays;
+
+/**
+ * Turns a message into the plain form used by the filters, so that hidden words such as 'a.s.s', 'b1tch' or words
+ * written with look-alike letters from other alphabets are found by the same blacklisted word. A message is changed as
+ * follows:
+ * <ul>
+ * <li>Color codes ('&amp;c', '§c') are removed. A '&amp;' within a word (such as 'R&amp;D') is kept.</li>
+ * <li>Letters are made lower-case, accents are removed, and number or symbol replacements and look-alike letters
+ * (Cyrillic and Greek) are turned into the letter they look like. As '1', '!' and '|' may stand for either an 'i' or an
+ * 'l', all of them are turned into an 'i'. Numbers and symbols are only replaced within words that also have letters,
+ * so a number such as '455' is kept as it is.</li>
+ * <li>Single letters split by symbols or spaces ('f.u.c.k', 'f u c k') are joined into one word.</li>
+ * </ul>
+ *
+ * Blacklisted words are changed the same way before they are compiled, so only the plain form of each word is needed
+ * within the lists.</br></br>
+ *
+ * The changed text is written into a buffer that is kept between messages, along with the position each character came
+ * from within the original message; this way found words can be masked within the original message. A normalizer is not
+ * thread-safe, {@link #forThread()} gives each thread it's own.
+ *
+ * @author Sommod
+ * @version 1.0
+ *
+ */
+public class TextNormalizer implements CharSequence {
+
+	// Characters past this are kept as they are, other than being made lower-case
+	private static final int TABLE_SIZE = 0x0500;
+	private static final char[] TABLE = new char[TABLE_SIZE];
+
+	// Marks a color code character within the table
+	private static final String COLOR_CODES = "0123456789abcdefklmnorx";
+
+	private static final ThreadLocal<TextNormalizer> THREAD = ThreadLocal.withInitial(TextNormalizer::new);
+
+	static {
+		for(char c = 0; c < TABLE_SIZE; c++)
+			TABLE[c] = Character.toLowerCase(c);
+
+		map("4@", 'a');
+		map("8", 'b');
+		map("3", 'e');
+		map("9", 'g');
+		map("1!|l", 'i');
+		map("0", 'o');
+		map("5$", 's');
+		map("7", 't');
+		map("2", 'z');
+
+		// Accented latin letters
+		map("àáâãäåāăą", 'a');
+		map("çćĉċč", 'c');
+		map("ďđ", 'd');
+		map("èéêëēĕėęě", 'e');
+		map("ĝğġģ", 'g');
+		map("ĥħ", 'h');
+		map("ìíîïĩīĭįı", 'i');
+		map("ĵ", 'j');
+		map("ķ", 'k');
+		map("ĺļľŀł", 'i');
+		map("ñńņňŉ", 'n');
+		map("òóôõöøōŏő", 'o');
+		map("ŕŗř", 'r');
+		map("śŝşš", 's');
+		map("ţťŧ", 't');
+		map("ùúûüũūŭůűų", 'u');
+		map("ŵ", 'w');
+		map("ýÿŷ", 'y');
+		map("źżž", 'z');
+
+		// Cyrillic and Greek look-alikes
+		map("аα", 'a');
+		map("вβ", 'b');
+		map("сς", 'c');
+		map("еεэ", 'e');
+		map("һη", 'h');
+		map("іιї", 'i');
+		map("ј", 'j');
+		map("кκ", 'k');
+		map("м", 'm');
+		map("пπ", 'n');
+		map("оοσ", 'o');
+		map("рρ", 'p');
+		map("ѕ", 's');
+		map("тτ", 't');
+		map("υ", 'u');
+		map("νѵ", 'v');
+		map("шω", 'w');
+		map("хχ", 'x');
+		map("уγ", 'y');
+
+		// Upper-case letters use the same replacement as their lower-case letter
+		for(char c = 0; c < TABLE_SIZE; c++) {
+			char lower = Character.toLowerCase(c);
+
+			if(lower != c && lower < TABLE_SIZE)
+				TABLE[c] = TABLE[lower];
+		}
+	}
+
+	private char[] chars = new char[256];
+	private int[] offsets = new int[256];
+	private int length;
+
+	/**
+	 * Creates a new normalizer with it's own buffer.
+	 */
+	public TextNormalizer() {}
+
+	/**
+	 * Gets the normalizer of the current thread.
+	 *
+	 * @return TextNormalizer
+	 */
+	public static TextNormalizer forThread() { return THREAD.get(); }
+
+	/**
+	 * Changes a single word into it's plain form, used for the words of the filter lists. This does not use
+	 * (or change) the normalizer of the current thread.
+	 *
+	 * @param word - Word to change
+	 * @return Plain form of the word
+	 */
+	public static String normalizeWord(String word) { return new TextNormalizer().normalize(word).toString(); }
+
+	/**
+	 * Changes the text into it's plain form, replacing the text held by this normalizer. The result is
+	 * read through this object, which is a {@link CharSequence} of the changed text.
+	 *
+	 * @param text - Text to change
+	 * @return This normalizer
+	 */
+	public TextNormalizer normalize(CharSequence text) {
+		if(chars.length < text.length()) {
+			chars = new char[Math.max(text.length(), chars.length * 2)];
+			offsets = new int[chars.length];
+		}
+
+		length = 0;
+
+		// Start of the current word, and the end of the single letters being joined (-1 if none)
+		int wordStart = 0, joinEnd = -1;
+
+		// End of the current token within the text, and if it has any letters; also the end of the last color code
+		int tokenEnd = 0, codeEnd = -1;
+		boolean letters = false;
+
+		for(int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+
+			if(isColorCode(text, i, codeEnd)) {
+				codeEnd = ++i + 1;
+				continue;
+			}
+
+			if(i >= tokenEnd) {
+				letters = false;
+
+				for(tokenEnd = i; tokenEnd < text.length() && isWordChar(text.charAt(tokenEnd)); tokenEnd++)
+					letters |= Character.isLetter(text.charAt(tokenEnd));
+			}
+
+			char folded = letters || Character.isLetter(c) ? fold(c) : Character.toLowerCase(c);
+
+			if(Character.isLetterOrDigit(folded)) {
+				chars[length] = folded;
+				offsets[length++] = i;
+				continue;
+			}
+
+			joinEnd = endWord(wordStart, joinEnd);
+
+			chars[length] = folded;
+			offsets[length++] = i;
+			wordStart = length;
+		}
+
+		endWord(wordStart, joinEnd);
+		return this;
+	}
+
+	// Checks for a color code at the index. A '&' is only a color code at the start of a word or directly after
+	// another color code, so text such as 'R&D' is kept.
+	private static boolean isColorCode(CharSequence text, int index, int codeEnd) {
+		char c = text.charAt(index);
+
+		if((c != '&' && c != '§') || index + 1 >= text.length() || COLOR_CODES.indexOf(Character.toLowerCase(text.charAt(index + 1))) < 0)
+			return false;
+
+		return c == '§' || index == 0 || index == codeEnd || !Character.isLetterOrDigit(text.charAt(index - 1));
+	}
+
+	// Checks if the character is part of a word once replaced, such as a letter, number or '@'
+	private static boolean isWordChar(char c) { return Character.isLetterOrDigit(fold(c)); }
+
+	// Replacement of the character
+	private static char fold(char c) { return c < TABLE_SIZE ? TABLE[c] : Character.toLowerCase(c); }
+
+	// Called at the end of each word. A single letter word directly after other single letters (with only
+	// symbols or spaces between them) is moved next to them. Returns the new end of the joined letters.
+	private int endWord(int wordStart, int joinEnd) {
+		int size = length - wordStart;
+
+		if(size != 1)
+			return size == 0 ? joinEnd : -1;
+
+		if(joinEnd < 0)
+			return length;
+
+		chars[joinEnd] = chars[wordStart];
+		offsets[joinEnd] = offsets[wordStart];
+		length = joinEnd + 1;
+		return length;
+	}
+
+	/**
+	 * Gets the position within the original text of the character at the given position.
+	 *
+	 * @param index - Position within the changed text
+	 * @return Position within the original text
+	 */
+	public int getOriginalIndex(int index) { return offsets[index]; }
+
+	/**
+	 * Changes pairs of (START, END) positions within the changed text into the positions within the original
+	 * text. The pairs are changed in place.
+	 *
+	 * @param spans - Pairs of start and end (exclusive) positions
+	 * @return The same array
+	 */
+	public int[] toOriginal(int[] spans) {
+		for(int i = 0; i < spans.length; i += 2) {
+			int end = spans[i + 1];
+
+			spans[i] = offsets[spans[i]];
+			spans[i + 1] = offsets[end - 1] + 1;
+		}
+
+		return spans;
+	}
+
+	@Override
+	public int length() { return length; }
+
+	@Override
+	public char charAt(int index) { return chars[index]; }
+
+	@Override
+	public CharSequence subSequence(int start, int end) { return new String(chars, start, end - start); }
+
+	@Override
+	public String toString() { return new String(chars, 0, length); }
+
+	/**
+	 * Gets a copy of the changed text.
+	 *
+	 * @return Copy of changed text
+	 */
+	public char[] toCharArray() { return Arrays.copyOf(chars, length); }
+
+	private static void map(String from, char to) {
+		for(int i = 0; i < from.length(); i++)
+			TABLE[from.charAt(i)] = to;
+	}
+}
@@ -0,0 +1,271 @@
+package coldfyre.cfchat.filter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * An unchangeable set of lower-case words, built for large word collections. Rather than a list of strings, all the
+ * characters of the words are kept within one array, with the start of each word within a second array. Words are found
+ * through a table of word numbers placed by the hash of the word (open addressing), so checking a word only reads the
+ * characters of that word.</br></br>
+ *
+ * This object does not change once built, and can be used by any number of threads at the same time.
+ *
+ * @author Sommod
+ * @version 1.0
+ *
+ */
+public class WordDictionary {
+
+	/**
+	 * A dictionary without any words.
+	 */
+	public static final WordDictionary EMPTY = new WordDictionary(new char[0], new int[] {0}, 0);
+
+	private final char[] chars;
+	private final int[] offsets;
+	private final int size;
+
+	// Word number + 1 of each slot, 0 being an empty slot
+	private final int[] table;
+	private final int mask;
+
+	private WordDictionary(char[] chars, int[] offsets, int size) {
+		this.chars = chars;
+		this.offsets = offsets;
+		this.size = size;
+
+		int capacity = Integer.highestOneBit(Math.max(2, size * 2) - 1) << 1;
+
+		table = new int[capacity];
+		mask = capacity - 1;
+
+		for(int i = 0; i < size; i++) {
+			int slot = hash(chars, offsets[i], offsets[i + 1]) & mask;
+
+			while(table[slot] != 0)
+				slot = (slot + 1) & mask;
+
+			table[slot] = i + 1;
+		}
+	}
+
+	/**
+	 * Creates a dictionary of the given words. Words are made lower-case; empty and duplicate words are ignored.
+	 *
+	 * @param words - Words of the dictionary
+	 * @return WordDictionary
+	 */
+	public static WordDictionary of(Collection<String> words) {
+		Builder builder = new Builder();
+
+		for(String word : words)
+			builder.add(word);
+
+		return builder.build();
+	}
+
+	/**
+	 * Reads a dictionary from a UTF-8 text file with one word on each line. The stream is read fully in one
+	 * go and closed afterwards. Empty lines are ignored.
+	 *
+	 * @param in - Stream of the file
+	 * @return WordDictionary
+	 * @throws IOException - if the stream could not be read
+	 */
+	public static WordDictionary read(InputStream in) throws IOException {
+		byte[] data;
+
+		try(InputStream stream = in) {
+			data = stream.readAllBytes();
+		}
+
+		Builder builder = new Builder();
+		String text = new String(data, StandardCharsets.UTF_8);
+		int start = 0;
+
+		for(int i = 0; i <= text.length(); i++) {
+			if(i == text.length() || text.charAt(i) == '\n' || text.charAt(i) == '\r') {
+				builder.add(text, start, i);
+				start = i + 1;
+			}
+		}
+
+		return builder.build();
+	}
+
+	/**
+	 * Checks if the word is within this dictionary. The word is compared ignoring case.
+	 *
+	 * @param word - Word to check
+	 * @return True - if the word exists
+	 */
+	public boolean contains(CharSequence word) {
+		int hash = 0;
+
+		for(int i = 0; i < word.length(); i++)
+			hash = 31 * hash + Character.toLowerCase(word.charAt(i));
+
+		for(int slot = mix(hash) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+			int index = table[slot] - 1;
+
+			if(equals(index, word))
+				return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Creates a dictionary of the words within this dictionary, that are not within the given dictionary.
+	 *
+	 * @param other - Words to remove
+	 * @return WordDictionary
+	 */
+	public WordDictionary without(WordDictionary other) {
+		Builder builder = new Builder();
+
+		for(int i = 0; i < size; i++) {
+			String word = get(i);
+
+			if(!other.contains(word))
+				builder.add(word);
+		}
+
+		return builder.build();
+	}
+
+	/**
+	 * Creates a dictionary of the plain form of the words within this dictionary, as changed by the
+	 * {@link TextNormalizer}. Words with the same plain form (such as 'ass' and 'a55') are kept once.
+	 *
+	 * @return WordDictionary
+	 */
+	public WordDictionary normalize() {
+		TextNormalizer plain = new TextNormalizer();
+		Builder builder = new Builder();
+
+		for(int i = 0; i < size; i++)
+			builder.add(plain.normalize(get(i)).toString());
+
+		return builder.build();
+	}
+
+	/**
+	 * Gets the number of words within this dictionary.
+	 *
+	 * @return Number of words
+	 */
+	public int size() { return size; }
+
+	/**
+	 * Gets the word at the given position, words are kept in the order they were added.
+	 *
+	 * @param index - Position of word
+	 * @return Word
+	 */
+	public String get(int index) { return new String(chars, offsets[index], offsets[index + 1] - offsets[index]); }
+
+	private boolean equals(int index, CharSequence word) {
+		int start = offsets[index], length = offsets[index + 1] - start;
+
+		if(length != word.length())
+			return false;
+
+		for(int i = 0; i < length; i++) {
+			if(chars[start + i] != Character.toLowerCase(word.charAt(i)))
+				return false;
+		}
+
+		return true;
+	}
+
+	private static int hash(char[] chars, int from, int to) {
+		int hash = 0;
+
+		for(int i = from; i < to; i++)
+			hash = 31 * hash + chars[i];
+
+		return mix(hash);
+	}
+
+	// Spreads the bits of the hash, as only the low bits pick the slot
+	private static int mix(int hash) { return (hash ^ (hash >>> 16)) * 0x45D9F3B; }
+
+	/**
+	 * Collects the words of a dictionary.
+	 *
+	 * @author Sommod
+	 * @version 1.0
+	 *
+	 */
+	private static class Builder {
+
+		private char[] chars = new char[256];
+		private int[] offsets = new int[64];
+		private int size, length;
+
+		private void add(String word) { add(word, 0, word.length()); }
+
+		private void add(String text, int from, int to) {
+			while(from < to && Character.isWhitespace(text.charAt(from)))
+				from++;
+
+			while(to > from && Character.isWhitespace(text.charAt(to - 1)))
+				to--;
+
+			if(from == to)
+				return;
+
+			if(length + (to - from) > chars.length)
+				chars = Arrays.copyOf(chars, Math.max(chars.length * 2, length + (to - from)));
+
+			if(size + 2 > offsets.length)
+				offsets = Arrays.copyOf(offsets, offsets.length * 2);
+
+			for(int i = from; i < to; i++)
+				chars[length + i - from] = Character.toLowerCase(text.charAt(i));
+
+			offsets[size] = length;
+			length += to - from;
+			offsets[++size] = length;
+		}
+
+		// Drops duplicate words through a temporary table of the words, then creates the dictionary
+		private WordDictionary build() {
+			int[] seen = new int[Integer.highestOneBit(Math.max(2, size * 2) - 1) << 1];
+			char[] keptChars = new char[length];
+			int[] kept = new int[size + 1];
+			int count = 0, keptLength = 0;
+
+			for(int i = 0; i < size; i++) {
+				int start = offsets[i], end = offsets[i + 1];
+				int slot = hash(chars, start, end) & (seen.length - 1);
+				boolean duplicate = false;
+
+				for(; seen[slot] != 0; slot = (slot + 1) & (seen.length - 1)) {
+					int other = seen[slot] - 1;
+
+					if(Arrays.equals(chars, offsets[other], offsets[other + 1], chars, start, end)) {
+						duplicate = true;
+						break;
+					}
+				}
+
+				if(duplicate)
+					continue;
+
+				seen[slot] = i + 1;
+				System.arraycopy(chars, start, keptChars, keptLength, end - start);
+				kept[count] = keptLength;
+				keptLength += end - start;
+				kept[++count] = keptLength;
+			}
+
+			return new WordDictionary(Arrays.copyOf(keptChars, keptLength), Arrays.copyOf(kept, count + 1), count);
+		}
+	}
+}
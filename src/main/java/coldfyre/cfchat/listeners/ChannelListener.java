@@ -0,0 +1,62 @@
+package coldfyre.cfchat.listeners;
+
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerChatEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import coldfyre.cfchat.channels.ChannelManager;
+import coldfyre.cfchat.channels.ChatChannel;
+import coldfyre.cfchat.channels.ChatFanout;
+
+/**
+ * Listener that sends the chat messages of players through the {@link ChatFanout}. Messages of players chatting
+ * within another channel (such as the staff chat) are cancelled and sent to that channel. Messages of the main chat are
+ * sent to the recipients of the event, which are then cleared so the server does not send the message a second time;
+ * the event itself is left as is for other plugins (and the console) to see.</br></br>
+ *
+ * The listener also removes players from the channels as they leave; they are added by the {@link ChannelManager}
+ * whenever their permissions change.
+ *
+ * @author Sommod
+ * @version 1.0
+ *
+ */
+public class ChannelListener implements Listener {
+
+	private ChannelManager channelManager;
+	private ChatFanout chatFanout;
+
+	/**
+	 * Creates a new listener for the chat channels.
+	 *
+	 * @param channelManager - Manager of the channels
+	 * @param chatFanout - Fan-out of the channel messages
+	 */
+	public ChannelListener(ChannelManager channelManager, ChatFanout chatFanout) {
+		this.channelManager = channelManager;
+		this.chatFanout = chatFanout;
+	}
+
+	@EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
+	public void onChat(AsyncPlayerChatEvent event) {
+		Player sender = event.getPlayer();
+		ChatChannel channel = channelManager.getFocus(sender);
+
+		if(channel != channelManager.getPublicChannel()) {
+			event.setCancelled(true);
+			chatFanout.send(channel, sender, event.getMessage());
+			return;
+		}
+
+		if(chatFanout.dispatch(channel, sender, event.getMessage(), chatFanout.getEventTemplate(event.getFormat()), event.getRecipients()))
+			event.getRecipients().clear();
+		else
+			event.setCancelled(true);
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void onQuit(PlayerQuitEvent event) { channelManager.remove(event.getPlayer()); }
+}
@@ -0,0 +1,37 @@
+package coldfyre.cfchat.listeners;
+
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerChatEvent;
+import org.bukkit.event.player.PlayerCommandPreprocessEvent;
+
+import coldfyre.cfchat.manager.ChatLogger;
+import coldfyre.cfchat.players.PlayerLog.LogType;
+
+/**
+ * Listener that passes the messages and commands of players to the {@link ChatLogger}. Every message
+ * the player attempts to send is logged, even if it was cancelled by another plugin (or by the filter).
+ *
+ * @author Sommod
+ * @version 1.0
+ *
+ */
+public class ChatLogListener implements Listener {
+
+	private ChatLogger chatLogger;
+
+	/**
+	 * Creates a new listener for logging chat.
+	 *
+	 * @param chatLogger - Logger of the player chat
+	 */
+	public ChatLogListener(ChatLogger chatLogger) { this.chatLogger = chatLogger; }
+
+	// Logged before the filter changes the message, so the raw message is kept
+	@EventHandler(priority = EventPriority.LOWEST)
+	public void onChat(AsyncPlayerChatEvent event) { chatLogger.log(event.getPlayer(), LogType.MESSAGES, event.getMessage()); }
+
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void onCommand(PlayerCommandPreprocessEvent event) { chatLogger.log(event.getPlayer(), LogType.COMMANDS, event.getMessage()); }
+}
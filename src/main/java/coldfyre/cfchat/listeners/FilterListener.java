@@ -0,0 +1,76 @@
+package coldfyre.cfchat.listeners;
+
+import org.bukkit.ChatColor;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerChatEvent;
+
+import coldfyre.cfchat.channels.ChannelManager;
+import coldfyre.cfchat.channels.ChatFanout;
+import coldfyre.cfchat.filter.FilterService;
+import coldfyre.cfchat.filter.FilterVerdict;
+import coldfyre.cfchat.manager.PermissionService;
+
+/**
+ * Listener that passes the chat messages of players through the {@link FilterService}. The filter is run on the
+ * chat thread of the player, not the main thread. Players with the 'cfchat.blacklist.exempt' permission are not
+ * filtered.</br></br>
+ *
+ * The alternate filter is applied when the message is sent by the {@link ChatFanout}, as the recipients that do not see
+ * selective words are given their own version of the message. Messages sent to another channel (such as the staff
+ * chat) are filtered by the options of that channel instead.
+ *
+ * @author Sommod
+ * @version 1.0
+ *
+ */
+public class FilterListener implements Listener {
+
+	private FilterService filterService;
+	private PermissionService permissionService;
+	private ChannelManager channelManager;
+
+	/**
+	 * Creates a new listener for filtering chat.
+	 *
+	 * @param filterService - Service of the blacklist filter
+	 * @param permissionService - Service of the permission snapshots
+	 * @param channelManager - Manager of the channels
+	 */
+	public FilterListener(FilterService filterService, PermissionService permissionService, ChannelManager channelManager) {
+		this.filterService = filterService;
+		this.permissionService = permissionService;
+		this.channelManager = channelManager;
+	}
+
+	@EventHandler(priority = EventPriority.LOW, ignoreCancelled = true)
+	public void onChat(AsyncPlayerChatEvent event) {
+		if(!filterService.isEnabled() || permissionService.has(event.getPlayer(), PermissionService.BLACKLIST_EXEMPT))
+			return;
+
+		if(channelManager.getFocus(event.getPlayer()) != channelManager.getPublicChannel())
+			return;
+
+		FilterVerdict verdict = filterService.check(event.getMessage());
+
+		if(verdict.getAction() == FilterVerdict.Action.ALLOWED)
+			return;
+
+		if(verdict.getAction() == FilterVerdict.Action.BLOCKED)
+			event.setCancelled(true);
+		else
+			event.setMessage(verdict.getMessage());
+
+		respond(event.getPlayer());
+	}
+
+	// Sends the filter response to the player, if enabled
+	private void respond(Player player) {
+		String response = filterService.getResponse();
+
+		if(response != null)
+			player.sendMessage(ChatColor.translateAlternateColorCodes('&', response));
+	}
+}
@@ -0,0 +1,39 @@
+package coldfyre.cfchat.listeners;
+
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import coldfyre.cfchat.manager.PermissionService;
+
+/**
+ * Listener that keeps the permission snapshots of the {@link PermissionService} up to date as players join, change
+ * worlds and leave the server.
+ *
+ * @author Sommod
+ * @version 1.0
+ *
+ */
+public class PermissionListener implements Listener {
+
+	private PermissionService permissionService;
+
+	/**
+	 * Creates a new listener for the permission snapshots.
+	 *
+	 * @param permissionService - Service of the permission snapshots
+	 */
+	public PermissionListener(PermissionService permissionService) { this.permissionService = permissionService; }
+
+	@EventHandler(priority = EventPriority.LOWEST)
+	public void onJoin(PlayerJoinEvent event) { permissionService.refresh(event.getPlayer()); }
+
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void onWorldChange(PlayerChangedWorldEvent event) { permissionService.refresh(event.getPlayer()); }
+
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void onQuit(PlayerQuitEvent event) { permissionService.remove(event.getPlayer().getUniqueId()); }
+}
@@ -0,0 +1,50 @@
+package coldfyre.cfchat.listeners;
+
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerLoginEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import coldfyre.cfchat.manager.PlayerManager;
+
+/**
+ * Listener that handles players joining and leaving the server. Player data is read while the
+ * player is still logging in (which is done off the main thread), so that by the time the player
+ * has joined, their data is already within memory.
+ *
+ * @author Sommod
+ * @version 1.0
+ *
+ */
+public class PlayerListener implements Listener {
+
+	private PlayerManager playerManager;
+
+	/**
+	 * Creates a new listener for the loading and unloading of player data.
+	 *
+	 * @param playerManager - Manager of the player data
+	 */
+	public PlayerListener(PlayerManager playerManager) { this.playerManager = playerManager; }
+
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void onPreLogin(AsyncPlayerPreLoginEvent event) {
+		if(event.getLoginResult() == AsyncPlayerPreLoginEvent.Result.ALLOWED)
+			playerManager.prepareJoin(event.getUniqueId());
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void onLogin(PlayerLoginEvent event) {
+		if(event.getResult() != PlayerLoginEvent.Result.ALLOWED)
+			playerManager.cancelJoin(event.getPlayer().getUniqueId());
+	}
+
+	@EventHandler(priority = EventPriority.LOWEST)
+	public void onJoin(PlayerJoinEvent event) { playerManager.setOnline(event.getPlayer()); }
+
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void onQuit(PlayerQuitEvent event) { playerManager.setOffline(event.getPlayer()); }
+}
@@ -0,0 +1,108 @@
+package coldfyre.cfchat.listeners;
+
+import org.bukkit.ChatColor;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerChatEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import coldfyre.cfchat.manager.PermissionService;
+import coldfyre.cfchat.manager.PlayerManager;
+import coldfyre.cfchat.players.PlayerConfig;
+import coldfyre.cfchat.spam.DuplicateDetector;
+import coldfyre.cfchat.spam.SpamLimiter;
+
+/**
+ * Listener that passes the chat messages of players through the {@link SpamLimiter} and the {@link DuplicateDetector}.
+ * Messages sent too quickly, and near duplicates of recent messages, are cancelled. Once a player spams too often
+ * within the spam timer, a warning is applied if the auto-warning system is enabled. Players with the
+ * 'cfchat.spamexempt' permission are not limited.
+ *
+ * @author Sommod
+ * @version 1.0
+ *
+ */
+public class SpamListener implements Listener {
+
+	private SpamLimiter spamLimiter;
+	private DuplicateDetector duplicateDetector;
+	private PlayerManager playerManager;
+	private PermissionService permissionService;
+
+	/**
+	 * Creates a new listener for limiting spam.
+	 *
+	 * @param spamLimiter - Limiter of the player messages
+	 * @param duplicateDetector - Detector of near duplicate messages
+	 * @param playerManager - Manager of player data
+	 * @param permissionService - Service of the permission snapshots
+	 */
+	public SpamListener(SpamLimiter spamLimiter, DuplicateDetector duplicateDetector, PlayerManager playerManager, PermissionService permissionService) {
+		this.spamLimiter = spamLimiter;
+		this.duplicateDetector = duplicateDetector;
+		this.playerManager = playerManager;
+		this.permissionService = permissionService;
+	}
+
+	@EventHandler(priority = EventPriority.LOWEST, ignoreCancelled = true)
+	public void onChat(AsyncPlayerChatEvent event) {
+		if((!spamLimiter.isEnabled() && !duplicateDetector.isEnabled()) || permissionService.has(event.getPlayer(), PermissionService.SPAM_EXEMPT))
+			return;
+
+		long now = System.currentTimeMillis();
+		long wait = spamLimiter.isEnabled() ? spamLimiter.acquire(event.getPlayer().getUniqueId(), now) : 0;
+
+		if(wait > 0) {
+			String message = spamLimiter.getResponse();
+			block(event, message == null ? null : message.replace("%time%", String.valueOf((wait + 999) / 1000)), now, "Spamming chat");
+			return;
+		}
+
+		if(!duplicateDetector.isEnabled())
+			return;
+
+		switch(duplicateDetector.check(event.getPlayer().getUniqueId(), event.getMessage(), now)) {
+			case REPEATED:
+				block(event, duplicateDetector.getResponse(), now, "Repeating messages");
+				break;
+
+			case FLOODED:
+				block(event, duplicateDetector.getResponse(), now, "Flooding chat");
+				break;
+
+			default:
+				break;
+		}
+	}
+
+	@EventHandler
+	public void onQuit(PlayerQuitEvent event) { duplicateDetector.remove(event.getPlayer().getUniqueId()); }
+
+	// Cancels the message, and counts it towards the spam limit
+	private void block(AsyncPlayerChatEvent event, String response, long now, String reason) {
+		event.setCancelled(true);
+
+		if(response != null)
+			event.getPlayer().sendMessage(ChatColor.translateAlternateColorCodes('&', response));
+
+		if(spamLimiter.recordSpam(event.getPlayer().getUniqueId(), now))
+			warn(event.getPlayer(), reason);
+	}
+
+	// Applies a warning from the console, if the auto-warning system is enabled
+	private void warn(Player player, String reason) {
+		if(!spamLimiter.isAutoWarnEnabled())
+			return;
+
+		PlayerConfig playerConfig = playerManager.getPlayerConfig(player);
+
+		if(playerConfig == null)
+			return;
+
+		playerConfig.addWarning((OfflinePlayer) null, reason);
+		player.sendMessage(ChatColor.RED + "You have been warned: " + reason);
+	}
+}
@@ -0,0 +1,144 @@
+package coldfyre.cfchat.manager;
+
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
+
+import coldfyre.cfchat.CFChat;
+import coldfyre.cfchat.configuration.ConfigAnnouncement;
+import coldfyre.cfchat.configuration.ConfigAnnouncement.Announcement;
+
+/**
+ * Shows the announcements when their time comes. Announcements are placed on a hashed timing wheel; a ring of slots
+ * where each slot holds the announcements due once the wheel turns to it. The task turns the wheel one slot each
+ * second, so a second where no announcement is due only looks at a single empty slot, no matter how many announcements
+ * there are. Announcements further away than a full turn of the wheel wait the number of turns left within their
+ * slot.</br></br>
+ *
+ * The task runs on the main thread. The message of each announcement is built once when the announcement file is
+ * loaded, and the same message is sent to every player. The exempt permissions of each announcement are turned into a
+ * set of bits of the {@link PermissionService}, so finding who to send to does not check permissions through Bukkit.
+ *
+ * @author Sommod
+ * @version 1.0
+ *
+ */
+public class AnnouncementScheduler implements Runnable {
+
+	// Number of slots (seconds) within one turn of the wheel
+	private static final int WHEEL_SIZE = 512;
+	private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+	private CFChat plugin;
+	private PermissionService permissionService;
+	private Entry[] wheel;
+	private int cursor;
+	private BukkitTask task;
+
+	/**
+	 * Creates a new scheduler of announcements. Nothing is scheduled until reloaded.
+	 *
+	 * @param plugin - Main Plugin
+	 * @param permissionService - Service of the permission snapshots
+	 */
+	AnnouncementScheduler(CFChat plugin, PermissionService permissionService) {
+		this.plugin = plugin;
+		this.permissionService = permissionService;
+		wheel = new Entry[WHEEL_SIZE];
+	}
+
+	/**
+	 * Removes all scheduled announcements and, if enabled, schedules the announcements of the config. Each
+	 * announcement is first shown once it's time has passed from this call.
+	 *
+	 * @param config - Announcement Config
+	 * @param enabled - If announcements are enabled
+	 */
+	void reload(ConfigAnnouncement config, boolean enabled) {
+		stop();
+
+		for(int i = 0; i < WHEEL_SIZE; i++)
+			wheel[i] = null;
+
+		if(!enabled || config.getAnnouncements().isEmpty())
+			return;
+
+		for(Announcement announcement : config.getAnnouncements())
+			schedule(new Entry(announcement, permissionService.mask(config.getExemptPermissions(announcement.getKey()))), announcement.getDefaultTime());
+
+		task = plugin.getServer().getScheduler().runTaskTimer(plugin, this, 20L, 20L);
+	}
+
+	/**
+	 * Stops the task; no announcements are shown until reloaded.
+	 */
+	void stop() {
+		if(task != null)
+			task.cancel();
+
+		task = null;
+	}
+
+	@Override
+	public void run() {
+		cursor = (cursor + 1) & WHEEL_MASK;
+
+		Entry entry = wheel[cursor];
+
+		if(entry == null)
+			return;
+
+		wheel[cursor] = null;
+
+		while(entry != null) {
+			Entry next = entry.next;
+
+			if(entry.rounds > 0) {
+				entry.rounds--;
+				entry.next = wheel[cursor];
+				wheel[cursor] = entry;
+			} else {
+				show(entry);
+				schedule(entry, entry.announcement.getDefaultTime());
+			}
+
+			entry = next;
+		}
+	}
+
+	// Sends the announcement to each online player that is not exempt
+	private void show(Entry entry) {
+		for(Player player : plugin.getServer().getOnlinePlayers()) {
+			if(!permissionService.hasAny(player, entry.exempt))
+				entry.announcement.send(player);
+		}
+	}
+
+	// Places the entry within the slot the given number of seconds from the current slot
+	private void schedule(Entry entry, long seconds) {
+		long delay = Math.max(1, seconds);
+
+		entry.rounds = (delay - 1) / WHEEL_SIZE;
+		entry.next = wheel[(int) ((cursor + delay) & WHEEL_MASK)];
+		wheel[(int) ((cursor + delay) & WHEEL_MASK)] = entry;
+	}
+
+	/**
+	 * An announcement within a slot of the wheel.
+	 *
+	 * @author Sommod
+	 * @version 1.0
+	 *
+	 */
+	private static class Entry {
+
+		private final Announcement announcement;
+		private final long[] exempt;
+		private long rounds;
+		private Entry next;
+
+		private Entry(Announcement announcement, long[] exempt) {
+			this.announcement = announcement;
+			this.exempt = exempt;
+		}
+	}
+}
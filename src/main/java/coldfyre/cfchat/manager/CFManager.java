@@ -7,11 +7,26 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.concurrent.ForkJoinPool;
 
 import com.coldfyre.api.manager.FilesManager;
 import com.coldfyre.api.manager.PluginManager;
 
 import coldfyre.cfchat.CFChat;
+import coldfyre.cfchat.channels.ChannelManager;
+import coldfyre.cfchat.channels.ChatFanout;
+import coldfyre.cfchat.channels.ItemDisplayRenderer;
+import coldfyre.cfchat.commands.CommandChat;
+import coldfyre.cfchat.commands.CommandStaff;
+import coldfyre.cfchat.filter.FilterService;
+import coldfyre.cfchat.listeners.ChannelListener;
+import coldfyre.cfchat.listeners.ChatLogListener;
+import coldfyre.cfchat.listeners.FilterListener;
+import coldfyre.cfchat.listeners.PermissionListener;
+import coldfyre.cfchat.listeners.PlayerListener;
+import coldfyre.cfchat.listeners.SpamListener;
+import coldfyre.cfchat.spam.DuplicateDetector;
+import coldfyre.cfchat.spam.SpamLimiter;
 
 /**
  * Main manager class for the plugin. All <i>(most)</i> files, or rather manager-type files are
@@ -26,9 +41,21 @@ import coldfyre.cfchat.CFChat;
  */
 public class CFManager extends PluginManager<CFChat> {
 	
+	// Upper limit of threads used to read the data files during a reload
+	private static final int MAX_LOADING_THREADS = 8;
+	
 	private FilesManager filesManager;
 	private ConfigManager configManager;
 	private PlayerManager playerManager;
+	private PermissionService permissionService;
+	private ChatLogger chatLogger;
+	private FilterService filterService;
+	private SpamLimiter spamLimiter;
+	private DuplicateDetector duplicateDetector;
+	private AnnouncementScheduler announcementScheduler;
+	private ChannelManager channelManager;
+	private ChatFanout chatFanout;
+	private ItemDisplayRenderer itemRenderer;
 
 	/**
 	 * Creates a new Manager-type object that can be used to store, create and otherwise connect the rest
@@ -44,9 +71,12 @@ public class CFManager extends PluginManager<CFChat> {
 	}
 	
 	/**
-	 * Reloads the plugin and all the data within.
+	 * Reloads the plugin and all the data within. The configs and the data of the online players are
+	 * read across a pool of threads; this method returns once all of it has been read.
 	 */
 	public void reload() {
+		long start = System.currentTimeMillis();
+		
 		if(filesManager == null)
 			filesManager = new FilesManager(this);
 		
@@ -63,17 +93,80 @@ public class CFManager extends PluginManager<CFChat> {
 		loadDataFiles(filesManager.addFile("alternate_file", "Config Data/Alternate Filter Words.yml"), filesManager.getFile("alternate_file"), getPlugin().getClass().getResourceAsStream("default_words.yml"));
 		loadDataFiles(filesManager.addFile("help_file", "Help.txt"), filesManager.getFile("help_file"), getPlugin().getClass().getResourceAsStream("default_help.txt"));
 		
-		if(configManager == null)
-			configManager = new ConfigManager(this);
-		else
-			configManager.reload(filesManager);
+		ForkJoinPool pool = new ForkJoinPool(Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), MAX_LOADING_THREADS)));
 		
-		if(playerManager == null)
-			playerManager = new PlayerManager(this);
-		else
-			playerManager.reload(this);
+		try {
+			if(configManager == null)
+				configManager = new ConfigManager(this, pool);
+			else
+				configManager.reload(filesManager, pool);
+			
+			if(permissionService == null) {
+				permissionService = new PermissionService(getPlugin());
+				getPlugin().getServer().getPluginManager().registerEvents(new PermissionListener(permissionService), getPlugin());
+			}
+			
+			if(playerManager == null) {
+				playerManager = new PlayerManager(this, pool);
+				getPlugin().getServer().getPluginManager().registerEvents(new PlayerListener(playerManager), getPlugin());
+				getPlugin().getCommand("cfchat").setExecutor(new CommandChat(getPlugin()));
+			} else
+				playerManager.reload(this, pool);
+			
+			if(chatLogger == null) {
+				chatLogger = new ChatLogger(getPlugin(), playerManager, configManager.getConfig(ConfigManager.CONFIG_MAIN));
+				chatLogger.start();
+				getPlugin().getServer().getPluginManager().registerEvents(new ChatLogListener(chatLogger), getPlugin());
+			} else
+				chatLogger.reload(configManager.getConfig(ConfigManager.CONFIG_MAIN));
+			
+			if(channelManager == null) {
+				channelManager = new ChannelManager(configManager.getConfig(ConfigManager.CONFIG_MAIN), permissionService);
+				permissionService.setChangeListener(channelManager::refresh);
+			} else
+				channelManager.reload(configManager.getConfig(ConfigManager.CONFIG_MAIN));
+			
+			if(filterService == null) {
+				filterService = new FilterService(getPlugin(), configManager.getConfig(ConfigManager.CONFIG_FILTER), configManager.getConfig(ConfigManager.CONFIG_ALTERNATE), configManager.getConfig(ConfigManager.CONFIG_MAIN));
+				getPlugin().getServer().getPluginManager().registerEvents(new FilterListener(filterService, permissionService, channelManager), getPlugin());
+			} else
+				filterService.reload(configManager.getConfig(ConfigManager.CONFIG_FILTER), configManager.getConfig(ConfigManager.CONFIG_ALTERNATE), configManager.getConfig(ConfigManager.CONFIG_MAIN));
+			
+			if(itemRenderer == null)
+				itemRenderer = new ItemDisplayRenderer(getPlugin(), configManager.getConfig(ConfigManager.CONFIG_MAIN));
+			else
+				itemRenderer.reload(configManager.getConfig(ConfigManager.CONFIG_MAIN));
+			
+			if(chatFanout == null) {
+				chatFanout = new ChatFanout(filterService, playerManager, permissionService, itemRenderer);
+				getPlugin().getServer().getPluginManager().registerEvents(new ChannelListener(channelManager, chatFanout), getPlugin());
+				getPlugin().getCommand("cfstaff").setExecutor(new CommandStaff(getPlugin()));
+			}
+			
+			if(spamLimiter == null) {
+				spamLimiter = new SpamLimiter(configManager.getConfig(ConfigManager.CONFIG_MAIN));
+				duplicateDetector = new DuplicateDetector(configManager.getConfig(ConfigManager.CONFIG_MAIN));
+				spamLimiter.start(getPlugin());
+				getPlugin().getServer().getPluginManager().registerEvents(new SpamListener(spamLimiter, duplicateDetector, playerManager, permissionService), getPlugin());
+			} else {
+				spamLimiter.reload(configManager.getConfig(ConfigManager.CONFIG_MAIN));
+				duplicateDetector.reload(configManager.getConfig(ConfigManager.CONFIG_MAIN));
+			}
+			
+			if(announcementScheduler == null)
+				announcementScheduler = new AnnouncementScheduler(getPlugin(), permissionService);
+			
+			announcementScheduler.reload(configManager.getConfig(ConfigManager.CONFIG_ANNOUNCEMENT), configManager.getConfig(ConfigManager.CONFIG_MAIN).isAnnoucementsEnabled());
+			
+			// Started last, so the permissions registered above are within the snapshots
+			permissionService.start();
+			
+			//TODO: Load Group
+		} finally {
+			pool.shutdown();
+		}
 		
-		//TODO: Load Group
+		getPlugin().getLogger().info("Ready, loaded in " + (System.currentTimeMillis() - start) + "ms.");
 	}
 	
 	// Loads the data file with the correct corresponding information from the InputStream
@@ -105,12 +198,90 @@ public class CFManager extends PluginManager<CFChat> {
 	 * @return {@link ConfigManager}
 	 */
 	public ConfigManager getConfigManager() { return configManager;}
+	
+	/**
+	 * Gets the Manager of the Player Data. Players are loaded within this manager when
+	 * they join, or when requested, rather than all at once.
+	 * 
+	 * @return {@link PlayerManager}
+	 */
+	public PlayerManager getPlayerManager() { return playerManager; }
+	
+	/**
+	 * Gets the logger of the player messages, commands and mail.
+	 * 
+	 * @return {@link ChatLogger}
+	 */
+	public ChatLogger getChatLogger() { return chatLogger; }
+	
+	/**
+	 * Gets the snapshots of the permissions of the online players.
+	 * 
+	 * @return {@link PermissionService}
+	 */
+	public PermissionService getPermissionService() { return permissionService; }
+	
+	/**
+	 * Gets the service of the blacklist filter, used by every part of the plugin that filters messages.
+	 * 
+	 * @return {@link FilterService}
+	 */
+	public FilterService getFilterService() { return filterService; }
+	
+	/**
+	 * Gets the limiter of how fast players may chat.
+	 * 
+	 * @return {@link SpamLimiter}
+	 */
+	public SpamLimiter getSpamLimiter() { return spamLimiter; }
+	
+	/**
+	 * Gets the detector of near duplicate messages.
+	 * 
+	 * @return {@link DuplicateDetector}
+	 */
+	public DuplicateDetector getDuplicateDetector() { return duplicateDetector; }
+	
+	/**
+	 * Gets the manager of the chat channels; the main chat, staff chat and group chats.
+	 * 
+	 * @return {@link ChannelManager}
+	 */
+	public ChannelManager getChannelManager() { return channelManager; }
+	
+	/**
+	 * Gets the fan-out every channel message is sent through.
+	 * 
+	 * @return {@link ChatFanout}
+	 */
+	public ChatFanout getChatFanout() { return chatFanout; }
+	
+	/**
+	 * Gets the renderer of the items shown within chat.
+	 * 
+	 * @return {@link ItemDisplayRenderer}
+	 */
+	public ItemDisplayRenderer getItemRenderer() { return itemRenderer; }
 
 	/**
 	 * Disable method for shutting down the plugin normally. This is so that
 	 * any data that needs to be saved will be, no loss of data.
 	 */
 	public void disable() {
+		if(chatLogger != null)
+			chatLogger.stop();
+		
+		if(spamLimiter != null)
+			spamLimiter.stop();
+		
+		if(announcementScheduler != null)
+			announcementScheduler.stop();
+		
+		if(permissionService != null)
+			permissionService.stop();
+		
+		if(playerManager != null)
+			playerManager.shutdown();
 	}
 
 }
@@ -0,0 +1,406 @@
+package coldfyre.cfchat.manager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.bukkit.entity.Player;
+
+import com.coldfyre.api.manager.FilesManager;
+
+import coldfyre.cfchat.CFChat;
+import coldfyre.cfchat.configuration.ConfigMain;
+import coldfyre.cfchat.players.PlayerConfig;
+import coldfyre.cfchat.players.PlayerLog;
+import coldfyre.cfchat.players.PlayerLog.LogType;
+
+/**
+ * Logs the messages, commands and mail of players into their {@link PlayerLog}. Logging a message only places a small
+ * record into a queue; the records are added to the player logs by a separate thread in batches. This keeps the cost of
+ * the logger on the chat (and main) thread down to a single queue insert.</br></br>
+ *
+ * The queue has a fixed size. Should the logger fall behind and the queue fill up, the {@link OverflowPolicy} decides what
+ * happens to new records. The number of records that were dropped because of this is kept, and reported in the server log.
+ *
+ * @author Sommod
+ * @version 1.0
+ *
+ */
+public class ChatLogger implements Runnable {
+
+	/**
+	 * What to do with a new record while the queue is full.
+	 *
+	 * @author Sommod
+	 * @version 1.0
+	 *
+	 */
+	public enum OverflowPolicy {
+		/** Waits for room within the queue; chat may be slowed. The main thread never waits, it drops the record. */
+		BLOCK,
+		/** Removes the oldest record within the queue to make room. */
+		DROP_OLDEST,
+		/** Once the queue is three-quarters full, only every n-th record is kept; the rest are dropped. */
+		SAMPLE;
+
+		public static OverflowPolicy getPolicy(String value) {
+			for(OverflowPolicy p : values()) {
+				if(p.name().equalsIgnoreCase(value))
+					return p;
+			}
+
+			return DROP_OLDEST;
+		}
+	}
+
+	// Most records added to player logs in one pass of the logger thread
+	private static final int BATCH_SIZE = 512;
+
+	// Time between reports of dropped records
+	private static final long REPORT_INTERVAL = 60000L;
+
+	private CFChat plugin;
+	private PlayerManager playerManager;
+	private RecordQueue queue;
+	private Thread writer;
+	private volatile boolean running, waiting;
+
+	private volatile boolean logMessages, logCommands, logMail;
+	private volatile OverflowPolicy policy;
+	private volatile int sampleRate;
+
+	private LongAdder logged, dropped;
+	private AtomicLong sampleCounter;
+	private long reported, lastReport;
+
+	/**
+	 * Creates a new logger that adds to the player logs within the given Player Manager. The size of the queue
+	 * is only read when the logger is created.
+	 *
+	 * @param plugin - Main Plugin
+	 * @param playerManager - Manager of the player data
+	 * @param config - Main Config
+	 */
+	public ChatLogger(CFChat plugin, PlayerManager playerManager, ConfigMain config) {
+		this.plugin = plugin;
+		this.playerManager = playerManager;
+		queue = new RecordQueue(Math.max(64, config.getLoggerQueueSize()));
+		logged = new LongAdder();
+		dropped = new LongAdder();
+		sampleCounter = new AtomicLong();
+		reload(config);
+	}
+
+	/**
+	 * Reads the logger settings from the config.
+	 *
+	 * @param config - Main Config
+	 */
+	public void reload(ConfigMain config) {
+		boolean enabled = config.isLoggerEnabled();
+
+		logMessages = enabled && config.isLoggingMessages();
+		logCommands = enabled && config.isLoggingCommands();
+		logMail = enabled && config.isLoggingMail();
+		policy = OverflowPolicy.getPolicy(config.getLoggerOverflowPolicy());
+		sampleRate = Math.max(1, config.getLoggerSampleRate());
+	}
+
+	/**
+	 * Starts the thread that adds the records to the player logs.
+	 */
+	public void start() {
+		if(running)
+			return;
+
+		running = true;
+		writer = new Thread(this, "CFChat Logger");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Stops the logger thread. Any records still within the queue are added to the player logs before
+	 * this returns.
+	 */
+	public void stop() {
+		if(writer == null)
+			return;
+
+		running = false;
+		LockSupport.unpark(writer);
+
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Logs the message, command or mail of the player. If the given type is not enabled within the config,
+	 * then nothing is logged. This can be called from any thread.
+	 *
+	 * @param player - Player to log for
+	 * @param type - Logger type
+	 * @param value - Message to log
+	 */
+	public void log(Player player, LogType type, String value) { log(player.getUniqueId(), type, value); }
+
+	/**
+	 * Logs the message, command or mail of the player. If the given type is not enabled within the config,
+	 * then nothing is logged. This can be called from any thread.
+	 *
+	 * @param id - UUID of player
+	 * @param type - Logger type
+	 * @param value - Message to log
+	 */
+	public void log(UUID id, LogType type, String value) {
+		if(!isLogging(type))
+			return;
+
+		LogRecord record = new LogRecord(id, type, System.currentTimeMillis(), value);
+
+		// Once the queue is filling up, only every n-th record is kept
+		if(policy == OverflowPolicy.SAMPLE && queue.size() > queue.capacity() * 3 / 4 && sampleCounter.incrementAndGet() % sampleRate != 0) {
+			dropped.increment();
+			return;
+		}
+
+		if(!queue.offer(record)) {
+			switch(policy) {
+				case BLOCK:
+					// The server would stop while waiting on the main thread, so the record is dropped instead
+					if(plugin.getServer().isPrimaryThread()) {
+						dropped.increment();
+						return;
+					}
+
+					while(running && !queue.offer(record))
+						LockSupport.parkNanos(100000L);
+					break;
+
+				case DROP_OLDEST:
+					while(!queue.offer(record)) {
+						if(queue.poll() != null)
+							dropped.increment();
+					}
+					break;
+
+				case SAMPLE:
+					dropped.increment();
+					return;
+			}
+		}
+
+		if(waiting)
+			LockSupport.unpark(writer);
+	}
+
+	/**
+	 * Checks if the given logger type is enabled.
+	 *
+	 * @param type - Logger type
+	 * @return True - if the type is logged
+	 */
+	public boolean isLogging(LogType type) {
+		switch(type) {
+			case MESSAGES: return logMessages;
+			case COMMANDS: return logCommands;
+			case MAIL: return logMail;
+			default: return false;
+		}
+	}
+
+	/**
+	 * Gets the number of records that have been added to player logs.
+	 *
+	 * @return Number of logged records
+	 */
+	public long getLogged() { return logged.sum(); }
+
+	/**
+	 * Gets the number of records that were dropped because the queue was full.
+	 *
+	 * @return Number of dropped records
+	 */
+	public long getDropped() { return dropped.sum(); }
+
+	/**
+	 * Gets the number of records currently waiting within the queue.
+	 *
+	 * @return Queue size
+	 */
+	public int getQueued() { return queue.size(); }
+
+	@Override
+	public void run() {
+		List<LogRecord> batch = new ArrayList<LogRecord>(BATCH_SIZE);
+
+		while(true) {
+			LogRecord record;
+
+			while(batch.size() < BATCH_SIZE && (record = queue.poll()) != null)
+				batch.add(record);
+
+			if(!batch.isEmpty()) {
+				write(batch);
+				batch.clear();
+				continue;
+			}
+
+			report();
+
+			if(!running)
+				return;
+
+			waiting = true;
+
+			if(queue.size() == 0 && running)
+				LockSupport.parkNanos(50000000L);
+
+			waiting = false;
+		}
+	}
+
+	// Adds the records to the player logs. Players that are not within memory have their records added once their data
+	// has been read on another thread, so this thread never waits on a file.
+	private void write(List<LogRecord> batch) {
+		Map<UUID, List<LogRecord>> players = new HashMap<UUID, List<LogRecord>>();
+
+		for(LogRecord record : batch)
+			players.computeIfAbsent(record.id, id -> new ArrayList<LogRecord>()).add(record);
+
+		for(Map.Entry<UUID, List<LogRecord>> entry : players.entrySet()) {
+			List<LogRecord> records = entry.getValue();
+
+			playerManager.loadPlayerConfig(entry.getKey()).whenComplete((config, error) -> {
+				if(config != null)
+					add(config, records);
+				else
+					FilesManager.LogException(plugin, new IllegalStateException("Could not read the player log of " + entry.getKey(), error));
+			});
+		}
+	}
+
+	// Adds the records of a single player while holding the lock of their log once
+	private void add(PlayerConfig config, List<LogRecord> records) {
+		try {
+			PlayerLog log = config.getPlayerLog();
+
+			synchronized(log) {
+				for(LogRecord record : records)
+					log.addLog(record.type, record.time, record.value);
+			}
+
+			logged.add(records.size());
+		} catch (RuntimeException e) {
+			FilesManager.LogException(plugin, e);
+		}
+	}
+
+	// Reports the number of dropped records within the server log, at most once per interval
+	private void report() {
+		long total = dropped.sum();
+
+		if(total == reported || System.currentTimeMillis() - lastReport < REPORT_INTERVAL)
+			return;
+
+		plugin.getLogger().warning("The chat logger is falling behind; " + (total - reported) + " logs were dropped (" + policy.name() + ").");
+		reported = total;
+		lastReport = System.currentTimeMillis();
+	}
+
+	/**
+	 * A single message, command or mail waiting to be logged.
+	 *
+	 * @author Sommod
+	 * @version 1.0
+	 *
+	 */
+	private static class LogRecord {
+
+		private final UUID id;
+		private final LogType type;
+		private final long time;
+		private final String value;
+
+		private LogRecord(UUID id, LogType type, long time, String value) {
+			this.id = id;
+			this.type = type;
+			this.time = time;
+			this.value = value;
+		}
+	}
+
+	/**
+	 * Fixed size queue that any number of threads can add to and remove from without locking. Each slot
+	 * holds a sequence number that tells whether the slot is ready to be written or read for the current
+	 * pass around the queue.
+	 *
+	 * @author Sommod
+	 * @version 1.0
+	 *
+	 */
+	private static class RecordQueue {
+
+		private final AtomicReferenceArray<LogRecord> slots;
+		private final AtomicLong[] sequences;
+		private final int mask;
+		private final AtomicLong head = new AtomicLong(), tail = new AtomicLong();
+
+		private RecordQueue(int capacity) {
+			int size = Integer.highestOneBit(capacity - 1) << 1;
+
+			slots = new AtomicReferenceArray<LogRecord>(size);
+			sequences = new AtomicLong[size];
+			mask = size - 1;
+
+			for(int i = 0; i < size; i++)
+				sequences[i] = new AtomicLong(i);
+		}
+
+		private boolean offer(LogRecord record) {
+			while(true) {
+				long pos = tail.get();
+				long diff = sequences[(int) pos & mask].get() - pos;
+
+				if(diff == 0L) {
+					if(tail.compareAndSet(pos, pos + 1)) {
+						slots.set((int) pos & mask, record);
+						sequences[(int) pos & mask].set(pos + 1);
+						return true;
+					}
+				} else if(diff < 0L)
+					return false;
+			}
+		}
+
+		private LogRecord poll() {
+			while(true) {
+				long pos = head.get();
+				long diff = sequences[(int) pos & mask].get() - (pos + 1);
+
+				if(diff == 0L) {
+					if(head.compareAndSet(pos, pos + 1)) {
+						LogRecord record = slots.getAndSet((int) pos & mask, null);
+
+						sequences[(int) pos & mask].set(pos + mask + 1);
+						return record;
+					}
+				} else if(diff < 0L)
+					return null;
+			}
+		}
+
+		private int size() { return (int) Math.max(0L, tail.get() - head.get()); }
+
+		private int capacity() { return mask + 1; }
+	}
+}
@@ -1,7 +1,11 @@
 package coldfyre.cfchat.manager;
 
+import java.io.File;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import com.coldfyre.api.AbstractConfig;
 import com.coldfyre.api.manager.FilesManager;
@@ -29,14 +33,24 @@ public class ConfigManager {
 	public static final Class<? extends ConfigAlternateFilter> CONFIG_ALTERNATE = ConfigAlternateFilter.class;
 	public static final Class<? extends ConfigData> CONFIG_DATA = ConfigData.class;
 	
-	private Map<Class<? extends AbstractConfig>, AbstractConfig> confs;
+	// Replaced as a whole on reload, so readers always see a complete set of configs
+	private volatile Map<Class<? extends AbstractConfig>, AbstractConfig> confs;
 	
 	/**
 	 * Creates a new object that collects and gets all the Configs of the plugin.
 	 * @param manager - Main manager of plugin
 	 */
-	public ConfigManager(CFManager manager) {
-		reload(manager.getFilesManager());
+	public ConfigManager(CFManager manager) { this(manager, Runnable::run); }
+	
+	/**
+	 * Creates a new object that collects and gets all the Configs of the plugin. Each config is
+	 * read on the given executor, allowing the configs to be read at the same time.
+	 * 
+	 * @param manager - Main manager of plugin
+	 * @param executor - Executor to read the configs on
+	 */
+	public ConfigManager(CFManager manager, Executor executor) {
+		reload(manager.getFilesManager(), executor);
 	}
 	
 	/**
@@ -45,14 +59,36 @@ public class ConfigManager {
 	 * 
 	 * @param fManager - FilesManager of plugin
 	 */
-	public void reload(FilesManager fManager) {
-		confs = new HashMap<Class<? extends AbstractConfig>, AbstractConfig>();
+	public void reload(FilesManager fManager) { reload(fManager, Runnable::run); }
+	
+	/**
+	 * Removes the plugin configs, getting the new data FROM the file. Each config is read on the given executor,
+	 * this method only returns once all configs have been read. The configs are not replaced until then, so the
+	 * previous configs remain in use while reading.
+	 * 
+	 * @param fManager - FilesManager of plugin
+	 * @param executor - Executor to read the configs on
+	 */
+	public void reload(FilesManager fManager, Executor executor) {
+		Map<Class<? extends AbstractConfig>, CompletableFuture<? extends AbstractConfig>> loading = new LinkedHashMap<Class<? extends AbstractConfig>, CompletableFuture<? extends AbstractConfig>>();
+		Map<Class<? extends AbstractConfig>, AbstractConfig> ret = new HashMap<Class<? extends AbstractConfig>, AbstractConfig>();
+		File configFile = fManager.getFile("config_file");
+		File announcementFile = fManager.getFile("announcement_file");
+		File blacklistFile = fManager.getFile("blacklist_file");
+		File whitelistFile = fManager.getFile("whitelist_file");
+		File alternateFile = fManager.getFile("alternate_file");
+		File dataFile = fManager.getFile("data_file");
+		
+		loading.put(CONFIG_MAIN, CompletableFuture.supplyAsync(() -> new ConfigMain(configFile), executor));
+		loading.put(CONFIG_ANNOUNCEMENT, CompletableFuture.supplyAsync(() -> new ConfigAnnouncement(announcementFile), executor));
+		loading.put(CONFIG_FILTER, CompletableFuture.supplyAsync(() -> new ConfigFilter(blacklistFile, whitelistFile), executor));
+		loading.put(CONFIG_ALTERNATE, CompletableFuture.supplyAsync(() -> new ConfigAlternateFilter(alternateFile), executor));
+		loading.put(CONFIG_DATA, CompletableFuture.supplyAsync(() -> new ConfigData(dataFile), executor));
+		
+		for(Map.Entry<Class<? extends AbstractConfig>, CompletableFuture<? extends AbstractConfig>> entry : loading.entrySet())
+			ret.put(entry.getKey(), entry.getValue().join());
 		
-		confs.put(CONFIG_MAIN, new ConfigMain(fManager.getFile("config_file")));
-		confs.put(CONFIG_ANNOUNCEMENT, new ConfigAnnouncement(fManager.getFile("announcement_file")));
-		confs.put(CONFIG_FILTER, new ConfigFilter(fManager.getFile("blacklist_file"), fManager.getFile("whitelist_file")));
-		confs.put(CONFIG_ALTERNATE, new ConfigAlternateFilter(fManager.getFile("alternate_file")));
-		confs.put(CONFIG_DATA, new ConfigData(fManager.getFile("data_file")));
+		confs = ret;
 	}
 	
 	/**
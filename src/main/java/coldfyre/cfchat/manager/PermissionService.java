@@ -0,0 +1,264 @@
+package coldfyre.cfchat.manager;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
+
+import coldfyre.cfchat.CFChat;
+
+/**
+ * Keeps a snapshot of the permissions used by the plugin for each online player. Every permission the plugin checks
+ * (such as 'cfchat.spamexempt' or the exempt permissions of the announcements) is given a bit, and each player has a
+ * set of bits of the permissions they have. Checking a permission, or finding which players have any of a number of
+ * permissions, is then a read of a few longs rather than a permission check through Bukkit.</br></br>
+ *
+ * The snapshot of a player is made when they join, when they change worlds (as permissions may be per world), when
+ * the plugin is reloaded, and on a timer to pick up permissions changed by other plugins. {@link #refresh(Player)} can
+ * be called after changing a player's permissions to update them straight away. Snapshots are replaced as a whole, so
+ * they may be read from any thread; they are only made on the main thread.
+ *
+ * @author Sommod
+ * @version 1.0
+ *
+ */
+public class PermissionService implements Runnable {
+
+	/** Bit of 'cfchat.exempt', overriding the ignore option. */
+	public static final int EXEMPT = 0;
+	/** Bit of 'cfchat.ignore.server', allowing the main chat to be ignored. */
+	public static final int IGNORE_SERVER = 1;
+	/** Bit of 'cfchat.spamexempt'. */
+	public static final int SPAM_EXEMPT = 2;
+	/** Bit of 'cfchat.blacklist.exempt'. */
+	public static final int BLACKLIST_EXEMPT = 3;
+	/** Bit of 'cfchat.selective', allowing selective words of the alternate filter to be seen. */
+	public static final int SELECTIVE = 4;
+	/** Bit of 'cfchat.staff.use'. */
+	public static final int STAFF_USE = 5;
+	/** Bit of 'cfchat.spy'. */
+	public static final int SPY = 6;
+	/** Bit of 'cfchat.itemdisplay', allowing the held item to be shown within chat. */
+	public static final int ITEM_DISPLAY = 7;
+
+	// Ticks between each refresh of all online players
+	private static final long REFRESH_TICKS = 600L;
+
+	private CFChat plugin;
+	private BukkitTask task;
+
+	// Permission of each bit; only grows, and is replaced as a whole
+	private volatile String[] permissions;
+	private Map<String, Integer> indexes;
+
+	private Map<UUID, Snapshot> snapshots;
+	private volatile Consumer<Player> changeListener;
+
+	/**
+	 * Creates a new service holding the permissions of the plugin.
+	 *
+	 * @param plugin - Main Plugin
+	 */
+	PermissionService(CFChat plugin) {
+		this.plugin = plugin;
+		permissions = new String[0];
+		indexes = new ConcurrentHashMap<String, Integer>();
+		snapshots = new ConcurrentHashMap<UUID, Snapshot>();
+
+		for(String permission : new String[] {"cfchat.exempt", "cfchat.ignore.server", "cfchat.spamexempt", "cfchat.blacklist.exempt", "cfchat.selective", "cfchat.staff.use", "cfchat.spy", "cfchat.itemdisplay"})
+			register(permission);
+	}
+
+	/**
+	 * Starts the refresh timer and makes a new snapshot of every online player. If the timer is already
+	 * running, then it is restarted.
+	 */
+	void start() {
+		stop();
+		refreshAll();
+		task = plugin.getServer().getScheduler().runTaskTimer(plugin, this, REFRESH_TICKS, REFRESH_TICKS);
+	}
+
+	/**
+	 * Stops the refresh timer.
+	 */
+	void stop() {
+		if(task != null)
+			task.cancel();
+
+		task = null;
+	}
+
+	@Override
+	public void run() { refreshAll(); }
+
+	/**
+	 * Sets what is run on the main thread whenever the snapshot of a player changes, including their first
+	 * snapshot when they join. This is used to keep anything built from the permissions (such as the members
+	 * of the staff chat) up to date.
+	 *
+	 * @param listener - Run with the player whose permissions changed, or NULL
+	 */
+	public void setChangeListener(Consumer<Player> listener) { changeListener = listener; }
+
+	/**
+	 * Gives the permission a bit, if it does not have one already. Snapshots made before the permission was
+	 * added do not hold it; the permission is checked through Bukkit for those players until refreshed.
+	 *
+	 * @param permission - Permission
+	 * @return Bit of the permission
+	 */
+	public synchronized int register(String permission) {
+		String key = permission.toLowerCase();
+		Integer index = indexes.get(key);
+
+		if(index != null)
+			return index;
+
+		String[] updated = Arrays.copyOf(permissions, permissions.length + 1);
+
+		updated[permissions.length] = key;
+		indexes.put(key, permissions.length);
+		permissions = updated;
+		return updated.length - 1;
+	}
+
+	/**
+	 * Creates the set of bits of the given permissions, registering any that are new.
+	 *
+	 * @param permissions - Permissions
+	 * @return Bits of the permissions
+	 */
+	public long[] mask(Collection<String> permissions) {
+		long[] mask = new long[0];
+
+		if(permissions == null)
+			return mask;
+
+		for(String permission : permissions) {
+			int index = register(permission);
+
+			if(mask.length <= index >>> 6)
+				mask = Arrays.copyOf(mask, (index >>> 6) + 1);
+
+			mask[index >>> 6] |= 1L << index;
+		}
+
+		return mask;
+	}
+
+	/**
+	 * Makes a new snapshot of the player's permissions. Must be called on the main thread.
+	 *
+	 * @param player - Player
+	 */
+	public void refresh(Player player) {
+		String[] permissions = this.permissions;
+		long[] bits = new long[(permissions.length + 63) >>> 6];
+
+		for(int i = 0; i < permissions.length; i++) {
+			if(player.hasPermission(permissions[i]))
+				bits[i >>> 6] |= 1L << i;
+		}
+
+		Snapshot previous = snapshots.put(player.getUniqueId(), new Snapshot(permissions.length, bits));
+		Consumer<Player> listener = changeListener;
+
+		if(listener != null && (previous == null || previous.count != permissions.length || !Arrays.equals(previous.bits, bits)))
+			listener.accept(player);
+	}
+
+	/**
+	 * Makes a new snapshot of every online player. Must be called on the main thread.
+	 */
+	public void refreshAll() {
+		for(Player player : plugin.getServer().getOnlinePlayers())
+			refresh(player);
+	}
+
+	/**
+	 * Removes the snapshot of the player, such as when they leave the server.
+	 *
+	 * @param id - UUID of player
+	 */
+	public void remove(UUID id) { snapshots.remove(id); }
+
+	/**
+	 * Checks if the player has the permission of the given bit. If the player has no snapshot holding the
+	 * permission, then it is checked through Bukkit.
+	 *
+	 * @param player - Player
+	 * @param index - Bit of the permission
+	 * @return True - if the player has the permission
+	 */
+	public boolean has(Player player, int index) {
+		Snapshot snapshot = snapshots.get(player.getUniqueId());
+
+		if(snapshot == null || index >= snapshot.count)
+			return player.hasPermission(permissions[index]);
+
+		return (snapshot.bits[index >>> 6] & (1L << index)) != 0;
+	}
+
+	/**
+	 * Checks if the player has any of the permissions of the given set of bits (see {@link #mask(Collection)}).
+	 *
+	 * @param player - Player
+	 * @param mask - Bits of the permissions
+	 * @return True - if the player has any of the permissions
+	 */
+	public boolean hasAny(Player player, long[] mask) {
+		Snapshot snapshot = snapshots.get(player.getUniqueId());
+
+		// Permissions newer than the snapshot are checked one at a time
+		if(snapshot == null || highest(mask) >= snapshot.count) {
+			for(int i = 0; i < mask.length * 64; i++) {
+				if((mask[i >>> 6] & (1L << i)) != 0 && has(player, i))
+					return true;
+			}
+
+			return false;
+		}
+
+		for(int i = 0; i < mask.length; i++) {
+			if((snapshot.bits[i] & mask[i]) != 0)
+				return true;
+		}
+
+		return false;
+	}
+
+	// Highest bit set within the mask, -1 if none
+	private static int highest(long[] mask) {
+		for(int i = mask.length - 1; i >= 0; i--) {
+			if(mask[i] != 0)
+				return i * 64 + 63 - Long.numberOfLeadingZeros(mask[i]);
+		}
+
+		return -1;
+	}
+
+	/**
+	 * The permissions of a player at the time the snapshot was made.
+	 *
+	 * @author Sommod
+	 * @version 1.0
+	 *
+	 */
+	private static class Snapshot {
+
+		// Number of permissions that existed when made; later permissions were not checked
+		private final int count;
+		private final long[] bits;
+
+		private Snapshot(int count, long[] bits) {
+			this.count = count;
+			this.bits = bits;
+		}
+	}
+}
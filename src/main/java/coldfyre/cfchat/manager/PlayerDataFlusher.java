@@ -0,0 +1,135 @@
+package coldfyre.cfchat.manager;
+
+import java.io.IOException;
+
+import org.bukkit.scheduler.BukkitTask;
+
+import com.coldfyre.api.manager.FilesManager;
+
+import coldfyre.cfchat.CFChat;
+import coldfyre.cfchat.players.PlayerConfig;
+import coldfyre.cfchat.players.PlayerJournal;
+
+/**
+ * Background task that writes changed player data into the player files. Changes to player data are
+ * not written the moment they happen; instead, this task runs on a timer (off the main thread) and only
+ * writes the players whose data has changed since the last run. Any number of changes to a single player
+ * between two runs results in a single write of their file.</br></br>
+ *
+ * If the {@link PlayerJournal} is enabled, the journal segment is ended before writing. Once every player
+ * has been written without error and the written data has been synced to the disk, the ended segments are
+ * deleted as their changes are now saved. About once an hour, the player logs past the retention limits are
+ * also deleted from the log archive.
+ *
+ * @author Sommod
+ * @version 1.0
+ *
+ */
+public class PlayerDataFlusher implements Runnable {
+
+	// Time between each removal of expired player logs
+	private static final long EXPIRY_INTERVAL = 3600000L;
+
+	private PlayerManager playerManager;
+	private BukkitTask task;
+	private long nextExpiry;
+
+	/**
+	 * Creates a new flusher for the data within the given Player Manager.
+	 *
+	 * @param playerManager - Manager of the player data
+	 */
+	PlayerDataFlusher(PlayerManager playerManager) { this.playerManager = playerManager; }
+
+	/**
+	 * Starts the timer of this task. If the task is already running, then it is restarted
+	 * using the new interval.
+	 *
+	 * @param plugin - Plugin to run the task under
+	 * @param seconds - Seconds between each run
+	 */
+	void start(CFChat plugin, int seconds) {
+		stop();
+
+		long ticks = Math.max(1, seconds) * 20L;
+		task = plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin, this, ticks, ticks);
+	}
+
+	/**
+	 * Stops the timer of this task. No data is written during this call.
+	 */
+	void stop() {
+		if(task != null)
+			task.cancel();
+
+		task = null;
+	}
+
+	@Override
+	public void run() {
+		flush();
+
+		// Logs of players that are not online expire as well, not only logs of players still chatting
+		if(System.currentTimeMillis() >= nextExpiry) {
+			nextExpiry = System.currentTimeMillis() + EXPIRY_INTERVAL;
+			playerManager.getLogArchive().deleteExpired();
+		}
+	}
+
+	/**
+	 * Writes all changed player data into their files, and moves any new logs into the log archive. Players that have been removed from the
+	 * offline cache are released once their data has been written.
+	 *
+	 * @return True - if all changed data was written
+	 */
+	synchronized boolean flush() {
+		PlayerJournal journal = playerManager.getJournal();
+		int failed = 0;
+
+		if(journal != null)
+			journal.rotate();
+
+		for(PlayerConfig config : playerManager.getLoadedConfigs()) {
+			// Logs are moved first, so older player files only lose their logs once they are within the archive
+			if(config.getPlayerLog().hasPending() && !config.getPlayerLog().flush())
+				failed++;
+			else if(config.isDirty() && !playerManager.getStore().saveChanges(config))
+				failed++;
+		}
+
+		playerManager.releaseEvicted();
+
+		// The journal is only removed once the data it protects is on the disk, not just written
+		if(sync() && journal != null && failed == 0)
+			journal.compact();
+
+		return failed == 0;
+	}
+
+	// Forces the written player data and logs onto the disk
+	private boolean sync() {
+		try {
+			playerManager.getStore().sync();
+			playerManager.getLogArchive().sync();
+			return true;
+		} catch (IOException e) {
+			FilesManager.LogException(e);
+			return false;
+		}
+	}
+
+	/**
+	 * Writes ALL data of the given player. This shares the lock of {@link #flush()}, so a player's file is
+	 * never written by both at the same time.
+	 *
+	 * @param config - Player data to write
+	 * @return True - if the data was written
+	 */
+	synchronized boolean save(PlayerConfig config) {
+		if(config.getPlayerLog().hasPending() && !config.getPlayerLog().flush())
+			return false;
+
+		config.setDirty();
+		return playerManager.getStore().saveChanges(config);
+	}
+}
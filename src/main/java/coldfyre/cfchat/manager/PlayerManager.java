@@ -1,27 +1,52 @@
 package coldfyre.cfchat.manager;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 import org.bukkit.OfflinePlayer;
-import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
 
 import com.coldfyre.api.manager.FilesManager;
 
+import coldfyre.cfchat.CFChat;
+import coldfyre.cfchat.configuration.ConfigMain;
+import coldfyre.cfchat.players.BinaryPlayerStore;
+import coldfyre.cfchat.players.IgnoreIndex;
+import coldfyre.cfchat.players.LogSearchIndex;
 import coldfyre.cfchat.players.PlayerConfig;
+import coldfyre.cfchat.players.PlayerJournal;
+import coldfyre.cfchat.players.PlayerLog;
+import coldfyre.cfchat.players.PlayerLog.LogType;
+import coldfyre.cfchat.players.PlayerLogArchive;
+import coldfyre.cfchat.players.PlayerStore;
+import coldfyre.cfchat.players.ShardedPlayerStore;
+import coldfyre.cfchat.players.YamlPlayerStore;
 
 /**
  * Manager class that contains all the player data as well as containing the methods that
  * both save and reload player data. This object doesn't change any player data, such
- * actions are left to the individual player data objects.
+ * actions are left to the individual player data objects.</br></br>
+ *
+ * Player data is loaded lazily; a player is loaded when they join the server or when something
+ * (such as a command) targets them. Online players are always kept in memory, while players that
+ * have gone offline are held within a size-bounded cache. Once the cache is full, the player that
+ * was used the longest time ago is saved and removed from memory.</br></br>
+ *
+ * Changes to player data are written by a {@link PlayerDataFlusher} running on a timer, which only
+ * writes the players whose data has changed. Where and how the data is written is left to the
+ * {@link PlayerStore} selected within the config, while the player logs are written into the
+ * {@link PlayerLogArchive}. Between two writes, each change is also recorded
+ * within the {@link PlayerJournal}; when the plugin starts, any changes left within the journal (such
+ * as after a crash) are applied again and saved.
  * 
  * @author Sommod
  * @version 1.0
@@ -29,28 +54,58 @@ import coldfyre.cfchat.players.PlayerConfig;
  */
 public class PlayerManager {
 	
-	private Map<UUID, PlayerConfig> playerData;
+	private CFChat plugin;
+	private PlayerStore store;
+	private int cacheSize;
+	private PlayerDataFlusher flusher;
+	private volatile PlayerJournal journal;
+	private PlayerLogArchive logArchive;
+	private LogSearchIndex searchIndex;
+	private IgnoreIndex ignoreIndex;
+	private boolean reloaded;
+
+	private Map<UUID, PlayerConfig> onlineData;
+	private Map<UUID, PlayerConfig> offlineData;
+	private Map<UUID, PlayerConfig> evictedData;
+	private Map<UUID, PlayerConfig> joiningData;
+	private Map<UUID, CompletableFuture<PlayerConfig>> pendingLoads;
 	
 	/**
 	 * Creates a new manager for the Player Data.
 	 * 
 	 * @param manager - Main Plugin Manager
 	 */
-	public PlayerManager(CFManager manager) {
-		reload(manager);
-	}
+	public PlayerManager(CFManager manager) { this(manager, Runnable::run); }
 	
-	// Used to load the data from the JAR default files into the
-	// systems file.
-	private void loadFirstTimeData(File file, InputStream is) {
-		String line;
+	/**
+	 * Creates a new manager for the Player Data. The players that are online are read on
+	 * the given executor, allowing their data to be read at the same time.
+	 *
+	 * @param manager - Main Plugin Manager
+	 * @param executor - Executor to read the player data on
+	 */
+	public PlayerManager(CFManager manager, Executor executor) {
+		onlineData = new ConcurrentHashMap<UUID, PlayerConfig>();
+		evictedData = new ConcurrentHashMap<UUID, PlayerConfig>();
+		joiningData = new ConcurrentHashMap<UUID, PlayerConfig>();
+		pendingLoads = new ConcurrentHashMap<UUID, CompletableFuture<PlayerConfig>>();
+		flusher = new PlayerDataFlusher(this);
+		ignoreIndex = new IgnoreIndex();
+		offlineData = new LinkedHashMap<UUID, PlayerConfig>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
 		
-		try(BufferedReader reader = new BufferedReader(new InputStreamReader(is)); BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
-			while((line = reader.readLine()) != null)
-				writer.write(line);
-		} catch (IOException e) {
-			FilesManager.LogException(e);
-		}
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<UUID, PlayerConfig> eldest) {
+				if(size() <= cacheSize)
+					return false;
+
+				evict(eldest.getValue());
+				return true;
+			}
+		};
+
+		reload(manager, executor);
+		openJournal(manager);
 	}
 	
 	/**
@@ -66,12 +121,130 @@ public class PlayerManager {
 	/**
 	 * Gets the Players Data Configuration file. Note that any changes done will see an effect in-game, but
 	 * are not necessarily saved the moment of any change. To reduce the number of I/O operations, the saving
-	 * of player data is reversed on a timer.
+	 * of player data is reversed on a timer.</br></br>
+	 *
+	 * If the player is not currently in memory, then their data is loaded before returning. If a load for this
+	 * player is already running (i.e. from {@link #loadPlayerConfig(UUID)}), then this will wait for that load
+	 * rather than reading the file a second time. When calling from the main thread, using the asynchronous
+	 * method is suggested for players that are not online.
 	 * 
 	 * @param id - UUID of player
 	 * @return player's Config data
 	 */
-	public PlayerConfig getPlayerConfig(UUID id) { return playerData.get(id); }
+	public PlayerConfig getPlayerConfig(UUID id) {
+		PlayerConfig config = getLoadedConfig(id);
+
+		if(config != null)
+			return config;
+
+		try {
+			return load(id, false).join();
+		} catch (CompletionException e) {
+			FilesManager.LogException(plugin, e);
+			return null;
+		}
+	}
+
+	/**
+	 * Gets the Players Data Configuration file without blocking the calling thread. If the player is already
+	 * within memory, then the returned future is already completed. Otherwise, the data is read from the file
+	 * on an asynchronous task.
+	 *
+	 * @param id - UUID of player
+	 * @return Future of the player's Config data
+	 */
+	public CompletableFuture<PlayerConfig> loadPlayerConfig(UUID id) {
+		PlayerConfig config = getLoadedConfig(id);
+
+		return config != null ? CompletableFuture.completedFuture(config) : load(id, true);
+	}
+
+	/**
+	 * Checks if the player's data is currently held within memory.
+	 *
+	 * @param id - UUID of player
+	 * @return True - if the player's data is loaded
+	 */
+	public boolean isLoaded(UUID id) { return getLoadedConfig(id) != null; }
+
+	/**
+	 * Loads the data of a player that is logging in and keeps it within memory until they have joined, so that
+	 * it can not be removed from the cache in between. This reads the file if the data is not loaded, so it
+	 * should only be called while the player is logging in (which is done off the main thread).
+	 *
+	 * @param id - UUID of player
+	 */
+	public void prepareJoin(UUID id) {
+		PlayerConfig config = getPlayerConfig(id);
+
+		if(config != null)
+			joiningData.put(id, config);
+	}
+
+	/**
+	 * Releases the data kept by {@link #prepareJoin(UUID)} for a player that was not able to join.
+	 *
+	 * @param id - UUID of player
+	 */
+	public void cancelJoin(UUID id) {
+		PlayerConfig config = joiningData.remove(id);
+
+		if(config != null && !onlineData.containsKey(id))
+			cache(config);
+	}
+
+	/**
+	 * Marks the player as online, moving their data out of the offline cache so that it can not be
+	 * removed from memory while they are on the server. This never reads a file; if the data has not
+	 * been loaded yet, then it is loaded on an asynchronous task and the player is marked as online
+	 * once it has been read.
+	 *
+	 * @param player - Player that joined
+	 */
+	public void setOnline(Player player) {
+		PlayerConfig config = joiningData.remove(player.getUniqueId());
+
+		if(config == null && (config = getLoadedConfig(player.getUniqueId())) == null) {
+			loadPlayerConfig(player.getUniqueId()).whenComplete((loaded, error) -> {
+				if(loaded == null)
+					FilesManager.LogException(plugin, new IllegalStateException("Could not read the player data of " + player.getUniqueId(), error));
+				else
+					plugin.getServer().getScheduler().runTask(plugin, () -> {
+						if(player.isOnline() && !onlineData.containsKey(player.getUniqueId()))
+							putOnline(player, loaded);
+					});
+			});
+
+			return;
+		}
+
+		putOnline(player, config);
+	}
+
+	// Moves the config of the player from the offline cache into the online players.
+	private void putOnline(Player player, PlayerConfig config) {
+		onlineData.put(player.getUniqueId(), config);
+		config.setIgnoreIndex(ignoreIndex, player);
+
+		synchronized(offlineData) {
+			offlineData.remove(player.getUniqueId());
+		}
+	}
+
+	/**
+	 * Marks the player as offline. Their data is moved into the offline cache where it stays until
+	 * it has not been used for long enough to be removed.
+	 *
+	 * @param player - Player that left
+	 */
+	public void setOffline(Player player) {
+		PlayerConfig config = onlineData.remove(player.getUniqueId());
+
+		if(config != null) {
+			config.setIgnoreIndex(null, null);
+			cache(config);
+		}
+	}
 	
 	/**
 	 * Saves ALL player data from within this plugin into their respective files
@@ -80,8 +253,8 @@ public class PlayerManager {
 	 * @param manager - Main Plugin Manager
 	 */
 	public void save(CFManager manager) {
-		for(UUID id : playerData.keySet())
-			save(manager, id);
+		for(PlayerConfig config : getLoadedConfigs())
+			save(manager, config);
 	}
 	
 	/**
@@ -92,43 +265,113 @@ public class PlayerManager {
 	 * @param id - UUID of player
 	 */
 	public void save(CFManager manager, UUID id) {
-		playerData.get(id).save(manager.getFilesManager().getFile("player_" + id.toString()));
+		PlayerConfig config = getLoadedConfig(id);
+
+		if(config != null)
+			save(manager, config);
 	}
+
+	// Saves the config into the player's file, through the flusher so it cannot overlap a timed write
+	private void save(CFManager manager, PlayerConfig config) { flusher.save(config); }
+	
+	/**
+	 * Writes all player data that has changed since it was last saved. Unlike {@link #save(CFManager)}, players
+	 * without any changes are not written. This is run on a timer, but can be forced by calling this method.
+	 */
+	public void flush() { flusher.flush(); }
 	
 	/**
-	 * Reloads this object. Note that this will NOT save any changed data prior to reloading. As such, if any
-	 * data is to be saved before reloading, then calling the {@link #save(CFManager)} method is recommended
-	 * prior to calling this method.
+	 * Stops the timer that saves the player data and writes any data that has not yet been saved. This
+	 * is to be called when the plugin is disabled.
+	 */
+	public void shutdown() {
+		flusher.stop();
+		
+		boolean saved = flusher.flush();
+		
+		if(journal != null) {
+			journal.stop();
+			
+			if(saved)
+				journal.delete(journal.getSegments());
+		}
+		
+		if(searchIndex != null)
+			searchIndex.stop();
+		
+		store.close();
+	}
+	
+	/**
+	 * Reloads this object. Any changed data is written before reloading; should that fail, the journal of those
+	 * changes is kept and replayed onto the reloaded data, so no changes are lost.</br></br>
+	 *
+	 * Only players that are currently online are loaded; everyone else is loaded when needed.
 	 * 
 	 * @param manager - Main Plugin Manager
 	 */
-	public void reload(CFManager manager) {
-		if(playerData == null)
-			playerData = new HashMap<UUID, PlayerConfig>();
-		else
-			playerData.clear();
+	public void reload(CFManager manager) { reload(manager, Runnable::run); }
 		
-		for(OfflinePlayer allPlayers : manager.getPlugin().getServer().getOfflinePlayers()) {
-			String fileName = allPlayers.getUniqueId().toString() + ".yml";
-			String filesManagerName = "player_" + allPlayers.getUniqueId().toString();
-			YamlConfiguration pConfig;
+	/**
+	 * Reloads this object, reading the data of the online players on the given executor. This method only
+	 * returns once all online players have been read. The same as {@link #reload(CFManager)}, changed data
+	 * is written prior to reloading.
+	 *
+	 * @param manager - Main Plugin Manager
+	 * @param executor - Executor to read the player data on
+	 */
+	public void reload(CFManager manager, Executor executor) {
+		List<CompletableFuture<Void>> loading = new ArrayList<CompletableFuture<Void>>();
 			
-			if(manager.getFilesManager().addFile(filesManagerName, "Player Data/" + fileName)) {
-				loadFirstTimeData(manager.getFilesManager().getFile(filesManagerName), manager.getPlugin().getClass().getResourceAsStream("default_player.yml"));
+		plugin = manager.getPlugin();
 				
-				pConfig = YamlConfiguration.loadConfiguration(manager.getFilesManager().getFile(filesManagerName)); 
-				pConfig.set("name", allPlayers.getName());
+		// Only the journal segments of saved changes are removed by the flush, the rest are replayed after reloading
+		if(store != null) {
+			flusher.flush();
+			store.close();
+		}
 				
-				try {
-					pConfig.save(manager.getFilesManager().getFile(filesManagerName));
-				} catch (IOException e) {
-					FilesManager.LogException(manager, e);
-				}
-			} else
-				pConfig = YamlConfiguration.loadConfiguration(manager.getFilesManager().getFile(filesManagerName));
+		if(journal != null) {
+			journal.stop();
+			journal = null;
+		}
 			
-			playerData.put(allPlayers.getUniqueId(), new PlayerConfig(allPlayers, pConfig));
+		store = createStore(manager, manager.getConfigManager().getConfig(ConfigManager.CONFIG_MAIN).getStorageType());
+		logArchive = createLogArchive(manager);
+		
+		if(searchIndex == null)
+			searchIndex = new LogSearchIndex(new File(plugin.getDataFolder(), "Player Logs" + File.separator + "search.idx"));
+		
+		searchIndex.start(plugin, manager.getConfigManager().getConfig(ConfigManager.CONFIG_MAIN).getLogSearchDays());
+		cacheSize = Math.max(0, manager.getConfigManager().getConfig(ConfigManager.CONFIG_MAIN).getPlayerCacheSize());
+		flusher.start(plugin, manager.getConfigManager().getConfig(ConfigManager.CONFIG_MAIN).getFlushInterval());
+
+		for(PlayerConfig config : onlineData.values())
+			config.setIgnoreIndex(null, null);
+
+		onlineData.clear();
+
+		synchronized(offlineData) {
+			offlineData.clear();
+		}
+
+		for(Player online : plugin.getServer().getOnlinePlayers()) {
+			UUID id = online.getUniqueId();
+			loading.add(CompletableFuture.runAsync(() -> {
+				PlayerConfig config = readPlayer(id);
+
+				config.setIgnoreIndex(ignoreIndex, online);
+				onlineData.put(id, config);
+			}, executor));
 		}
+
+		CompletableFuture.allOf(loading.toArray(new CompletableFuture<?>[loading.size()])).join();
+		
+		// The first load is done by the constructor, after recovering the journal
+		if(reloaded)
+			openJournal(manager);
+		
+		reloaded = true;
 	}
 	
 	/**
@@ -150,22 +393,294 @@ public class PlayerManager {
 	 * @param manager - Main Pluing Manager
 	 */
 	public void reloadPlayer(UUID playerID, CFManager manager) {
-		YamlConfiguration pConfig;
+		PlayerConfig config = readPlayer(playerID);
+		PlayerConfig previous = onlineData.get(playerID);
 		
-		if(manager.getFilesManager().addFile("player_" + playerID.toString(), "Player Data/" + playerID.toString() + ".yml")) {
-			loadFirstTimeData(manager.getFilesManager().getFile("player_" + playerID.toString()), manager.getPlugin().getClass().getResourceAsStream("default_player.yml"));
+		if(previous != null) {
+			previous.setIgnoreIndex(null, null);
+			config.setIgnoreIndex(ignoreIndex, plugin.getServer().getPlayer(playerID));
+			onlineData.put(playerID, config);
+		} else
+			cache(config);
+	}
 			
-			pConfig = YamlConfiguration.loadConfiguration(manager.getFilesManager().getFile("player_" + playerID.toString())); 
-			pConfig.set("name", manager.getPlugin().getServer().getOfflinePlayer(playerID).getName());
+	// Gets the player data if it is within memory, otherwise NULL. Data that has been removed
+	// from the cache but not yet written to file is brought back into the cache.
+	private PlayerConfig getLoadedConfig(UUID id) {
+		PlayerConfig config = onlineData.get(id);
+
+		if(config != null || (config = joiningData.get(id)) != null)
+			return config;
+
+		synchronized(offlineData) {
+			config = offlineData.get(id);
+		}
+
+		if(config == null && (config = evictedData.get(id)) != null)
+			cache(config);
+
+		return config;
+	}
+
+	// Gets a copy of all the player data within memory, including data that has been removed
+	// from the cache but not yet written.
+	List<PlayerConfig> getLoadedConfigs() {
+		List<PlayerConfig> ret = new ArrayList<PlayerConfig>(onlineData.values());
+
+		synchronized(offlineData) {
+			ret.addAll(offlineData.values());
+
+			// Joining players are usually in the cache as well, so only the ones that were removed are added
+			for(PlayerConfig config : joiningData.values()) {
+				if(!onlineData.containsKey(config.getPlayerID()) && offlineData.get(config.getPlayerID()) != config
+						&& evictedData.get(config.getPlayerID()) != config)
+					ret.add(config);
+			}
+		}
+
+		ret.addAll(evictedData.values());
+
+		return ret;
+	}
+
+	// Loads the player data. Only one load per player can be running at a time, any other
+	// calls for the same player will receive the same future.
+	private CompletableFuture<PlayerConfig> load(UUID id, boolean async) {
+		CompletableFuture<PlayerConfig> future = new CompletableFuture<PlayerConfig>();
+		CompletableFuture<PlayerConfig> running = pendingLoads.putIfAbsent(id, future);
+
+		if(running != null)
+			return running;
+
+		if(async)
+			plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> completeLoad(id, future));
+		else
+			completeLoad(id, future);
+
+		return future;
+	}
+
+	// Reads the player data and places it within the cache.
+	private void completeLoad(UUID id, CompletableFuture<PlayerConfig> future) {
+		try {
+			PlayerConfig config = getLoadedConfig(id);
+
+			if(config == null) {
+				config = readPlayer(id);
+
+				if(!onlineData.containsKey(id))
+					cache(config);
+			}
+
+			future.complete(config);
+		} catch (Exception e) {
+			future.completeExceptionally(e);
+		} finally {
+			pendingLoads.remove(id, future);
+		}
+	}
+
+	// Adds the config into the offline cache.
+	private void cache(PlayerConfig config) {
+		synchronized(offlineData) {
+			offlineData.put(config.getPlayerID(), config);
+		}
+
+		evictedData.remove(config.getPlayerID(), config);
+	}
+
+	// Called when the config is removed from the cache. If the data has changes, then it is kept
+	// reachable until the flusher has written it, so a load in the meantime won't read outdated data.
+	private void evict(PlayerConfig config) {
+		if(hasChanges(config))
+			evictedData.put(config.getPlayerID(), config);
+	}
+
+	// Checks if the config has any data or logs that have not been written
+	static boolean hasChanges(PlayerConfig config) { return config.isDirty() || config.getPlayerLog().hasPending(); }
+	
+	// Releases the removed configs that have been written since they were removed from the cache.
+	void releaseEvicted() {
+		for(PlayerConfig config : evictedData.values()) {
+			if(!hasChanges(config))
+				evictedData.remove(config.getPlayerID(), config);
+		}
+	}
+
+	/**
+	 * Gets the storage the player data is currently read from and written to.
+	 * 
+	 * @return PlayerStore
+	 */
+	public PlayerStore getStore() { return store; }
+	
+	/**
+	 * Gets the archive the player logs are kept in.
+	 * 
+	 * @return PlayerLogArchive
+	 */
+	public PlayerLogArchive getLogArchive() { return logArchive; }
+	
+	/**
+	 * Gets the search index of the logged player messages.
+	 * 
+	 * @return LogSearchIndex
+	 */
+	public LogSearchIndex getSearchIndex() { return searchIndex; }
+	
+	/**
+	 * Reads the logs of the player between the given times, newest first. Players that are not within memory
+	 * are not loaded; only their logs are read from the archive. This reads files, so it should not be called
+	 * from the main thread.
+	 * 
+	 * @param id - UUID of player
+	 * @param type - Logger type
+	 * @param from - Start time
+	 * @param to - End time
+	 * @param limit - Most logs to read
+	 * @return Formatted logs
+	 */
+	public List<String> readLogs(UUID id, LogType type, long from, long to, int limit) {
+		PlayerConfig config = getLoadedConfig(id);
+		
+		// Loaded players may have logs that are not yet within the archive
+		if(config != null)
+			return config.getPlayerLog().getPage(type, from, to, 1, limit);
+		
+		return PlayerLog.readArchived(logArchive, id, type, from, to, limit);
+	}
+	
+	/**
+	 * Gets the reverse index of the ignore lists of the online players.
+	 * 
+	 * @return IgnoreIndex
+	 */
+	public IgnoreIndex getIgnoreIndex() { return ignoreIndex; }
+	
+	// Creates the archive of the player logs using the limits within the config
+	private PlayerLogArchive createLogArchive(CFManager manager) {
+		ConfigMain config = manager.getConfigManager().getConfig(ConfigManager.CONFIG_MAIN);
+		
+		return new PlayerLogArchive(new File(manager.getPlugin().getDataFolder(), "Player Logs"), config.getLogSegmentSize() * 1024L,
+				config.getLogSegmentHours() * 3600000L, config.getLogRetentionDays() * 86400000L, config.getLogMaxSegments());
+	}
+	
+	/**
+	 * Creates the storage of the given type. If the type is not known, then the YAML
+	 * storage is used.
+	 * 
+	 * @param manager - Main Plugin Manager
+	 * @param type - Name of storage type
+	 * @return PlayerStore
+	 */
+	public PlayerStore createStore(CFManager manager, String type) {
+		if(BinaryPlayerStore.NAME.equalsIgnoreCase(type))
+			return new BinaryPlayerStore(new File(manager.getPlugin().getDataFolder(), "Player Data"));
+		
+		if(ShardedPlayerStore.NAME.equalsIgnoreCase(type))
+			return new ShardedPlayerStore(new File(manager.getPlugin().getDataFolder(), "Player Data"), manager.getConfigManager().getConfig(ConfigManager.CONFIG_MAIN).getStorageShards());
+		
+		return new YamlPlayerStore(manager.getPlugin(), manager.getFilesManager());
+	}
+	
+	/**
+	 * Copies ALL stored player data from the current storage into the given storage, after which the given storage
+	 * is used for all reading and writing of player data. Players within memory are copied from memory, everyone else
+	 * is read from the current storage. Nothing is removed from the current storage. This will block until all players
+	 * have been copied, so it should not be called from the main thread.
+	 * 
+	 * @param target - Storage to copy into
+	 * @return Number of players copied
+	 * @throws IllegalArgumentException If the player data is already stored within the storage type
+	 */
+	public synchronized int migrate(PlayerStore target) {
+		PlayerStore source = store;
+		int count = 0;
+		
+		if(target.getName().equals(source.getName()))
+			throw new IllegalArgumentException("Player data is already stored as " + source.getName() + ".");
+		
+		flusher.flush();
+		
+		for(UUID id : source.getStoredPlayers()) {
+			PlayerConfig config = getLoadedConfig(id);
+			
+			if(config == null) {
+				config = source.load(plugin.getServer().getOfflinePlayer(id));
+				
+				// Logs of older player files are moved into the log archive rather than the new storage
+				config.getPlayerLog().setArchive(logArchive);
+				config.getPlayerLog().flush();
+			}
+			
+			target.save(config);
+			count++;
+		}
+		
+		synchronized(flusher) {
+			for(PlayerConfig config : getLoadedConfigs())
+				target.save(config);
+			
+			store = target;
+		}
+		
+		source.close();
+		return count;
+	}
+	
+	/**
+	 * Gets the journal the changes to player data are recorded in.
+	 * 
+	 * @return PlayerJournal, NULL if the journal is disabled
+	 */
+	public PlayerJournal getJournal() { return journal; }
+	
+	// Opens the journal of player changes. The changes left within the journal are first applied to the
+	// player data and saved; the replayed segments are only removed if all data was saved.
+	private void openJournal(CFManager manager) {
+		PlayerJournal journal = new PlayerJournal(new File(plugin.getDataFolder(), "Player Journal"));
+		List<File> segments = journal.getSegments();
+		
+		if(!segments.isEmpty()) {
+			logArchive.startReplay();
+			
+			int count;
 			
 			try {
-				pConfig.save(manager.getFilesManager().getFile("player_" + playerID.toString()));
-			} catch (IOException e) {
-				FilesManager.LogException(manager, e);
+				count = journal.replay(segments, this::getPlayerConfig);
+			} finally {
+				logArchive.endReplay();
 			}
-		} else
-			pConfig = YamlConfiguration.loadConfiguration(manager.getFilesManager().getFile("player_" + playerID.toString()));
 		
-		playerData.put(playerID, new PlayerConfig(manager.getPlugin().getServer().getOfflinePlayer(playerID), pConfig));
+			if(flusher.flush())
+				journal.delete(segments);
+			
+			plugin.getLogger().info("Recovered " + count + " unsaved player changes from the journal.");
+		}
+		
+		if(!manager.getConfigManager().getConfig(ConfigManager.CONFIG_MAIN).isJournalEnabled())
+			return;
+		
+		try {
+			journal.start();
+		} catch (IOException e) {
+			FilesManager.LogException(plugin, e);
+			return;
+		}
+		
+		this.journal = journal;
+		
+		for(PlayerConfig config : getLoadedConfigs())
+			config.setJournal(journal);
+	}
+	
+	// Reads the player data from the storage.
+	private PlayerConfig readPlayer(UUID id) {
+		PlayerConfig config = store.load(plugin.getServer().getOfflinePlayer(id));
+		
+		config.setJournal(journal);
+		config.getPlayerLog().setArchive(logArchive);
+		config.getPlayerLog().setSearchIndex(searchIndex);
+		return config;
 	}
 }
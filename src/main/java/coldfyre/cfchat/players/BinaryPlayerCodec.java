@@ -0,0 +1,189 @@
+package coldfyre.cfchat.players;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.bukkit.OfflinePlayer;
+
+import coldfyre.cfchat.players.PlayerLog.LogType;
+import coldfyre.cfchat.warnings.Warning;
+
+/**
+ * Encodes and decodes player data into a compact binary format. Every value is length-prefixed, time stamps
+ * are stored as raw longs and UUID's are stored as two longs; none of the user-friendly dates are stored as
+ * they are created again from the time stamps. The layout of the data is as follows:</br></br>
+ *
+ * <strong>MAGIC VERSION | ignore | groups | warnings | mute | logger | mail | options</strong></br></br>
+ *
+ * Each list is written as the number of entries followed by the entries themselves. A UUID that can be the
+ * console is written with a leading boolean, false meaning console. Files of version 1 do not contain the
+ * options, and files of version 2 only contain the selective option; missing options are left at their defaults.
+ *
+ * @author Sommod
+ * @version 1.0
+ *
+ */
+final class BinaryPlayerCodec {
+
+	static final int MAGIC = 0x43464344;
+	static final byte VERSION = 3;
+
+	private BinaryPlayerCodec() { }
+
+	/**
+	 * Encodes ALL the data of the player. This should be called while holding the lock of the
+	 * PlayerConfig, so that the data does not change while being encoded.
+	 *
+	 * @param config - Player data
+	 * @return Encoded data
+	 * @throws IOException If the data could not be encoded
+	 */
+	static byte[] encode(PlayerConfig config) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+		DataOutputStream out = new DataOutputStream(bytes);
+
+		out.writeInt(MAGIC);
+		out.writeByte(VERSION);
+
+		out.writeInt(config.getIgnored().size());
+		for(UUID id : config.getIgnored())
+			writeUUID(out, id);
+
+		out.writeInt(config.getGroupIds().size());
+		for(UUID id : config.getGroupIds())
+			writeUUID(out, id);
+
+		out.writeInt(config.getWarnings().size());
+		for(Warning w : config.getWarnings()) {
+			out.writeLong(w.getTimeStamp());
+			writeNullableUUID(out, w.getWarner() == null ? null : w.getWarner().getUniqueId());
+			writeString(out, w.getReason());
+		}
+
+		MuteData mute = config.getMuteData();
+		out.writeBoolean(mute.isMuted());
+		out.writeLong(mute.getMuteTime());
+		out.writeLong(mute.getMuteTimeStamp());
+		writeNullableUUID(out, mute.getMuter() == null ? null : mute.getMuter().getUniqueId());
+
+		// Logs are kept within the log archive, older files may still contain logs which are read below
+		for(int i = 0; i < LogType.values().length; i++)
+			out.writeInt(0);
+
+		out.writeInt(config.getMail().size());
+		for(PlayerMail m : config.getMail().values()) {
+			out.writeInt(m.getId());
+			writeNullableUUID(out, m.getSenderID());
+			out.writeLong(m.getTimeStamp());
+			out.writeBoolean(m.isUnread());
+			writeString(out, m.getMessage());
+		}
+
+		out.writeBoolean(config.isSelectiveView());
+		out.writeBoolean(config.isIgnoringServer());
+
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Decodes the data of the player.
+	 *
+	 * @param player - Player the data belongs to
+	 * @param data - Encoded data
+	 * @return PlayerConfig of the player
+	 * @throws IOException If the data is not valid
+	 */
+	static PlayerConfig decode(OfflinePlayer player, byte[] data) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+
+		if(in.readInt() != MAGIC)
+			throw new IOException("Not a CFChat binary player file: " + player.getUniqueId());
+
+		byte version = in.readByte();
+
+		if(version < 1 || version > VERSION)
+			throw new IOException("Unsupported CFChat binary player file version: " + player.getUniqueId());
+
+		int size = in.readInt();
+		List<UUID> ignoreList = new ArrayList<UUID>(size);
+		for(int i = 0; i < size; i++)
+			ignoreList.add(readUUID(in));
+
+		size = in.readInt();
+		List<UUID> groups = new ArrayList<UUID>(size);
+		for(int i = 0; i < size; i++)
+			groups.add(readUUID(in));
+
+		size = in.readInt();
+		List<Warning> warnings = new ArrayList<Warning>(size);
+		for(int i = 0; i < size; i++)
+			warnings.add(Warning.loadFromData(in.readLong(), readNullableUUID(in), readString(in)));
+
+		MuteData muteData = MuteData.loadFromData(in.readBoolean(), in.readLong(), in.readLong(), readNullableUUID(in));
+
+		PlayerLog log = new PlayerLog();
+		for(LogType type : LogType.values()) {
+			size = in.readInt();
+
+			for(int i = 0; i < size; i++)
+				log.addEntry(type, in.readLong(), readString(in));
+		}
+
+		size = in.readInt();
+		Map<Integer, PlayerMail> mail = new HashMap<Integer, PlayerMail>();
+		for(int i = 0; i < size; i++) {
+			int id = in.readInt();
+			mail.put(id, PlayerMail.loadFromData(id, readNullableUUID(in), in.readLong(), in.readBoolean(), readString(in)));
+		}
+
+		PlayerConfig config = new PlayerConfig(player, UUIDSet.of(ignoreList), groups, warnings, muteData, log, mail);
+
+		if(version >= 2)
+			config.loadSelectiveView(in.readBoolean());
+
+		if(version >= 3)
+			config.loadIgnoringServer(in.readBoolean());
+
+		return config;
+	}
+
+	static void writeUUID(DataOutputStream out, UUID id) throws IOException {
+		out.writeLong(id.getMostSignificantBits());
+		out.writeLong(id.getLeastSignificantBits());
+	}
+
+	static UUID readUUID(DataInputStream in) throws IOException { return new UUID(in.readLong(), in.readLong()); }
+
+	static void writeNullableUUID(DataOutputStream out, UUID id) throws IOException {
+		out.writeBoolean(id != null);
+
+		if(id != null)
+			writeUUID(out, id);
+	}
+
+	static UUID readNullableUUID(DataInputStream in) throws IOException { return in.readBoolean() ? readUUID(in) : null; }
+
+	static void writeString(DataOutputStream out, String value) throws IOException {
+		byte[] data = value.getBytes(StandardCharsets.UTF_8);
+
+		out.writeInt(data.length);
+		out.write(data);
+	}
+
+	static String readString(DataInputStream in) throws IOException {
+		byte[] data = new byte[in.readInt()];
+
+		in.readFully(data);
+		return new String(data, StandardCharsets.UTF_8);
+	}
+}
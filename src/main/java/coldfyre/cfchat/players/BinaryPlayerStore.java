@@ -0,0 +1,117 @@
+package coldfyre.cfchat.players;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+import org.bukkit.OfflinePlayer;
+
+import com.coldfyre.api.manager.FilesManager;
+
+/**
+ * Storage of the player data using a compact binary format (see {@link BinaryPlayerCodec}). Each player has
+ * their own '.dat' file within the 'Player Data' folder, named after their UUID. Unlike the YAML storage,
+ * these files are not meant to be edited by hand.
+ *
+ * @author Sommod
+ * @version 1.0
+ *
+ */
+public class BinaryPlayerStore implements PlayerStore {
+
+	public static final String NAME = "BINARY";
+
+	private File folder;
+
+	/**
+	 * Creates a new binary storage for the player data.
+	 *
+	 * @param folder - Folder the player files are kept in
+	 */
+	public BinaryPlayerStore(File folder) {
+		this.folder = folder;
+		folder.mkdirs();
+	}
+
+	@Override
+	public String getName() { return NAME; }
+
+	@Override
+	public PlayerConfig load(OfflinePlayer player) {
+		File file = getPlayerFile(player.getUniqueId());
+
+		if(!file.exists())
+			return new PlayerConfig(player);
+
+		try {
+			return BinaryPlayerCodec.decode(player, Files.readAllBytes(file.toPath()));
+		} catch (IOException e) {
+			throw new IllegalStateException("Could not load player data of " + player.getUniqueId(), e);
+		}
+	}
+
+	@Override
+	public void save(PlayerConfig config) {
+		config.setDirty();
+		saveChanges(config);
+	}
+
+	@Override
+	public boolean saveChanges(PlayerConfig config) {
+		byte[] data;
+
+		synchronized(config) {
+			if(config.takeChanges().isEmpty())
+				return false;
+
+			try {
+				data = BinaryPlayerCodec.encode(config);
+			} catch (IOException e) {
+				config.setDirty();
+				FilesManager.LogException(e);
+				return false;
+			}
+		}
+
+		try {
+			PlayerStore.writeFile(getPlayerFile(config.getPlayerID()), data);
+			return true;
+		} catch (IOException e) {
+			config.setDirty();
+			FilesManager.LogException(e);
+			return false;
+		}
+	}
+
+	@Override
+	public void sync() { PlayerStore.syncFolder(folder); }
+
+	@Override
+	public boolean contains(UUID id) { return getPlayerFile(id).exists(); }
+
+	@Override
+	public Collection<UUID> getStoredPlayers() {
+		List<UUID> ret = new ArrayList<UUID>();
+		File[] files = folder.listFiles((dir, name) -> name.endsWith(".dat"));
+
+		if(files == null)
+			return ret;
+
+		for(File f : files) {
+			try {
+				ret.add(UUID.fromString(f.getName().substring(0, f.getName().length() - 4)));
+			} catch (IllegalArgumentException e) {
+				// Not a player file
+			}
+		}
+
+		return ret;
+	}
+
+	// Gets the file of the player
+	private File getPlayerFile(UUID id) { return new File(folder, id.toString() + ".dat"); }
+}
@@ -0,0 +1,82 @@
+package coldfyre.cfchat.players;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.bukkit.entity.Player;
+
+/**
+ * Reverse index of the ignore lists of the online players; for each player, the online players that are ignoring
+ * them. When a message is sent, the players ignoring the sender are removed from the recipients by reading this index,
+ * rather than checking the ignore list of every recipient. The online players that are ignoring the main chat are kept
+ * within a set of their own.</br></br>
+ *
+ * The index is kept up to date by the {@link PlayerConfig} of each online player; see
+ * {@link PlayerConfig#setIgnoreIndex(IgnoreIndex, Player)}. It may be read from any thread.
+ *
+ * @author Sommod
+ * @version 1.0
+ *
+ */
+public class IgnoreIndex {
+
+	private final Map<UUID, Set<Player>> ignoredBy;
+	private final Set<Player> serverIgnorers;
+
+	/**
+	 * Creates a new empty index.
+	 */
+	public IgnoreIndex() {
+		ignoredBy = new ConcurrentHashMap<UUID, Set<Player>>();
+		serverIgnorers = ConcurrentHashMap.newKeySet();
+	}
+
+	/**
+	 * Gets the online players that are ignoring the given player. The returned set is read-only.
+	 *
+	 * @param id - UUID of the player
+	 * @return Players ignoring the player
+	 */
+	public Set<Player> getIgnorers(UUID id) {
+		Set<Player> ignorers = ignoredBy.get(id);
+
+		return ignorers == null ? Collections.<Player>emptySet() : Collections.unmodifiableSet(ignorers);
+	}
+
+	/**
+	 * Gets the online players that are ignoring the main chat. The returned set is read-only.
+	 *
+	 * @return Players ignoring the main chat
+	 */
+	public Set<Player> getServerIgnorers() { return Collections.unmodifiableSet(serverIgnorers); }
+
+	// Marks the ignorer as ignoring the player; done within the map so an emptied set is never added to
+	void add(UUID ignored, Player ignorer) {
+		ignoredBy.compute(ignored, (key, ignorers) -> {
+			if(ignorers == null)
+				ignorers = ConcurrentHashMap.newKeySet();
+
+			ignorers.add(ignorer);
+			return ignorers;
+		});
+	}
+
+	// Marks the ignorer as no longer ignoring the player, removing the set once empty
+	void remove(UUID ignored, Player ignorer) {
+		ignoredBy.computeIfPresent(ignored, (key, ignorers) -> {
+			ignorers.remove(ignorer);
+			return ignorers.isEmpty() ? null : ignorers;
+		});
+	}
+
+	// Marks if the player is ignoring the main chat
+	void setIgnoringServer(Player player, boolean ignoring) {
+		if(ignoring)
+			serverIgnorers.add(player);
+		else
+			serverIgnorers.remove(player);
+	}
+}
@@ -0,0 +1,784 @@
+package coldfyre.cfchat.players;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.bukkit.scheduler.BukkitTask;
+
+import com.coldfyre.api.manager.FilesManager;
+
+import coldfyre.cfchat.CFChat;
+
+/**
+ * Searchable index of the logged player messages, used to find who said something without reading every player log. Each
+ * message is split into words; the index holds, for every word, the messages it was used in and at which position. A
+ * search may contain words, phrases (<i>"some words"</i>, the words must be next to each other) and prefixes (<i>word*</i>),
+ * and only matches messages that contain all of them.</br></br>
+ *
+ * Messages are only queued when they are logged; a background task adds them to the index, and the index is written into
+ * a single file every so often. Messages older than the configured number of days are dropped from the index when it is
+ * written, and the messages of a player are removed once their message log is cleared.</br></br>
+ *
+ * Postings of a word: <strong>(DOC_DELTA, POSITION_COUNT, POSITION_DELTA...)...</strong> each as a variable length integer.
+ *
+ * @author Sommod
+ * @version 1.0
+ *
+ */
+public class LogSearchIndex implements Runnable {
+
+	private static final int MAGIC = 0x43465349;
+	private static final byte VERSION = 1;
+
+	// Runs of the background task between each write of the index file
+	private static final int SAVE_RUNS = 300;
+
+	/**
+	 * A message found by a search.
+	 *
+	 * @author Sommod
+	 * @version 1.0
+	 *
+	 */
+	public static class Result {
+
+		private final UUID player;
+		private final long time;
+
+		private Result(UUID player, long time) {
+			this.player = player;
+			this.time = time;
+		}
+
+		/**
+		 * Gets the UUID of the player that sent the message.
+		 *
+		 * @return UUID of player
+		 */
+		public UUID getPlayer() { return player; }
+
+		/**
+		 * Gets the time the message was sent.
+		 *
+		 * @return Time of message
+		 */
+		public long getTime() { return time; }
+	}
+
+	private File file;
+	private long maxAge;
+	private BukkitTask task;
+	private ConcurrentLinkedQueue<Object[]> queue;
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	private boolean changed;
+	private int runs;
+
+	// Messages are numbered in the order they were indexed, starting at 'firstDoc'
+	private int firstDoc, docCount;
+	private long[] docTimes;
+	private int[] docPlayers;
+	private List<UUID> players;
+	private Map<UUID, Integer> playerIds;
+	private TreeMap<String, Postings> terms;
+
+	/**
+	 * Creates a new index, reading the index file if it exists.
+	 *
+	 * @param file - File of the index
+	 */
+	public LogSearchIndex(File file) {
+		this.file = file;
+		queue = new ConcurrentLinkedQueue<Object[]>();
+		clear();
+
+		if(file.exists()) {
+			try {
+				read(Files.readAllBytes(file.toPath()));
+			} catch (IOException | RuntimeException e) {
+				FilesManager.LogException(e);
+				clear();
+			}
+		}
+	}
+
+	/**
+	 * Starts the background task that adds the queued messages. If the task is already running, then it
+	 * is restarted.
+	 *
+	 * @param plugin - Plugin to run the task under
+	 * @param days - Number of days messages are kept within the index
+	 */
+	public void start(CFChat plugin, int days) {
+		stop();
+
+		maxAge = Math.max(1, days) * 86400000L;
+		task = plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin, this, 20L, 20L);
+	}
+
+	/**
+	 * Stops the background task, adds any queued messages and writes the index file.
+	 */
+	public void stop() {
+		if(task != null)
+			task.cancel();
+
+		task = null;
+		drain();
+		save();
+	}
+
+	/**
+	 * Queues the message to be added to the index. This does not wait for the message to be added.
+	 *
+	 * @param player - UUID of the player who sent the message
+	 * @param time - Time of the message
+	 * @param message - Message
+	 */
+	public void add(UUID player, long time, String message) { queue.add(new Object[] {player, time, message}); }
+
+	/**
+	 * Queues the removal of every message of the player, such as when their message log is cleared. Messages
+	 * queued before this call are removed as well; those queued after are kept.
+	 *
+	 * @param player - UUID of player
+	 */
+	public void remove(UUID player) { queue.add(new Object[] {player}); }
+
+	@Override
+	public void run() {
+		drain();
+
+		if(++runs >= SAVE_RUNS) {
+			runs = 0;
+			save();
+		}
+	}
+
+	/**
+	 * Searches for messages containing all the words, phrases and prefixes of the query, sent between the
+	 * given times. The start time is included, the end time is not.
+	 *
+	 * @param query - Search query
+	 * @param from - Start time
+	 * @param to - End time
+	 * @param limit - Most results to return
+	 * @return Found messages, newest first
+	 */
+	public List<Result> search(String query, long from, long to, int limit) {
+		List<Clause> clauses = parse(query);
+		List<Result> ret = new ArrayList<Result>();
+
+		if(clauses.isEmpty())
+			return ret;
+
+		lock.readLock().lock();
+
+		try {
+			int[] docs = null;
+
+			for(Clause clause : clauses) {
+				docs = intersect(docs, clause.match(this));
+
+				if(docs.length == 0)
+					return ret;
+			}
+
+			for(int i = docs.length - 1; i >= 0 && ret.size() < limit; i--) {
+				int doc = docs[i] - firstDoc;
+
+				if(docTimes[doc] >= from && docTimes[doc] < to)
+					ret.add(new Result(players.get(docPlayers[doc]), docTimes[doc]));
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+
+		return ret;
+	}
+
+	/**
+	 * Splits the text into the words used by the index. Words are made lower-case, and color codes and
+	 * symbols are removed.
+	 *
+	 * @param text - Text to split
+	 * @return List of words
+	 */
+	static List<String> tokenize(String text) {
+		List<String> ret = new ArrayList<String>();
+		StringBuilder word = new StringBuilder();
+
+		for(int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+
+			if((c == '§' || c == '&') && i + 1 < text.length() && "0123456789abcdefklmnorx".indexOf(Character.toLowerCase(text.charAt(i + 1))) >= 0) {
+				i++;
+				continue;
+			}
+
+			if(Character.isLetterOrDigit(c))
+				word.append(Character.toLowerCase(c));
+			else if(word.length() > 0) {
+				ret.add(word.toString());
+				word.setLength(0);
+			}
+		}
+
+		if(word.length() > 0)
+			ret.add(word.toString());
+
+		return ret;
+	}
+
+	// Adds the queued messages into the index
+	private void drain() {
+		if(queue.isEmpty())
+			return;
+
+		lock.writeLock().lock();
+
+		try {
+			Object[] message;
+
+			while((message = queue.poll()) != null) {
+				if(message.length == 1)
+					removePlayer((UUID) message[0]);
+				else
+					index((UUID) message[0], (Long) message[1], (String) message[2]);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	// Adds a single message into the index
+	private void index(UUID player, long time, String message) {
+		List<String> words = tokenize(message);
+
+		if(words.isEmpty())
+			return;
+
+		if(docCount == docTimes.length) {
+			docTimes = Arrays.copyOf(docTimes, docCount * 2);
+			docPlayers = Arrays.copyOf(docPlayers, docCount * 2);
+		}
+
+		Integer pid = playerIds.get(player);
+
+		if(pid == null) {
+			pid = players.size();
+			players.add(player);
+			playerIds.put(player, pid);
+		}
+
+		int doc = firstDoc + docCount;
+
+		docTimes[docCount] = time;
+		docPlayers[docCount++] = pid;
+
+		Map<String, List<Integer>> positions = new HashMap<String, List<Integer>>();
+
+		for(int i = 0; i < words.size(); i++)
+			positions.computeIfAbsent(words.get(i), w -> new ArrayList<Integer>()).add(i);
+
+		for(Map.Entry<String, List<Integer>> entry : positions.entrySet())
+			terms.computeIfAbsent(entry.getKey(), w -> new Postings()).add(doc, entry.getValue());
+
+		changed = true;
+	}
+
+	// Removes the player's messages from the postings of every word. The messages keep their number, so the
+	// postings of other messages do not change.
+	private void removePlayer(UUID player) {
+		Integer pid = playerIds.get(player);
+
+		if(pid == null)
+			return;
+
+		BitSet removed = new BitSet(docCount);
+
+		for(int i = 0; i < docCount; i++) {
+			if(docPlayers[i] == pid)
+				removed.set(i);
+		}
+
+		if(removed.isEmpty())
+			return;
+
+		TreeMap<String, Postings> kept = new TreeMap<String, Postings>();
+
+		for(Map.Entry<String, Postings> entry : terms.entrySet()) {
+			Postings postings = entry.getValue().without(removed, firstDoc);
+
+			if(postings.docCount > 0)
+				kept.put(entry.getKey(), postings);
+		}
+
+		terms = kept;
+		changed = true;
+	}
+
+	// Writes the index file, dropping messages older than the maximum age
+	private void save() {
+		byte[] data;
+
+		lock.writeLock().lock();
+
+		try {
+			if(!changed)
+				return;
+
+			dropExpired();
+			data = write();
+			changed = false;
+		} catch (IOException e) {
+			FilesManager.LogException(e);
+			return;
+		} finally {
+			lock.writeLock().unlock();
+		}
+
+		try {
+			file.getParentFile().mkdirs();
+			PlayerStore.writeFile(file, data);
+		} catch (IOException e) {
+			FilesManager.LogException(e);
+		}
+	}
+
+	// Removes the messages older than the maximum age, numbering the kept messages again from 0. Messages are
+	// only removed once a quarter of the index has expired, as every word has to be rewritten. Messages are not
+	// always added in order of time (players are loaded in the background), so every message is looked at.
+	private void dropExpired() {
+		if(maxAge <= 0L)
+			return;
+
+		long expire = System.currentTimeMillis() - maxAge;
+		int expired = 0;
+
+		for(int i = 0; i < docCount; i++) {
+			if(docTimes[i] < expire)
+				expired++;
+		}
+
+		if(expired == 0 || expired < docCount / 4)
+			return;
+
+		int[] numbers = new int[docCount];
+		long[] times = new long[Math.max(256, (docCount - expired) * 2)];
+		int[] owners = new int[times.length];
+		int kept = 0;
+
+		for(int i = 0; i < docCount; i++) {
+			if(docTimes[i] < expire) {
+				numbers[i] = -1;
+				continue;
+			}
+
+			numbers[i] = kept;
+			times[kept] = docTimes[i];
+			owners[kept++] = docPlayers[i];
+		}
+
+		TreeMap<String, Postings> keptTerms = new TreeMap<String, Postings>();
+
+		for(Map.Entry<String, Postings> entry : terms.entrySet()) {
+			Postings postings = entry.getValue().renumber(numbers, firstDoc);
+
+			if(postings.docCount > 0)
+				keptTerms.put(entry.getKey(), postings);
+		}
+
+		docTimes = times;
+		docPlayers = owners;
+		docCount = kept;
+		firstDoc = 0;
+		terms = keptTerms;
+	}
+
+	private void clear() {
+		firstDoc = 0;
+		docCount = 0;
+		docTimes = new long[256];
+		docPlayers = new int[256];
+		players = new ArrayList<UUID>();
+		playerIds = new HashMap<UUID, Integer>();
+		terms = new TreeMap<String, Postings>();
+	}
+
+	private byte[] write() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+
+		out.writeInt(MAGIC);
+		out.writeByte(VERSION);
+
+		out.writeInt(players.size());
+		for(UUID id : players) {
+			out.writeLong(id.getMostSignificantBits());
+			out.writeLong(id.getLeastSignificantBits());
+		}
+
+		out.writeInt(firstDoc);
+		out.writeInt(docCount);
+		for(int i = 0; i < docCount; i++) {
+			out.writeLong(docTimes[i]);
+			out.writeInt(docPlayers[i]);
+		}
+
+		out.writeInt(terms.size());
+		for(Map.Entry<String, Postings> entry : terms.entrySet()) {
+			out.writeUTF(entry.getKey());
+			out.writeInt(entry.getValue().docCount);
+			out.writeInt(entry.getValue().lastDoc);
+			out.writeInt(entry.getValue().length);
+			out.write(entry.getValue().data, 0, entry.getValue().length);
+		}
+
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	private void read(byte[] data) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+
+		if(in.readInt() != MAGIC || in.readByte() != VERSION)
+			throw new IOException("Not a CFChat search index: " + file.getName());
+
+		int size = in.readInt();
+		for(int i = 0; i < size; i++) {
+			UUID id = new UUID(in.readLong(), in.readLong());
+
+			playerIds.put(id, players.size());
+			players.add(id);
+		}
+
+		firstDoc = in.readInt();
+		docCount = in.readInt();
+		docTimes = new long[Math.max(256, docCount * 2)];
+		docPlayers = new int[docTimes.length];
+
+		for(int i = 0; i < docCount; i++) {
+			docTimes[i] = in.readLong();
+			docPlayers[i] = in.readInt();
+		}
+
+		size = in.readInt();
+		for(int i = 0; i < size; i++) {
+			String term = in.readUTF();
+			Postings postings = new Postings();
+
+			postings.docCount = in.readInt();
+			postings.lastDoc = in.readInt();
+			postings.length = in.readInt();
+			postings.data = new byte[Math.max(16, postings.length)];
+			in.readFully(postings.data, 0, postings.length);
+
+			terms.put(term, postings);
+		}
+	}
+
+	// Splits the query into it's words, phrases and prefixes
+	private static List<Clause> parse(String query) {
+		List<Clause> ret = new ArrayList<Clause>();
+		String[] parts = query.split("\"", -1);
+
+		for(int i = 0; i < parts.length; i++) {
+			if(i % 2 == 1) {
+				List<String> words = tokenize(parts[i]);
+
+				if(!words.isEmpty())
+					ret.add(new Clause(words, false));
+				continue;
+			}
+
+			for(String part : parts[i].trim().split("\\s+")) {
+				List<String> words = tokenize(part);
+
+				if(words.size() == 1 && part.endsWith("*"))
+					ret.add(new Clause(words, true));
+				else if(!words.isEmpty())
+					ret.add(new Clause(words, false));
+			}
+		}
+
+		return ret;
+	}
+
+	// Keeps the messages found within both sorted lists; NULL is treated as all messages
+	private static int[] intersect(int[] a, int[] b) {
+		if(a == null)
+			return b;
+
+		int[] ret = new int[Math.min(a.length, b.length)];
+		int size = 0;
+
+		for(int i = 0, j = 0; i < a.length && j < b.length;) {
+			if(a[i] < b[j])
+				i++;
+			else if(a[i] > b[j])
+				j++;
+			else {
+				ret[size++] = a[i];
+				i++;
+				j++;
+			}
+		}
+
+		return Arrays.copyOf(ret, size);
+	}
+
+	/**
+	 * A single part of a search; a word, a phrase or a prefix.
+	 *
+	 * @author Sommod
+	 * @version 1.0
+	 *
+	 */
+	private static class Clause {
+
+		private final List<String> words;
+		private final boolean prefix;
+
+		private Clause(List<String> words, boolean prefix) {
+			this.words = words;
+			this.prefix = prefix;
+		}
+
+		// Gets the sorted messages that match this clause
+		private int[] match(LogSearchIndex index) {
+			if(prefix) {
+				List<int[]> lists = new ArrayList<int[]>();
+
+				for(Postings postings : index.terms.subMap(words.get(0), words.get(0) + Character.MAX_VALUE).values())
+					lists.add(postings.docs());
+
+				return union(lists);
+			}
+
+			if(words.size() == 1) {
+				Postings postings = index.terms.get(words.get(0));
+
+				return postings == null ? new int[0] : postings.docs();
+			}
+
+			// Phrase; the messages must contain each word, one after another
+			List<Map<Integer, int[]>> positions = new ArrayList<Map<Integer, int[]>>();
+			int[] docs = null;
+
+			for(String word : words) {
+				Postings postings = index.terms.get(word);
+
+				if(postings == null)
+					return new int[0];
+
+				Map<Integer, int[]> map = postings.positions();
+
+				positions.add(map);
+				docs = intersect(docs, postings.docs());
+			}
+
+			int[] ret = new int[docs.length];
+			int size = 0;
+
+			for(int doc : docs) {
+				for(int start : positions.get(0).get(doc)) {
+					boolean found = true;
+
+					for(int w = 1; w < words.size() && found; w++)
+						found = Arrays.binarySearch(positions.get(w).get(doc), start + w) >= 0;
+
+					if(found) {
+						ret[size++] = doc;
+						break;
+					}
+				}
+			}
+
+			return Arrays.copyOf(ret, size);
+		}
+
+		// Merges the sorted lists into one without duplicates, taking the lowest head of all the lists each step
+		private static int[] union(List<int[]> lists) {
+			PriorityQueue<int[]> heads = new PriorityQueue<int[]>(Math.max(1, lists.size()), (a, b) -> Integer.compare(a[0], b[0]));
+			int total = 0;
+
+			// Each head holds (MESSAGE, LIST, POSITION)
+			for(int i = 0; i < lists.size(); i++) {
+				if(lists.get(i).length > 0)
+					heads.add(new int[] {lists.get(i)[0], i, 0});
+
+				total += lists.get(i).length;
+			}
+
+			int[] ret = new int[total];
+			int size = 0;
+
+			while(!heads.isEmpty()) {
+				int[] head = heads.poll();
+				int[] list = lists.get(head[1]);
+
+				if(size == 0 || ret[size - 1] != head[0])
+					ret[size++] = head[0];
+
+				if(++head[2] < list.length) {
+					head[0] = list[head[2]];
+					heads.add(head);
+				}
+			}
+
+			return Arrays.copyOf(ret, size);
+		}
+	}
+
+	/**
+	 * The messages a single word was used in, encoded as variable length integers.
+	 *
+	 * @author Sommod
+	 * @version 1.0
+	 *
+	 */
+	private static class Postings {
+
+		private byte[] data = new byte[16];
+		private int length, docCount;
+		private int lastDoc = -1;
+
+		private void add(int doc, List<Integer> positions) {
+			writeVarInt(lastDoc < 0 ? doc + 1 : doc - lastDoc);
+			writeVarInt(positions.size());
+
+			int last = 0;
+			for(int pos : positions) {
+				writeVarInt(pos - last);
+				last = pos;
+			}
+
+			lastDoc = doc;
+			docCount++;
+		}
+
+		// Gets the messages of this word
+		private int[] docs() {
+			int[] ret = new int[docCount];
+			int[] pos = {0};
+			int doc = -1;
+
+			for(int i = 0; i < docCount; i++) {
+				doc += readVarInt(pos);
+				ret[i] = doc;
+
+				for(int n = readVarInt(pos); n > 0; n--)
+					readVarInt(pos);
+			}
+
+			return ret;
+		}
+
+		// Gets the positions of this word within each message
+		private Map<Integer, int[]> positions() {
+			Map<Integer, int[]> ret = new HashMap<Integer, int[]>();
+			int[] pos = {0};
+			int doc = -1;
+
+			for(int i = 0; i < docCount; i++) {
+				doc += readVarInt(pos);
+
+				int[] positions = new int[readVarInt(pos)];
+				int last = 0;
+
+				for(int n = 0; n < positions.length; n++)
+					positions[n] = last += readVarInt(pos);
+
+				ret.put(doc, positions);
+			}
+
+			return ret;
+		}
+
+		// Copies the postings of the kept messages under their new number; numbers holds the new number of each
+		// message starting at the given message, or -1 if the message is removed
+		private Postings renumber(int[] numbers, int first) {
+			Postings ret = new Postings();
+			int[] pos = {0};
+			int doc = -1;
+
+			for(int i = 0; i < docCount; i++) {
+				doc += readVarInt(pos);
+
+				List<Integer> positions = new ArrayList<Integer>();
+				int last = 0;
+
+				for(int n = readVarInt(pos); n > 0; n--)
+					positions.add(last += readVarInt(pos));
+
+				if(doc >= first && numbers[doc - first] >= 0)
+					ret.add(numbers[doc - first], positions);
+			}
+
+			return ret;
+		}
+
+		// Copies the postings of every message that is not within the removed messages
+		private Postings without(BitSet removed, int first) {
+			Postings ret = new Postings();
+			int[] pos = {0};
+			int doc = -1;
+
+			for(int i = 0; i < docCount; i++) {
+				doc += readVarInt(pos);
+
+				List<Integer> positions = new ArrayList<Integer>();
+				int last = 0;
+
+				for(int n = readVarInt(pos); n > 0; n--)
+					positions.add(last += readVarInt(pos));
+
+				if(doc < first || !removed.get(doc - first))
+					ret.add(doc, positions);
+			}
+
+			return ret;
+		}
+
+		private void writeVarInt(int value) {
+			if(length + 5 > data.length)
+				data = Arrays.copyOf(data, data.length * 2);
+
+			while((value & ~0x7F) != 0) {
+				data[length++] = (byte) ((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+
+			data[length++] = (byte) value;
+		}
+
+		private int readVarInt(int[] pos) {
+			int value = 0;
+
+			for(int shift = 0;; shift += 7) {
+				byte b = data[pos[0]++];
+
+				value |= (b & 0x7F) << shift;
+
+				if(b >= 0)
+					return value;
+			}
+		}
+	}
+}
@@ -2,6 +2,7 @@ package coldfyre.cfchat.players;
 
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.List;
 import java.util.UUID;
 
 import org.bukkit.Bukkit;
@@ -22,6 +23,9 @@ public class MuteData {
 	private long time, timeStamp;
 	private OfflinePlayer muter;
 	
+	// Player data this mute belongs to, used to mark the mute section as changed
+	PlayerConfig owner;
+	
 	/**
 	 * Creates a new MuteData object. All values are NULL by default.
 	 */
@@ -37,7 +41,7 @@ public class MuteData {
 	public static MuteData loadMuteData(YamlConfiguration config) {
 		MuteData d = new MuteData();
 		
-		d.time = Long.parseLong(config.getStringList("chat.mute.time").get(0));
+		d.time = parseTime(config.getStringList("chat.mute.time"));
 		
 		if(d.time <= System.currentTimeMillis()) {
 			d.time = 0L;
@@ -49,13 +53,43 @@ public class MuteData {
 		}
 		
 		d.muted = config.getBoolean("chat.mute.on");
-		d.timeStamp = Long.parseLong(config.getStringList("chat.mute.at").get(0));
+		d.timeStamp = parseTime(config.getStringList("chat.mute.at"));
 		d.muter = config.getStringList("chat.mute.by").get(0).equalsIgnoreCase("console") ? null :
 			Bukkit.getServer().getOfflinePlayer(UUID.fromString(config.getStringList("chat.mute.by").get(0)));
 		
 		return d;
 	}
 	
+	/**
+	 * Loads the MuteData from data that has already been split into it's values. The same as
+	 * {@link #loadMuteData(YamlConfiguration)}, the mute is cleared if the release time has passed.
+	 * 
+	 * @param muted - If muted
+	 * @param time - Release time of mute
+	 * @param timeStamp - Time the mute occurred
+	 * @param muter - UUID of the muter, NULL if console
+	 * @return MuteData object
+	 */
+	static MuteData loadFromData(boolean muted, long time, long timeStamp, UUID muter) {
+		MuteData d = new MuteData();
+		
+		if(time <= System.currentTimeMillis())
+			return d;
+		
+		d.muted = muted;
+		d.time = time;
+		d.timeStamp = timeStamp;
+		d.muter = muter == null ? null : Bukkit.getServer().getOfflinePlayer(muter);
+		
+		return d;
+	}
+	
+	// Gets the long value stored as the first entry of the list. An empty list or value means
+	// that there is no time set.
+	private static long parseTime(List<String> data) {
+		return data.isEmpty() || data.get(0).isEmpty() ? 0L : Long.parseLong(data.get(0));
+	}
+	
 	/**
 	 * Sets the data for the mute based on the muter and time. If the muter is console, then set the muter value
 	 * to <strong>null</strong>. The Time Stamp is set during this method call.
@@ -68,6 +102,22 @@ public class MuteData {
 		this.time = time;
 		timeStamp = System.currentTimeMillis();
 		this.muter = muter;
+		changed(PlayerJournal.Mutation.MUTE_SET);
+	}
+	
+	/**
+	 * Sets the data of a mute that has already occurred, such as when replaying the {@link PlayerJournal}.
+	 * 
+	 * @param time - Release time of mute
+	 * @param timeStamp - Time the mute occurred
+	 * @param muter - Entity that muted, NULL if console
+	 */
+	void restore(long time, long timeStamp, OfflinePlayer muter) {
+		muted = true;
+		this.time = time;
+		this.timeStamp = timeStamp;
+		this.muter = muter;
+		changed(PlayerJournal.Mutation.MUTE_SET);
 	}
 	
 	/**
@@ -78,6 +128,7 @@ public class MuteData {
 		time = 0L;
 		timeStamp = 0L;
 		muter = null;
+		changed(PlayerJournal.Mutation.MUTE_CLEAR);
 	}
 	
 	/**
@@ -124,6 +175,23 @@ public class MuteData {
 	 */
 	public OfflinePlayer getMuter() { return muter; }
 	
+	// Marks the mute section of the owning player data as changed
+	private void changed(PlayerJournal.Mutation mutation) {
+		if(owner == null)
+			return;
+		
+		long time = this.time, timeStamp = this.timeStamp;
+		UUID muter = this.muter == null ? null : this.muter.getUniqueId();
+		
+		owner.changed(PlayerConfig.DataSection.MUTE, mutation, out -> {
+			if(mutation == PlayerJournal.Mutation.MUTE_SET) {
+				out.writeLong(time);
+				out.writeLong(timeStamp);
+				BinaryPlayerCodec.writeNullableUUID(out, muter);
+			}
+		});
+	}
+	
 	// converts the long value into a user-friendly string representation
 	private String convertTime(long time)  { return new SimpleDateFormat("dd MMM YYYY kk:mm:ss").format(new Date(time)); }
 }
@@ -1,8 +1,12 @@
 package coldfyre.cfchat.players;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -10,15 +14,24 @@ import java.util.UUID;
 
 import org.bukkit.Bukkit;
 import org.bukkit.OfflinePlayer;
+import org.bukkit.entity.Player;
 import org.bukkit.configuration.file.YamlConfiguration;
 
-import coldfyre.cfchat.players.PlayerLog.LogType;
+import com.coldfyre.api.manager.FilesManager;
+
+import coldfyre.cfchat.players.PlayerJournal.Mutation;
+import coldfyre.cfchat.players.PlayerJournal.RecordWriter;
 import coldfyre.cfchat.warnings.Warning;
 
 /**
  * This config contains all the data of the player. Most details about a player can be
  * found here within this object. Note that some times have their own class that handle
- * their specific data while others are handled within this class.
+ * their specific data while others are handled within this class.</br></br>
+ * 
+ * Any changes done to the data of this object are tracked by the section of the player file
+ * that they belong to. When saving, only the sections that have changed are written back into
+ * the data, rather than rebuilding the whole file. If a {@link PlayerJournal} is set, each change is
+ * also recorded within it, so that changes not yet saved can be recovered.
  * 
  * @author Sommod
  * @version 1.0
@@ -26,14 +39,34 @@ import coldfyre.cfchat.warnings.Warning;
  */
 public class PlayerConfig {
 	
+	/**
+	 * The different sections of the player file. Each change to the player data marks
+	 * the section it belongs to, so that only those sections are written when saving.
+	 * 
+	 * @author Sommod
+	 * @version 1.0
+	 *
+	 */
+	public enum DataSection {
+		WARNINGS, GROUPS, IGNORE, MUTE, LOGGER, MAIL, OPTIONS;
+	}
+	
+	private YamlConfiguration config;
+	private EnumSet<DataSection> dirty;
+	private volatile PlayerJournal journal;
 	private OfflinePlayer player;
 	private UUID pid;
 	private Map<Integer, PlayerMail> mail;
 	private PlayerLog playerLog;
-	private List<OfflinePlayer> ignoreList;
+	private volatile UUIDSet ignored;
 	private List<UUID> groups;
 	private MuteData muteData;
 	private List<Warning> warnings;
+	private volatile boolean selectiveView, ignoringServer;
+	
+	// Reverse index of the ignore lists, and the online player, while this player is online
+	private IgnoreIndex ignoreIndex;
+	private Player online;
 	
 	/**
 	 * Creates a new PLayerConfig file for the player with their file. The file is
@@ -44,14 +77,71 @@ public class PlayerConfig {
 	 * @param config - Their Config file
 	 */
 	public PlayerConfig(OfflinePlayer player, YamlConfiguration config) {
+		this.config = config;
 		this.player = player;
+		dirty = EnumSet.noneOf(DataSection.class);
 		pid = player.getUniqueId();
-		ignoreList = loadIgnoreList(config.getStringList("chat.ignore"));
+		ignored = loadIgnoreList(config.getStringList("chat.ignore"));
 		warnings = loadWarningList(config.getStringList("warnings"));
 		groups = loadGroups(config.getStringList("groups"));
 		muteData = MuteData.loadMuteData(config);
 		playerLog = PlayerLog.loadFromConfig(config);
 		mail = loadMail(config);
+		selectiveView = config.getBoolean("chat.options.selective", false);
+		ignoringServer = config.getBoolean("chat.options.ignore_server", false);
+		
+		muteData.owner = this;
+		playerLog.owner = this;
+		
+		for(PlayerMail m : mail.values())
+			m.owner = this;
+		
+		// Logs from older player files are moved into the log archive
+		if(playerLog.hasPending())
+			dirty.add(DataSection.LOGGER);
+	}
+	
+	/**
+	 * Creates a new PlayerConfig from data that has already been collected. This is used by the
+	 * {@link PlayerStore} types that do not store the player data as YAML.
+	 * 
+	 * @param player - Player to get config of
+	 * @param ignored - Players this player is ignoring
+	 * @param groups - ID's of the groups of the player
+	 * @param warnings - Warnings of the player
+	 * @param muteData - Mute Data of the player
+	 * @param playerLog - Logger of the player
+	 * @param mail - Mail of the player
+	 */
+	PlayerConfig(OfflinePlayer player, UUIDSet ignored, List<UUID> groups, List<Warning> warnings, MuteData muteData, PlayerLog playerLog, Map<Integer, PlayerMail> mail) {
+		this.player = player;
+		dirty = EnumSet.noneOf(DataSection.class);
+		pid = player.getUniqueId();
+		this.ignored = ignored;
+		this.groups = groups;
+		this.warnings = warnings;
+		this.muteData = muteData;
+		this.playerLog = playerLog;
+		this.mail = mail;
+		
+		muteData.owner = this;
+		playerLog.owner = this;
+		
+		for(PlayerMail m : mail.values())
+			m.owner = this;
+		
+		// Logs from older player files are moved into the log archive
+		if(playerLog.hasPending())
+			dirty.add(DataSection.LOGGER);
+	}
+	
+	/**
+	 * Creates a new PlayerConfig for a player that does not have any stored data.
+	 * 
+	 * @param player - Player to get config of
+	 */
+	PlayerConfig(OfflinePlayer player) {
+		this(player, UUIDSet.EMPTY, new ArrayList<UUID>(), new ArrayList<Warning>(), new MuteData(), new PlayerLog(), new HashMap<Integer, PlayerMail>());
 	}
 	
 	/**
@@ -65,6 +155,9 @@ public class PlayerConfig {
 	private Map<Integer, PlayerMail> loadMail(YamlConfiguration config) {
 		Map<Integer, PlayerMail> ret = new HashMap<Integer, PlayerMail>();
 		
+		if(!config.isConfigurationSection("mail"))
+			return ret;
+		
 		for(String mid : config.getConfigurationSection("mail").getKeys(false))
 			ret.put(Integer.parseInt(mid), PlayerMail.loadFromConfig(Integer.parseInt(mid), config, "mail"));
 		
@@ -90,15 +183,15 @@ public class PlayerConfig {
 	 * Loads the ignore list of player UUID's into the ignore list
 	 * 
 	 * @param ids - String values of UUID's
-	 * @return List of players to ignore
+	 * @return Set of players to ignore
 	 */
-	private List<OfflinePlayer> loadIgnoreList(List<String> ids) {
-		List<OfflinePlayer> ret = new ArrayList<OfflinePlayer>();
+	private UUIDSet loadIgnoreList(List<String> ids) {
+		List<UUID> ret = new ArrayList<UUID>();
 		
 		for(String s : ids)
-			ret.add(Bukkit.getServer().getOfflinePlayer(UUID.fromString(s.split(":")[0])));
+			ret.add(UUID.fromString(s.split(":")[0]));
 		
-		return ret;
+		return UUIDSet.of(ret);
 	}
 	
 	/**
@@ -162,6 +255,33 @@ public class PlayerConfig {
 		return ret;
 	}
 	
+	/**
+	 * Adds the Mail to this player. If mail with the same ID already exists, then it is replaced.
+	 * 
+	 * @param m - Mail to add
+	 */
+	public synchronized void addMail(PlayerMail m) {
+		m.owner = this;
+		mail.put(m.getId(), m);
+		changed(DataSection.MAIL, Mutation.MAIL_ADD, out -> {
+			out.writeInt(m.getId());
+			BinaryPlayerCodec.writeNullableUUID(out, m.getSenderID());
+			out.writeLong(m.getTimeStamp());
+			out.writeBoolean(m.isUnread());
+			BinaryPlayerCodec.writeString(out, m.getMessage());
+		});
+	}
+	
+	/**
+	 * Removes the Mail from this player based on it's ID.
+	 * 
+	 * @param id - ID of mail object
+	 */
+	public synchronized void removeMail(int id) {
+		if(mail.remove(id) != null)
+			changed(DataSection.MAIL, Mutation.MAIL_REMOVE, out -> out.writeInt(id));
+	}
+	
 	/**
 	 * Gets the Logger of the player.
 	 * 
@@ -177,11 +297,35 @@ public class PlayerConfig {
 	public MuteData getMuteData() { return muteData; }
 	
 	/**
-	 * Gets the list of players this player is ignoring.
+	 * Gets a list of the players this player is ignoring. The list is a copy; use {@link #addIgnore(OfflinePlayer)}
+	 * and {@link #removeIgnore(OfflinePlayer)} to change it.
 	 * 
 	 * @return List of ignored players
 	 */
-	public List<OfflinePlayer> getIgnoreList() { return ignoreList; }
+	public List<OfflinePlayer> getIgnoreList() {
+		List<OfflinePlayer> ret = new ArrayList<OfflinePlayer>();
+		
+		for(UUID id : ignored)
+			ret.add(Bukkit.getServer().getOfflinePlayer(id));
+		
+		return ret;
+	}
+	
+	/**
+	 * Gets the UUID's of the players this player is ignoring. The set does not change; a new set is made
+	 * whenever a player is added or removed.
+	 * 
+	 * @return Set of ignored players
+	 */
+	public UUIDSet getIgnored() { return ignored; }
+	
+	/**
+	 * Checks if this player is ignoring the given player.
+	 * 
+	 * @param id - UUID of player
+	 * @return True - if ignored
+	 */
+	public boolean isIgnoring(UUID id) { return ignored.contains(id); }
 	
 	/**
 	 * Gets the group ID's the player is apart of.
@@ -191,11 +335,12 @@ public class PlayerConfig {
 	public List<UUID> getGroupIds() { return groups; }
 	
 	/**
-	 * Gets the list of Warnings this player has.
+	 * Gets the list of Warnings this player has. The list cannot be changed, Warnings are
+	 * added and removed through this config so the changes are saved.
 	 * 
 	 * @return List of Warnings
 	 */
-	public List<Warning> getWarnings() { return warnings; }
+	public List<Warning> getWarnings() { return Collections.unmodifiableList(warnings); }
 	
 	/**
 	 * Gets a list of Warnings between the specified dates.
@@ -239,7 +384,14 @@ public class PlayerConfig {
 	 * 
 	 * @param warning - Warning to add
 	 */
-	public void addWarning(Warning warning) { warnings.add(warning); }
+	public synchronized void addWarning(Warning warning) {
+		warnings.add(warning);
+		changed(DataSection.WARNINGS, Mutation.WARNING_ADD, out -> {
+			out.writeLong(warning.getTimeStamp());
+			BinaryPlayerCodec.writeNullableUUID(out, warning.getWarner() == null ? null : warning.getWarner().getUniqueId());
+			BinaryPlayerCodec.writeString(out, warning.getReason());
+		});
+	}
 	
 	/**
 	 * Removes the Warning from this players config. Each warning has their own ID, but that does NOT
@@ -248,7 +400,7 @@ public class PlayerConfig {
 	 * 
 	 * @param id - ID of warning
 	 */
-	public void removeWarning(int id) { warnings.remove(id); }
+	public synchronized void removeWarning(int id) { removeWarning(warnings.get(id)); }
 	
 	/**
 	 * Removes the Warning from this players config. Each warning has their own ID, but that does NOT
@@ -257,16 +409,43 @@ public class PlayerConfig {
 	 * 
 	 * @param warning - Warning to remove
 	 */
-	public void removeWarning(Warning warning) { warnings.remove(warning); }
+	public synchronized void removeWarning(Warning warning) {
+		if(warnings.remove(warning))
+			changed(DataSection.WARNINGS, Mutation.WARNING_REMOVE, out -> {
+				out.writeLong(warning.getTimeStamp());
+				BinaryPlayerCodec.writeString(out, warning.getReason());
+			});
+	}
+	
+	/**
+	 * Removes ALL Warnings from this players config.
+	 */
+	public synchronized void clearWarnings() {
+		for(Warning w : new ArrayList<Warning>(warnings))
+			removeWarning(w);
+	}
 	
 	/**
 	 * Adds a player to the list of Ignores.
 	 * 
 	 * @param player - Player to ignore
 	 */
-	public void addIgnore(OfflinePlayer player) {
-		if(!ignoreList.contains(player))
-			ignoreList.add(player);
+	public void addIgnore(OfflinePlayer player) { addIgnore(player.getUniqueId()); }
+	
+	/**
+	 * Adds a player to the list of Ignores.
+	 * 
+	 * @param id - UUID of player to ignore
+	 */
+	public synchronized void addIgnore(UUID id) {
+		if(!ignored.contains(id)) {
+			ignored = ignored.with(id);
+			
+			if(ignoreIndex != null)
+				ignoreIndex.add(id, online);
+			
+			changed(DataSection.IGNORE, Mutation.IGNORE_ADD, out -> BinaryPlayerCodec.writeUUID(out, id));
+		}
 	}
 	
 	/**
@@ -274,16 +453,108 @@ public class PlayerConfig {
 	 * 
 	 * @param player - Player to remove
 	 */
-	public void removeIgnore(OfflinePlayer player) { ignoreList.remove(player); }
+	public void removeIgnore(OfflinePlayer player) { removeIgnore(player.getUniqueId()); }
+	
+	/**
+	 * Removes a player from the ignore list.
+	 * 
+	 * @param id - UUID of player to remove
+	 */
+	public synchronized void removeIgnore(UUID id) {
+		if(ignored.contains(id)) {
+			ignored = ignored.without(id);
+			
+			if(ignoreIndex != null)
+				ignoreIndex.remove(id, online);
+			
+			changed(DataSection.IGNORE, Mutation.IGNORE_REMOVE, out -> BinaryPlayerCodec.writeUUID(out, id));
+		}
+	}
+	
+	/**
+	 * Checks if this player is ignoring the main chat.
+	 * 
+	 * @return True - if ignoring the main chat
+	 */
+	public boolean isIgnoringServer() { return ignoringServer; }
+	
+	/**
+	 * Sets if this player is ignoring the main chat.
+	 * 
+	 * @param ignoringServer - True to ignore the main chat
+	 */
+	public synchronized void setIgnoringServer(boolean ignoringServer) {
+		if(this.ignoringServer != ignoringServer) {
+			this.ignoringServer = ignoringServer;
+			
+			if(ignoreIndex != null)
+				ignoreIndex.setIgnoringServer(online, ignoringServer);
+			
+			changed(DataSection.OPTIONS, Mutation.IGNORE_SERVER_SET, out -> out.writeBoolean(ignoringServer));
+		}
+	}
+	
+	/**
+	 * Sets the reverse index of ignore lists this player is within, while they are online. The ignores of
+	 * this player are removed from the previous index (if any) and added to the new one. Set to NULL once
+	 * the player goes offline.
+	 * 
+	 * @param ignoreIndex - Index of the online players, or NULL
+	 * @param online - This player while online, or NULL
+	 */
+	public synchronized void setIgnoreIndex(IgnoreIndex ignoreIndex, Player online) {
+		if(this.ignoreIndex != null) {
+			for(UUID id : ignored)
+				this.ignoreIndex.remove(id, this.online);
+			
+			this.ignoreIndex.setIgnoringServer(this.online, false);
+		}
+		
+		this.ignoreIndex = online == null ? null : ignoreIndex;
+		this.online = online;
+		
+		if(this.ignoreIndex != null) {
+			for(UUID id : ignored)
+				this.ignoreIndex.add(id, online);
+			
+			this.ignoreIndex.setIgnoringServer(online, ignoringServer);
+		}
+	}
+	
+	/**
+	 * Checks if this player sees messages with selective words when the alternate filter is used. Players
+	 * without this option see those messages replaced with '######'.
+	 * 
+	 * @return True - if selective words are shown
+	 */
+	public boolean isSelectiveView() { return selectiveView; }
+	
+	/**
+	 * Sets if this player sees messages with selective words when the alternate filter is used.
+	 * 
+	 * @param selectiveView - True to show selective words
+	 */
+	public synchronized void setSelectiveView(boolean selectiveView) {
+		if(this.selectiveView != selectiveView) {
+			this.selectiveView = selectiveView;
+			changed(DataSection.OPTIONS, Mutation.SELECTIVE_SET, out -> out.writeBoolean(selectiveView));
+		}
+	}
+	
+	// Sets the options as read from stored data, without marking them as changed
+	void loadSelectiveView(boolean selectiveView) { this.selectiveView = selectiveView; }
+	void loadIgnoringServer(boolean ignoringServer) { this.ignoringServer = ignoringServer; }
 	
 	/**
 	 * Adds a group to the player's list of groups.
 	 * 
 	 * @param id - ID of group
 	 */
-	public void addGroup(UUID id) {
-		if(!groups.contains(id))
+	public synchronized void addGroup(UUID id) {
+		if(!groups.contains(id)) {
 			groups.add(id);
+			changed(DataSection.GROUPS, Mutation.GROUP_ADD, out -> BinaryPlayerCodec.writeUUID(out, id));
+		}
 	}
 	
 //	/**
@@ -301,7 +572,10 @@ public class PlayerConfig {
 	 * 
 	 * @param id - ID of group
 	 */
-	public void removeGroup(UUID id) { groups.remove(id); }
+	public synchronized void removeGroup(UUID id) {
+		if(groups.remove(id))
+			changed(DataSection.GROUPS, Mutation.GROUP_REMOVE, out -> BinaryPlayerCodec.writeUUID(out, id));
+	}
 //	/**
 //	 * Removes the group from the player config.
 //	 * 
@@ -325,6 +599,72 @@ public class PlayerConfig {
 //	 */
 //	public boolean isInGroup(Group group) { return groups.contains(group.getID()); }
 	
+	/**
+	 * Marks the given section of data as changed and records the change within the journal, if one
+	 * is set.
+	 * 
+	 * @param section - Section that has changed
+	 * @param mutation - Type of change
+	 * @param data - Writes the data of the change
+	 */
+	synchronized void changed(DataSection section, Mutation mutation, RecordWriter data) {
+		dirty.add(section);
+		
+		if(journal != null)
+			journal.append(pid, mutation, data);
+	}
+	
+	/**
+	 * Records the change within the journal, if one is set, without marking any section of data as
+	 * changed. This is used for changes that are not saved with the rest of the data, such as logs.
+	 * This does not take the lock of this object, as it is called while holding the lock of the
+	 * {@link PlayerLog}; the log must never wait on this object, which is held during saves.
+	 * 
+	 * @param mutation - Type of change
+	 * @param data - Writes the data of the change
+	 */
+	void record(Mutation mutation, RecordWriter data) {
+		PlayerJournal journal = this.journal;
+		
+		if(journal != null)
+			journal.append(pid, mutation, data);
+	}
+	
+	/**
+	 * Sets the journal that changes to this data are recorded in. Setting this to NULL stops
+	 * the recording of changes.
+	 * 
+	 * @param journal - Journal of changes
+	 */
+	public synchronized void setJournal(PlayerJournal journal) { this.journal = journal; }
+	
+	/**
+	 * Marks ALL the data of this player as changed. This is used when a save has failed, so
+	 * the data is written again with the next save.
+	 */
+	public synchronized void setDirty() { dirty.addAll(EnumSet.allOf(DataSection.class)); }
+	
+	/**
+	 * Checks if any of the data has changed since the last save.
+	 * 
+	 * @return True - if there are changes that are not saved
+	 */
+	public synchronized boolean isDirty() { return !dirty.isEmpty(); }
+	
+	/**
+	 * Gets the sections of data that have changed since the last save and clears them. This should
+	 * only be called while holding the lock of this object, so that the data can be collected before
+	 * any other changes occur.
+	 * 
+	 * @return Sections that have changed
+	 */
+	EnumSet<DataSection> takeChanges() {
+		EnumSet<DataSection> ret = EnumSet.copyOf(dirty);
+		
+		dirty.clear();
+		return ret;
+	}
+	
 	/**
 	 * Saves this data into the given file. Note that this data does not pertain to
 	 * any player. As such, it's the responsibility of the programmer to ensure this
@@ -333,51 +673,115 @@ public class PlayerConfig {
 	 * @param file - File to save data to
 	 */
 	public void save(File file) {
-		YamlConfiguration pConfig = YamlConfiguration.loadConfiguration(file);
-		
-		pConfig.set("mail", null);
-		pConfig.set("warnings", null);
-		
-		pConfig.createSection("mail");
-		pConfig.createSection("warnings");
-		
-		List<String> groupList = new ArrayList<String>();
-		List<String> ignoreList = new ArrayList<String>();
-		List<String> warnings = new ArrayList<String>();
-		
-		for(UUID id : groups)
-			groupList.add(id.toString());
-		
-		for(OfflinePlayer player : this.ignoreList)
-			ignoreList.add(player.getUniqueId().toString());
-
-		for(Warning w : this.warnings)
-			warnings.add(w.getTimeStamp() + "§"
-					+ w.getTimeStampString() + "§"
-					+ (w.getWarner() == null ? "Console" : w.getWarner().getUniqueId().toString()) + "§"
-					+ (w.getWarner() == null ? "Console" : w.getWarner().getName()) + "§"
-					+ w.getReason().replaceAll("§", "_CFUNIQUE_"));
-		
-		pConfig.set("warnings", warnings);
-		pConfig.set("groups", groupList);
-		pConfig.set("chat.ignore", ignoreList);
-		pConfig.set("chat.logger.messages", playerLog.getRawList(LogType.MESSAGES));
-		pConfig.set("chat.logger.commands", playerLog.getRawList(LogType.COMMANDS));
-		pConfig.set("chat.logger.mail", playerLog.getRawList(LogType.MAIL));
-		
-		pConfig.set("chat.mute.on", muteData.isMuted());
-		pConfig.set("chat.mute.time", Arrays.asList("" + (muteData.getMuteTime() > 0 ? muteData.getMuteTime() : ""), muteData.getMuteTime() > 0 ? muteData.getMuteTimeString() : ""));
-		pConfig.set("chat.mute.by", Arrays.asList(muteData.getMuter() == null ? "Console" : muteData.getMuter().getUniqueId().toString(), muteData.getMuter() == null ? "Console" : muteData.getMuter().getName()));
-		pConfig.set("chat.mute.at", Arrays.asList("" + (muteData.getMuteTimeStamp() > 0 ? muteData.getMuteTimeStamp() : ""), muteData.getMuteTimeStamp() > 0 ? muteData.getMuteTimeStampString() : ""));
+		setDirty();
+		saveChanges(file);
+	}
+	
+	/**
+	 * Saves only the sections of data that have changed since the last save into the given file. If
+	 * nothing has changed, then the file is not touched. The data is collected while holding the lock
+	 * of this object, but the file itself is written outside of it; so this can be safely called from
+	 * an asynchronous task while the data is still in use.
+	 * 
+	 * @param file - File to save data to
+	 * @return True - if the file was written
+	 */
+	public boolean saveChanges(File file) {
+		String data;
 		
-		for(Map.Entry<Integer, PlayerMail> mailEntry : mail.entrySet()) {
-			String path = "mail." + mailEntry.getKey() + ".";
+		synchronized(this) {
+			if(dirty.isEmpty())
+				return false;
+			
+			// Data that was not loaded from YAML is written over the existing file
+			if(config == null) {
+				config = YamlConfiguration.loadConfiguration(file);
+				setDirty();
+			}
 			
-			pConfig.set(path + "name", Arrays.asList(mailEntry.getValue().getSenderID().toString(), mailEntry.getValue().getSender().getName()));
-			pConfig.set(path + "time", Arrays.asList(mailEntry.getValue().getTimeStamp() + "", mailEntry.getValue().getDateTime()));
-			pConfig.set(path + "unread", mailEntry.getValue().isUnread());
-			pConfig.set(path + "message", mailEntry.getValue().getMessage());
+			for(DataSection section : takeChanges())
+				writeSection(section);
 			
+			data = config.saveToString();
+		}
+		
+		try {
+			PlayerStore.writeFile(file, data.getBytes(StandardCharsets.UTF_8));
+			return true;
+		} catch (IOException e) {
+			setDirty();
+			FilesManager.LogException(e);
+			return false;
+		}
+	}
+	
+	// Writes the given section of data into the YAML data of the player.
+	private void writeSection(DataSection section) {
+		switch(section) {
+			case WARNINGS:
+				List<String> warnings = new ArrayList<String>();
+				
+				for(Warning w : this.warnings)
+					warnings.add(w.getTimeStamp() + "§"
+							+ w.getTimeStampString() + "§"
+							+ (w.getWarner() == null ? "Console" : w.getWarner().getUniqueId().toString()) + "§"
+							+ (w.getWarner() == null ? "Console" : w.getWarner().getName()) + "§"
+							+ w.getReason().replaceAll("§", "_CFUNIQUE_"));
+				
+				config.set("warnings", warnings);
+				break;
+				
+			case GROUPS:
+				List<String> groupList = new ArrayList<String>();
+				
+				for(UUID id : groups)
+					groupList.add(id.toString());
+				
+				config.set("groups", groupList);
+				break;
+				
+			case IGNORE:
+				List<String> ignoreList = new ArrayList<String>();
+				
+				for(UUID id : ignored)
+					ignoreList.add(id.toString());
+				
+				config.set("chat.ignore", ignoreList);
+				break;
+				
+			case MUTE:
+				config.set("chat.mute.on", muteData.isMuted());
+				config.set("chat.mute.time", Arrays.asList("" + (muteData.getMuteTime() > 0 ? muteData.getMuteTime() : ""), muteData.getMuteTime() > 0 ? muteData.getMuteTimeString() : ""));
+				config.set("chat.mute.by", Arrays.asList(muteData.getMuter() == null ? "Console" : muteData.getMuter().getUniqueId().toString(), muteData.getMuter() == null ? "Console" : muteData.getMuter().getName()));
+				config.set("chat.mute.at", Arrays.asList("" + (muteData.getMuteTimeStamp() > 0 ? muteData.getMuteTimeStamp() : ""), muteData.getMuteTimeStamp() > 0 ? muteData.getMuteTimeStampString() : ""));
+				break;
+				
+			case LOGGER:
+				// Logs are kept within the log archive, this only removes the logs of older player files
+				config.set("chat.logger.messages", new ArrayList<String>());
+				config.set("chat.logger.commands", new ArrayList<String>());
+				config.set("chat.logger.mail", new ArrayList<String>());
+				break;
+				
+			case MAIL:
+				config.set("mail", null);
+				config.createSection("mail");
+				
+				for(Map.Entry<Integer, PlayerMail> mailEntry : mail.entrySet()) {
+					String path = "mail." + mailEntry.getKey() + ".";
+					
+					config.set(path + "name", Arrays.asList(mailEntry.getValue().getSenderID() == null ? "Console" : mailEntry.getValue().getSenderID().toString(),
+							mailEntry.getValue().getSender() == null ? "Console" : mailEntry.getValue().getSender().getName()));
+					config.set(path + "time", Arrays.asList(mailEntry.getValue().getTimeStamp() + "", mailEntry.getValue().getDateTime()));
+					config.set(path + "unread", mailEntry.getValue().isUnread());
+					config.set(path + "message", mailEntry.getValue().getMessage());
+				}
+				break;
+				
+			case OPTIONS:
+				config.set("chat.options.selective", selectiveView);
+				config.set("chat.options.ignore_server", ignoringServer);
+				break;
 		}
 	}
 }
@@ -0,0 +1,552 @@
+package coldfyre.cfchat.players;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+
+import org.bukkit.Bukkit;
+
+import com.coldfyre.api.manager.FilesManager;
+
+import coldfyre.cfchat.players.PlayerLog.LogType;
+import coldfyre.cfchat.warnings.Warning;
+
+/**
+ * Append-only journal of the changes done to player data. Every change (a warning added, a mute set, a log
+ * added, mail read... etc) is written as a small record into the journal right away, while the player data
+ * itself is only written on a timer. Should the server stop without saving, the journal is replayed on the
+ * next start so no changes are lost.</br></br>
+ *
+ * Records are written by a single thread in batches; every record that was added while the previous batch was
+ * being written is written together, followed by a single sync of the file. Only the writing thread touches the
+ * segment file, and the file is written and synced without holding the lock taken to add a record, so adding a
+ * record never waits on the disk. Once all player data has been saved, the finished journal segments are no longer
+ * needed and are deleted.</br></br>
+ *
+ * Format of a record: <strong>LENGTH | MUTATION | UUID_MOST | UUID_LEAST | DATA | CRC32</strong>
+ *
+ * @author Sommod
+ * @version 1.0
+ *
+ */
+public class PlayerJournal implements Runnable {
+
+	// Largest record that is read back; a longer length can only come from a damaged segment
+	private static final int MAX_RECORD_LENGTH = 1 << 20;
+
+	/**
+	 * The different changes that can be recorded within the journal.
+	 *
+	 * @author Sommod
+	 * @version 1.0
+	 *
+	 */
+	public enum Mutation {
+		WARNING_ADD, WARNING_REMOVE, IGNORE_ADD, IGNORE_REMOVE, GROUP_ADD, GROUP_REMOVE, MUTE_SET,
+		MUTE_CLEAR, LOG_APPEND, LOG_CLEAR, MAIL_ADD, MAIL_READ, MAIL_REMOVE, SELECTIVE_SET, IGNORE_SERVER_SET;
+	}
+
+	/**
+	 * Writes the data of a single record.
+	 *
+	 * @author Sommod
+	 * @version 1.0
+	 *
+	 */
+	@FunctionalInterface
+	interface RecordWriter {
+		void write(DataOutputStream out) throws IOException;
+	}
+
+	private File folder;
+	private FileChannel channel;
+	private File segment;
+	private long nextSegment;
+	private List<File> finishedSegments;
+
+	private ConcurrentLinkedQueue<byte[]> pending;
+	private final Object lock = new Object();
+	private long appended, committed, rotations, rotated;
+	private volatile boolean running;
+	private boolean failed;
+	private Thread writer;
+
+	/**
+	 * Creates a new journal within the given folder. Nothing is written until {@link #start()} is called.
+	 *
+	 * @param folder - Folder of the journal segments
+	 */
+	public PlayerJournal(File folder) {
+		this.folder = folder;
+		pending = new ConcurrentLinkedQueue<byte[]>();
+		finishedSegments = new ArrayList<File>();
+		folder.mkdirs();
+	}
+
+	/**
+	 * Gets all the journal segments that currently exist, oldest first.
+	 *
+	 * @return Journal segments
+	 */
+	public List<File> getSegments() {
+		File[] files = folder.listFiles((dir, name) -> name.startsWith("journal-") && name.endsWith(".log"));
+
+		if(files == null)
+			return new ArrayList<File>();
+
+		Arrays.sort(files, (a, b) -> a.getName().compareTo(b.getName()));
+		return new ArrayList<File>(Arrays.asList(files));
+	}
+
+	/**
+	 * Replays the given journal segments. Each record is applied to the player data given by the function, loading
+	 * the player if needed. Records are applied in the order they were written; a damaged record (such as one that
+	 * was only partly written when the server stopped) ends the replay of it's segment. Applying a record a second
+	 * time has no further effect, so records of changes that have already been saved can be safely replayed.</br></br>
+	 *
+	 * This is to be done before the journal is started and before it is set on any player data, otherwise the
+	 * replayed changes would be recorded a second time.
+	 *
+	 * @param segments - Segments to replay
+	 * @param players - Gets the player data of a UUID
+	 * @return Number of records applied
+	 */
+	public int replay(List<File> segments, Function<UUID, PlayerConfig> players) {
+		int count = 0;
+
+		for(File file : segments) {
+			try(DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(file.toPath())))) {
+				while(true) {
+					int length = in.readInt();
+
+					// The record and it's checksum must fit within the rest of the segment
+					if(length <= 0 || length > MAX_RECORD_LENGTH || length > in.available() - 4)
+						break;
+
+					byte[] record = new byte[length];
+
+					in.readFully(record);
+
+					CRC32 crc = new CRC32();
+					crc.update(record);
+
+					if((int) crc.getValue() != in.readInt())
+						break;
+
+					DataInputStream data = new DataInputStream(new ByteArrayInputStream(record));
+					Mutation mutation = Mutation.values()[data.readUnsignedByte()];
+					PlayerConfig config = players.apply(new UUID(data.readLong(), data.readLong()));
+
+					if(config != null) {
+						apply(config, mutation, data);
+						count++;
+					}
+				}
+			} catch (EOFException e) {
+				// End of segment, or a partly written record
+			} catch (IOException | RuntimeException e) {
+				FilesManager.LogException(e);
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * Starts writing records into a new journal segment.
+	 *
+	 * @throws IOException If the segment could not be created
+	 */
+	public void start() throws IOException {
+		List<File> segments = getSegments();
+
+		nextSegment = segments.isEmpty() ? 0L : Long.parseLong(segments.get(segments.size() - 1).getName().substring(8, 24), 16) + 1L;
+		openSegment();
+
+		running = true;
+		writer = new Thread(this, "CFChat Journal");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Stops the writing of records. All records added before this call are written first.
+	 */
+	public void stop() {
+		if(writer == null)
+			return;
+
+		sync();
+		running = false;
+
+		synchronized(lock) {
+			lock.notifyAll();
+		}
+
+		try {
+			writer.join();
+			channel.close();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (IOException e) {
+			FilesManager.LogException(e);
+		}
+	}
+
+	/**
+	 * Adds a record of a change to a player into the journal. This does not wait for the record to be written.
+	 * If the journal is not running, then the record is ignored.
+	 *
+	 * @param id - UUID of player
+	 * @param mutation - Type of change
+	 * @param data - Writes the data of the change
+	 */
+	void append(UUID id, Mutation mutation, RecordWriter data) {
+		if(!running)
+			return;
+
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+			DataOutputStream out = new DataOutputStream(bytes);
+
+			out.writeByte(mutation.ordinal());
+			out.writeLong(id.getMostSignificantBits());
+			out.writeLong(id.getLeastSignificantBits());
+			data.write(out);
+			out.flush();
+
+			pending.add(bytes.toByteArray());
+		} catch (IOException e) {
+			FilesManager.LogException(e);
+			return;
+		}
+
+		synchronized(lock) {
+			appended++;
+			lock.notifyAll();
+		}
+	}
+
+	/**
+	 * Waits until every record added before this call has been written and synced to the disk. Should the writing
+	 * fail, then this returns without waiting; the records are kept and written again.
+	 */
+	public void sync() {
+		synchronized(lock) {
+			long target = appended;
+
+			while(committed < target && running && !failed) {
+				try {
+					lock.wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Ends the current journal segment and starts writing into a new one, waiting until the writing thread has
+	 * done so. The ended segment only contains changes that happened before this call; once all player data has
+	 * been saved after this call, the segment can be removed using {@link #compact()}. If the current segment is
+	 * empty, then it is kept.
+	 */
+	public void rotate() {
+		synchronized(lock) {
+			long target = ++rotations;
+
+			lock.notifyAll();
+
+			while(rotated < target && running) {
+				try {
+					lock.wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Deletes the journal segments ended by {@link #rotate()}. This is to be called only once the changes within
+	 * those segments have been saved into the player data.
+	 */
+	public void compact() {
+		List<File> finished;
+
+		synchronized(lock) {
+			finished = new ArrayList<File>(finishedSegments);
+			finishedSegments.clear();
+		}
+
+		for(File file : finished)
+			file.delete();
+	}
+
+	/**
+	 * Deletes the given journal segments, such as after they have been replayed and saved.
+	 *
+	 * @param segments - Segments to delete
+	 */
+	public void delete(List<File> segments) {
+		for(File file : segments)
+			file.delete();
+	}
+
+	@Override
+	public void run() {
+		List<byte[]> batch = new ArrayList<byte[]>();
+
+		while(true) {
+			long rotation;
+
+			synchronized(lock) {
+				while(committed >= appended && rotated >= rotations && running) {
+					try {
+						lock.wait();
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+
+				if(!running && committed >= appended)
+					return;
+
+				rotation = rotations;
+			}
+
+			// Records still queued go into the new segment, which is kept until the next rotation
+			if(rotation > rotated) {
+				endSegment();
+
+				synchronized(lock) {
+					rotated = rotation;
+					lock.notifyAll();
+				}
+			}
+
+			byte[] record;
+			int size = 0;
+
+			// Records of a batch that failed to be written are kept, and written again along with the new records
+			while((record = pending.poll()) != null)
+				batch.add(record);
+
+			for(byte[] r : batch)
+				size += r.length + 8;
+
+			ByteBuffer buffer = ByteBuffer.allocate(size);
+			CRC32 crc = new CRC32();
+
+			for(byte[] r : batch) {
+				crc.reset();
+				crc.update(r);
+				buffer.putInt(r.length).put(r).putInt((int) crc.getValue());
+			}
+
+			buffer.flip();
+
+			boolean written = false;
+
+			if(batch.isEmpty())
+				written = true;
+			else {
+				try {
+					while(buffer.hasRemaining())
+						channel.write(buffer);
+
+					channel.force(false);
+					written = true;
+				} catch (IOException | RuntimeException e) {
+					FilesManager.LogException(e);
+				}
+			}
+
+			synchronized(lock) {
+				if(written)
+					committed += batch.size();
+
+				failed = !written;
+				lock.notifyAll();
+			}
+
+			if(written) {
+				batch.clear();
+				continue;
+			}
+
+			if(!running)
+				return;
+
+			replaceSegment();
+
+			synchronized(lock) {
+				try {
+					lock.wait(1000L);
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+		}
+	}
+
+	// Ends the current segment and opens a new one, unless nothing has been written into it
+	private void endSegment() {
+		try {
+			if(channel != null && channel.size() == 0L)
+				return;
+		} catch (IOException e) {
+			FilesManager.LogException(e);
+		}
+
+		replaceSegment();
+	}
+
+	// Ends the current segment and opens a new one. A segment that could not be written to may end with a partly
+	// written record; the records before it are still read when replaying, the batch that failed is written again
+	// into the new segment. Only called by the writing thread.
+	private void replaceSegment() {
+		try {
+			if(channel != null)
+				channel.close();
+		} catch (IOException e) {
+			FilesManager.LogException(e);
+		}
+
+		synchronized(lock) {
+			if(!finishedSegments.contains(segment))
+				finishedSegments.add(segment);
+		}
+
+		try {
+			openSegment();
+		} catch (IOException e) {
+			FilesManager.LogException(e);
+		}
+	}
+
+	// Opens a new segment to write records into
+	private void openSegment() throws IOException {
+		segment = new File(folder, String.format("journal-%016x.log", nextSegment++));
+		channel = FileChannel.open(segment.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+	}
+
+	// Applies the change to the player data. Each change is applied so that applying it a second time does nothing.
+	private static void apply(PlayerConfig config, Mutation mutation, DataInputStream in) throws IOException {
+		switch(mutation) {
+			case WARNING_ADD: {
+				long time = in.readLong();
+				UUID warner = BinaryPlayerCodec.readNullableUUID(in);
+				String reason = BinaryPlayerCodec.readString(in);
+
+				if(findWarning(config, time, reason) == null)
+					config.addWarning(Warning.loadFromData(time, warner, reason));
+				break;
+			}
+
+			case WARNING_REMOVE: {
+				Warning w = findWarning(config, in.readLong(), BinaryPlayerCodec.readString(in));
+
+				if(w != null)
+					config.removeWarning(w);
+				break;
+			}
+
+			case IGNORE_ADD:
+				config.addIgnore(BinaryPlayerCodec.readUUID(in));
+				break;
+
+			case IGNORE_REMOVE:
+				config.removeIgnore(BinaryPlayerCodec.readUUID(in));
+				break;
+
+			case GROUP_ADD:
+				config.addGroup(BinaryPlayerCodec.readUUID(in));
+				break;
+
+			case GROUP_REMOVE:
+				config.removeGroup(BinaryPlayerCodec.readUUID(in));
+				break;
+
+			case MUTE_SET: {
+				long time = in.readLong();
+				long timeStamp = in.readLong();
+				UUID muter = BinaryPlayerCodec.readNullableUUID(in);
+
+				config.getMuteData().restore(time, timeStamp, muter == null ? null : Bukkit.getServer().getOfflinePlayer(muter));
+				break;
+			}
+
+			case MUTE_CLEAR:
+				config.getMuteData().unmute();
+				break;
+
+			case LOG_APPEND: {
+				LogType type = LogType.values()[in.readUnsignedByte()];
+				long time = in.readLong();
+
+				config.getPlayerLog().appendIfAbsent(type, time, BinaryPlayerCodec.readString(in));
+				break;
+			}
+
+			case LOG_CLEAR:
+				config.getPlayerLog().clear(LogType.values()[in.readUnsignedByte()]);
+				break;
+
+			case MAIL_ADD: {
+				int id = in.readInt();
+
+				config.addMail(PlayerMail.loadFromData(id, BinaryPlayerCodec.readNullableUUID(in), in.readLong(), in.readBoolean(), BinaryPlayerCodec.readString(in)));
+				break;
+			}
+
+			case MAIL_READ: {
+				PlayerMail m = config.getMail(in.readInt());
+				boolean unread = in.readBoolean();
+
+				if(m != null)
+					m.setUnread(unread);
+				break;
+			}
+
+			case MAIL_REMOVE:
+				config.removeMail(in.readInt());
+				break;
+
+			case SELECTIVE_SET:
+				config.setSelectiveView(in.readBoolean());
+				break;
+
+			case IGNORE_SERVER_SET:
+				config.setIgnoringServer(in.readBoolean());
+				break;
+		}
+	}
+
+	// Finds the warning with the given time stamp and reason
+	private static Warning findWarning(PlayerConfig config, long time, String reason) {
+		for(Warning w : config.getWarnings()) {
+			if(w.getTimeStamp() == time && w.getReason().equals(reason))
+				return w;
+		}
+
+		return null;
+	}
+}
@@ -1,19 +1,32 @@
 package coldfyre.cfchat.players;
 
+import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
 import org.bukkit.configuration.file.YamlConfiguration;
 
+import com.coldfyre.api.manager.FilesManager;
+
 /**
  * This object contains all the information about the logged details of the player. The format of the logger information
  * is based on the type of log as well as where the player detail was used. To clarify, if the <strong>messages</strong>
  * logger is enabled, then the messages will contain a format for both <strong>Regular, Group and Staff</strong> chat
- * messages. To view the format of the logger, view the 'Player Config' file for more information.
+ * messages. To view the format of the logger, view the 'Player Config' file for more information.</br></br>
+ *
+ * The logs are not kept within the player data. Only the logs added since the last save are held within memory; on each
+ * save they are moved into the {@link PlayerLogArchive}, which is then read from when the logs are looked at. Logs found
+ * within older player files are moved into the archive the next time the player is saved.</br></br>
+ *
+ * While holding the lock of this log, the lock of the owning {@link PlayerConfig} is never taken; changes are only
+ * recorded within the journal. Saving the player data holds the lock of the PlayerConfig, so taking both would allow
+ * a save and a new log to wait on each other.
  * 
  * @author Sommod
  * @version 1.0
@@ -32,17 +45,32 @@ public class PlayerLog {
 		MESSAGES, MAIL, COMMANDS;
 	}
 	
-	private Map<LogType, List<String>> logger;
+	// Logs that have not yet been moved into the archive
+	private Map<LogType, Column> pending;
+	private PlayerLogArchive archive;
+	private volatile LogSearchIndex searchIndex;
+
+	// Held while logs are being moved into or read from the archive
+	private final Object archiveLock = new Object();
+
+	// Player data this log belongs to
+	PlayerConfig owner;
 	
 	/**
-	 * Creates a new object that stores Lists of Strings with formatted data. Note that this does
-	 * not pertain to any player, rather this simply contains data. It's the programmers responsibility
-	 * to attach this to a given player (or entity) as well as manage any changing data with said entity.
+	 * Creates a new object that stores the logged data. Note that this does not pertain to any player, rather
+	 * this simply contains data. It's the programmers responsibility to attach this to a given player (or entity)
+	 * as well as manage any changing data with said entity.
 	 */
-	public PlayerLog() { logger = new HashMap<PlayerLog.LogType, List<String>>(); }
+	public PlayerLog() {
+		pending = new EnumMap<PlayerLog.LogType, Column>(LogType.class);
+
+		for(LogType t : LogType.values())
+			pending.put(t, new Column());
+	}
 	
 	/**
-	 * Loads a PlayerLog Object from a players Data Config File.
+	 * Loads a PlayerLog Object from a players Data Config File. Any logs found are from before the logs were
+	 * kept within the archive, and are moved into it with the next save.
 	 * 
 	 * @param playerConfig - Players YamlConfiguration object
 	 * @return PlayerLog
@@ -50,37 +78,65 @@ public class PlayerLog {
 	public static PlayerLog loadFromConfig(YamlConfiguration playerConfig) {
 		PlayerLog log = new PlayerLog();
 		
-		for(String logData : playerConfig.getConfigurationSection("chat.logger").getKeys(false))
-			log.logger.put(LogType.valueOf(logData.toUpperCase()), playerConfig.getStringList(logData));
+		if(!playerConfig.isConfigurationSection("chat.logger"))
+			return log;
+
+		for(String logData : playerConfig.getConfigurationSection("chat.logger").getKeys(false)) {
+			Column column = log.pending.get(LogType.valueOf(logData.toUpperCase()));
+
+			for(String s : playerConfig.getStringList("chat.logger." + logData)) {
+				int time = s.indexOf('§');
+
+				column.insert(Long.parseLong(s.substring(0, time)), s.substring(s.indexOf('§', time + 1) + 1));
+			}
+		}
 		
 		return log;
 	}
 	
 	/**
-	 * This will get the raw and formatted for this object string. Note that while this does contain the 
-	 * data that was stored, it may not be in user-friendly viewing (meaning some data may have changed).
+	 * Sets the archive the logs are moved into and read from. Until this is set, all logs are kept within memory.
 	 * 
-	 * @param type - Logger type to get
-	 * @param value - value from list
-	 * @return String - Raw String value
+	 * @param archive - Archive of the player logs
 	 */
-	public String getRawString(LogType type, int value) { return logger.get(type).get(value); }
+	public void setArchive(PlayerLogArchive archive) {
+		synchronized(archiveLock) {
+			this.archive = archive;
+		}
+	}
 	
 	/**
-	 * Gets the entire list of data values from a given logger, but with all the object formatting in place.
+	 * Sets the search index that logged messages are added to. If NULL, then messages are not indexed.
+	 *
+	 * @param searchIndex - Search index of the logged messages
+	 */
+	public void setSearchIndex(LogSearchIndex searchIndex) { this.searchIndex = searchIndex; }
+
+	/**
+	 * Gets the entire list of data values from a given logger, but with all the object formatting in place. The
+	 * list is built during this call by reading every log of the type; changes to it do not change the logger.
 	 * 
 	 * @param type - Logger type to get
 	 * @return List - Logger list
 	 */
-	public List<String> getRawList(LogType type) { return logger.get(type); }
+	public List<String> getRawList(LogType type) {
+		Column column = read(type, Long.MIN_VALUE, Long.MAX_VALUE);
+		SimpleDateFormat format = new SimpleDateFormat("dd MMM YYYY kk:mm:ss");
+		List<String> ret = new ArrayList<String>(column.size);
+
+		for(int i = 0; i < column.size; i++)
+			ret.add(column.times[i] + "§" + formatDate(format, column.times[i]) + "§" + column.values[i]);
+
+		return ret;
+	}
 	
 	/**
-	 * Gets the size of the logger. This is a helpful method used in tangent with {@link #getRawString(LogType, int)}.
+	 * Gets the number of logs within the logger.
 	 * 
 	 * @param type - Logger type to get
 	 * @return int - size of logger
 	 */
-	public int getLoggerSize(LogType type) { return logger.get(type).size(); }
+	public int getLoggerSize(LogType type) { return count(type, Long.MIN_VALUE, Long.MAX_VALUE); }
 	
 	/**
 	 * Gets a list of logger data based on the log type and the dates to get from. If the given log info is within
@@ -94,18 +150,11 @@ public class PlayerLog {
 	 * @return List of Logger Data
 	 */
 	public List<String> getListByDates(LogType type, final Date from, final Date to) {
-		boolean first = from.before(to);
-		List<String> values = new ArrayList<String>();
-		Date use = new Date();
-
-		for(String s : logger.get(type)) {
-			use.setTime(Long.parseLong(s.split("§")[1]));
-			
-			if(use.after(first ? from : to) && use.before(first ? to : from))
-				values.add("[" + s.split("§")[1] + "] " + s.split("§")[2].replaceAll("_CFUNIQUE_", "§"));
-		}
-		
-		return values;
+		long start = Math.min(from.getTime(), to.getTime()) + 1L;
+		long end = Math.max(from.getTime(), to.getTime());
+		Column column = read(type, start, end);
+
+		return format(column, 0, column.size);
 	}
 	
 	/**
@@ -118,31 +167,179 @@ public class PlayerLog {
 		return getListByDates(type, new Date(0L), new Date(System.currentTimeMillis()));
 	}
 	
+	/**
+	 * Gets the number of logs between the given times. The start time is included, the end time is not.
+	 *
+	 * @param type - Logger type
+	 * @param from - Start time
+	 * @param to - End time
+	 * @return Number of logs
+	 */
+	public int count(LogType type, long from, long to) {
+		synchronized(archiveLock) {
+			int count = archive == null || owner == null ? 0 : archive.count(owner.getPlayerID(), type, from, to);
+
+			synchronized(this) {
+				Column column = pending.get(type);
+
+				return count + Math.max(0, column.lowerBound(to) - column.lowerBound(from));
+			}
+		}
+	}
+
+	/**
+	 * Gets a single page of logs between the given times, newest first. Page 1 contains the newest logs. The
+	 * start time is included, the end time is not. Only the parts of the archive that are on the page are read.</br>
+	 * The format is the same as {@link #getListByDates(LogType, Date, Date)}.
+	 *
+	 * @param type - Logger type
+	 * @param from - Start time
+	 * @param to - End time
+	 * @param page - Page number, starting at 1
+	 * @param pageSize - Number of logs per page
+	 * @return List of Logger Data, empty if the page does not exist
+	 */
+	public List<String> getPage(LogType type, long from, long to, int page, int pageSize) {
+		Column ret = new Column();
+		int skip = (Math.max(1, page) - 1) * pageSize;
+
+		synchronized(archiveLock) {
+			synchronized(this) {
+				Column column = pending.get(type);
+				int first = column.lowerBound(from);
+				int last = column.lowerBound(to);
+
+				for(int i = last - 1 - skip; i >= first && ret.size < pageSize; i--)
+					ret.add(column.times[i], column.values[i]);
+
+				skip = Math.max(0, skip - (last - first));
+			}
+
+			if(ret.size < pageSize && archive != null && owner != null)
+				archive.readNewest(owner.getPlayerID(), type, from, to, skip, pageSize - ret.size, ret);
+		}
+
+		return format(ret, 0, ret.size);
+	}
+
+	/**
+	 * Reads a page of the archived logs of a player, newest first, without their data being loaded. Logs
+	 * that are still held within memory by a loaded player are not within the archive yet, for those
+	 * {@link #getPage(LogType, long, long, int, int)} is to be used instead.
+	 *
+	 * @param archive - Archive of the player logs
+	 * @param id - UUID of player
+	 * @param type - Logger type
+	 * @param from - Start time
+	 * @param to - End time
+	 * @param limit - Most logs to read
+	 * @return Formatted logs
+	 */
+	public static List<String> readArchived(PlayerLogArchive archive, UUID id, LogType type, long from, long to, int limit) {
+		Column ret = new Column();
+
+		archive.readNewest(id, type, from, to, 0, limit, ret);
+		return format(ret, 0, ret.size);
+	}
+
 	/**
 	 * Adds a new log to the given Logger type. Formatting is reserved within this method rather than
-	 * in-taking the formatted string. The Date and time is calculated during this method call and
-	 * placed within the string details. Addtionally, if any symbols that could result in an error
-	 * are found, they are replaced with unique values for later reformatting during call of said log data.
+	 * in-taking the formatted string. The time is taken during this method call and stored with the log.
+	 * Addtionally, if any symbols that could result in an error are found, they are replaced with unique
+	 * values for later reformatting during call of said log data.
 	 * 
 	 * @param type - Logger type
 	 * @param value - Log to add
 	 */
-	public void addLog(LogType type, String value) {
-		value = value.contains("§") ? value.replaceAll("§", "_CFUNIQUE_") : value;
+	public void addLog(LogType type, String value) { addLog(type, System.currentTimeMillis(), value); }
 		
-		List<String> log = logger.get(type);
-		long time = System.currentTimeMillis();
+	/**
+	 * Adds a new log to the given Logger type that occurred at the given time, such as a log that was
+	 * queued by the {@link coldfyre.cfchat.manager.ChatLogger}. The same as {@link #addLog(LogType, String)},
+	 * the value is formatted within this method.
+	 *
+	 * @param type - Logger type
+	 * @param time - Time of the log
+	 * @param value - Log to add
+	 */
+	public synchronized void addLog(LogType type, long time, String value) {
+		String entry = value.contains("§") ? value.replace("§", "_CFUNIQUE_") : value;
 		
-		log.add(time + "§" + new SimpleDateFormat("dd MMM YYYY kk:mm:ss").format(new Date(time)) + "§" + value);
-		logger.put(type, log);
+		pending.get(type).insert(time, entry);
+
+		if(type == LogType.MESSAGES && searchIndex != null && owner != null)
+			searchIndex.add(owner.getPlayerID(), time, value);
+
+		if(owner != null)
+			owner.record(PlayerJournal.Mutation.LOG_APPEND, out -> {
+				out.writeByte(type.ordinal());
+				out.writeLong(time);
+				BinaryPlayerCodec.writeString(out, entry);
+			});
 	}
 	
 	/**
-	 * Clears the Logger type of all data.
+	 * Adds an already existing log to the given Logger type, such as from a binary player data file. Unlike
+	 * {@link #addLog(LogType, String)}, the value is expected to already be formatted.
+	 *
+	 * @param type - Logger type
+	 * @param time - Time of the log
+	 * @param value - Formatted log value
+	 */
+	synchronized void addEntry(LogType type, long time, String value) { pending.get(type).insert(time, value); }
+
+	/**
+	 * Adds an already existing log to the given Logger type, unless the exact same log is already
+	 * within it or the archive. This is used when replaying the {@link PlayerJournal}; added messages
+	 * are also added to the search index, as they were lost from it along with the rest of the log.
+	 *
+	 * @param type - Logger type
+	 * @param time - Time of the log
+	 * @param value - Formatted log value
+	 */
+	void appendIfAbsent(LogType type, long time, String value) {
+		synchronized(archiveLock) {
+			if(archive != null && owner != null && archive.contains(owner.getPlayerID(), type, time, value))
+				return;
+
+			synchronized(this) {
+				Column column = pending.get(type);
+
+				for(int i = column.lowerBound(time); i < column.size && column.times[i] == time; i++) {
+					if(column.values[i].equals(value))
+						return;
+				}
+
+				column.insert(time, value);
+			}
+
+			if(type == LogType.MESSAGES && searchIndex != null && owner != null)
+				searchIndex.add(owner.getPlayerID(), time, value.replace("_CFUNIQUE_", "§"));
+		}
+	}
+
+	/**
+	 * Clears the Logger type of all data, including the logs within the archive. Cleared messages are also
+	 * removed from the search index.
 	 * 
 	 * @param type - Logger type
 	 */
-	public void clear(LogType type) { logger.put(type, new ArrayList<String>()); }
+	public void clear(LogType type) {
+		synchronized(archiveLock) {
+			synchronized(this) {
+				pending.put(type, new Column());
+
+				if(owner != null)
+					owner.record(PlayerJournal.Mutation.LOG_CLEAR, out -> out.writeByte(type.ordinal()));
+			}
+
+			if(archive != null && owner != null)
+				archive.clear(owner.getPlayerID(), type);
+
+			if(type == LogType.MESSAGES && searchIndex != null && owner != null)
+				searchIndex.remove(owner.getPlayerID());
+		}
+	}
 	
 	/**
 	 * Clears ALL logger data from all logger types. It is suggested to only use this when
@@ -152,4 +349,148 @@ public class PlayerLog {
 		for(LogType t : LogType.values())
 			clear(t);
 	}
+
+	/**
+	 * Checks if there are logs that have not yet been moved into the archive.
+	 *
+	 * @return True - if there are logs to move
+	 */
+	public synchronized boolean hasPending() {
+		for(Column column : pending.values()) {
+			if(column.size > 0)
+				return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Moves the logs held within memory into the archive. Logs that could not be written are kept within
+	 * memory for the next attempt. If no archive is set, then nothing happens.
+	 *
+	 * @return True - if all logs were moved
+	 */
+	public boolean flush() {
+		synchronized(archiveLock) {
+			if(archive == null || owner == null)
+				return true;
+
+			boolean moved = true;
+
+			for(LogType type : LogType.values()) {
+				Column column;
+
+				synchronized(this) {
+					column = pending.get(type);
+
+					if(column.size == 0)
+						continue;
+
+					pending.put(type, new Column());
+				}
+
+				try {
+					archive.append(owner.getPlayerID(), type, column);
+				} catch (IOException e) {
+					FilesManager.LogException(e);
+					moved = false;
+
+					synchronized(this) {
+						Column newer = pending.get(type);
+
+						for(int i = 0; i < newer.size; i++)
+							column.insert(newer.times[i], newer.values[i]);
+
+						pending.put(type, column);
+					}
+				}
+			}
+
+			return moved;
+		}
+	}
+
+	// Reads the logs within the archive and memory between the given times
+	private Column read(LogType type, long from, long to) {
+		Column ret = new Column();
+
+		synchronized(archiveLock) {
+			if(archive != null && owner != null)
+				archive.read(owner.getPlayerID(), type, from, to, ret);
+
+			synchronized(this) {
+				Column column = pending.get(type);
+
+				for(int i = column.lowerBound(from), end = column.lowerBound(to); i < end; i++)
+					ret.insert(column.times[i], column.values[i]);
+			}
+		}
+
+		return ret;
+	}
+
+	// Formats the logs between the given positions for displaying
+	private static List<String> format(Column column, int from, int to) {
+		SimpleDateFormat format = new SimpleDateFormat("dd MMM YYYY kk:mm:ss");
+		List<String> values = new ArrayList<String>(Math.max(0, to - from));
+
+		for(int i = from; i < to; i++)
+			values.add("[" + formatDate(format, column.times[i]) + "] " + column.values[i].replace("_CFUNIQUE_", "§"));
+
+		return values;
+	}
+
+	private static String formatDate(SimpleDateFormat format, long time) { return format.format(new Date(time)); }
+
+	/**
+	 * A list of logs, stored as a column of times and a column of values.
+	 *
+	 * @author Sommod
+	 * @version 1.0
+	 *
+	 */
+	static class Column {
+
+		long[] times = new long[8];
+		String[] values = new String[8];
+		int size;
+
+		// Adds the log to the end, regardless of it's time
+		void add(long time, String value) {
+			if(size == times.length) {
+				times = Arrays.copyOf(times, size * 2);
+				values = Arrays.copyOf(values, size * 2);
+			}
+
+			times[size] = time;
+			values[size++] = value;
+		}
+
+		// Adds the log in the position of it's time, after any logs with the same time
+		void insert(long time, String value) {
+			int pos = size == 0 || times[size - 1] <= time ? size : lowerBound(time + 1);
+
+			add(time, value);
+			System.arraycopy(times, pos, times, pos + 1, size - 1 - pos);
+			System.arraycopy(values, pos, values, pos + 1, size - 1 - pos);
+			times[pos] = time;
+			values[pos] = value;
+		}
+
+		// Gets the position of the first log with a time equal to or after the given time
+		int lowerBound(long time) {
+			int low = 0, high = size;
+
+			while(low < high) {
+				int mid = (low + high) >>> 1;
+
+				if(times[mid] < time)
+					low = mid + 1;
+				else
+					high = mid;
+			}
+
+			return low;
+		}
+	}
 }
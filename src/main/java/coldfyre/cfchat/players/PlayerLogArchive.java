@@ -0,0 +1,556 @@
+package coldfyre.cfchat.players;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.coldfyre.api.manager.FilesManager;
+
+import coldfyre.cfchat.players.PlayerLog.Column;
+import coldfyre.cfchat.players.PlayerLog.LogType;
+
+/**
+ * Storage of the player logs, kept apart from the rest of the player data so that the size of a player's logs has no effect
+ * on how long it takes to load or save their data. Each player has their own folder, within which each logger type is split
+ * into segment files. Logs are added to the end of the open segment; once the segment is too large or too old, it is closed
+ * and compressed, and a new segment is started. Closed segments past the retention limits are deleted.</br></br>
+ *
+ * Logs are only read when they are looked at, one segment at a time. The name of a segment contains the time of it's first
+ * log (and for closed segments, the number of logs within), so segments outside of the requested time are never opened.</br></br>
+ *
+ * Format of a log: <strong>TIME | LENGTH | VALUE</strong></br>
+ * Name of an open segment: <strong>type-FIRST_TIME.log</strong></br>
+ * Name of a closed segment: <strong>type-FIRST_TIME-COUNT.log.gz</strong>
+ *
+ * @author Sommod
+ * @version 1.0
+ *
+ */
+public class PlayerLogArchive {
+
+	// Longest log that is read back; a longer length can only come from a damaged segment
+	private static final int MAX_LOG_LENGTH = 1 << 16;
+
+	private File folder;
+	private long segmentSize, segmentAge, retention;
+	private int maxSegments;
+
+	// Open segments that have been checked for a partly written log since the archive was created
+	private Set<File> verified;
+
+	// Segments written since the last sync
+	private Set<File> unsynced;
+
+	// Logs of the closed segments read while replaying the journal, NULL when not replaying
+	private volatile Map<File, Column> replayed;
+
+	/**
+	 * Creates a new archive of player logs within the given folder.
+	 *
+	 * @param folder - Folder of the player logs
+	 * @param segmentSize - Size (in bytes) at which a segment is closed
+	 * @param segmentAge - Age (in milliseconds) at which a segment is closed
+	 * @param retention - Age (in milliseconds) after which closed segments are deleted, 0 to keep forever
+	 * @param maxSegments - Most closed segments kept for each player and logger type, 0 for no limit
+	 */
+	public PlayerLogArchive(File folder, long segmentSize, long segmentAge, long retention, int maxSegments) {
+		this.folder = folder;
+		this.segmentSize = Math.max(1024L, segmentSize);
+		this.segmentAge = Math.max(60000L, segmentAge);
+		this.retention = Math.max(0L, retention);
+		this.maxSegments = Math.max(0, maxSegments);
+		verified = ConcurrentHashMap.newKeySet();
+		unsynced = ConcurrentHashMap.newKeySet();
+		folder.mkdirs();
+	}
+
+	/**
+	 * Adds the logs to the end of the open segment of the player. If the open segment is too large or too
+	 * old, then it is closed first. Only one thread may add to the same player at a time.
+	 *
+	 * @param id - UUID of player
+	 * @param type - Logger type
+	 * @param logs - Logs to add, in order of time
+	 * @throws IOException If the logs could not be written
+	 */
+	void append(UUID id, LogType type, Column logs) throws IOException {
+		if(logs.size == 0)
+			return;
+
+		List<Segment> segments = getSegments(id, type);
+		Segment open = segments.isEmpty() || segments.get(segments.size() - 1).closed ? null : segments.get(segments.size() - 1);
+
+		if(open != null && (open.file.length() >= segmentSize || System.currentTimeMillis() - open.start >= segmentAge)) {
+			close(open);
+			open = null;
+			deleteExpired(id, type);
+		}
+
+		File file = open != null ? open.file : new File(getFolder(id), type.name().toLowerCase() + "-" + String.format("%016x", logs.times[0]) + ".log");
+
+		if(open != null)
+			verify(file);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(logs.size * 64);
+		DataOutputStream out = new DataOutputStream(bytes);
+
+		for(int i = 0; i < logs.size; i++)
+			writeLog(out, logs.times[i], logs.values[i]);
+
+		out.flush();
+		file.getParentFile().mkdirs();
+
+		try(FileOutputStream stream = new FileOutputStream(file, true)) {
+			bytes.writeTo(stream);
+		}
+
+		verified.add(file);
+		unsynced.add(file);
+	}
+
+	/**
+	 * Forces the segments written since the last sync onto the disk, along with the folders they are in.
+	 *
+	 * @throws IOException If a segment could not be synced
+	 */
+	public void sync() throws IOException {
+		Set<File> folders = new HashSet<File>();
+
+		for(File file : unsynced) {
+			unsynced.remove(file);
+
+			try {
+				if(file.exists())
+					PlayerStore.syncFile(file);
+			} catch (IOException e) {
+				unsynced.add(file);
+				throw e;
+			}
+
+			folders.add(file.getParentFile());
+		}
+
+		for(File folder : folders)
+			PlayerStore.syncFolder(folder);
+	}
+
+	/**
+	 * Reads the logs of the player between the given times, in order of time. The start time is included,
+	 * the end time is not.
+	 *
+	 * @param id - UUID of player
+	 * @param type - Logger type
+	 * @param from - Start time
+	 * @param to - End time
+	 * @param logs - Column to add the logs to
+	 */
+	void read(UUID id, LogType type, long from, long to, Column logs) {
+		List<Segment> segments = getSegments(id, type);
+
+		for(int i = 0; i < segments.size(); i++) {
+			if(overlaps(segments, i, from, to))
+				readSegment(segments.get(i), from, to, logs);
+		}
+	}
+
+	/**
+	 * Reads a single page of the logs of the player between the given times, newest first. Closed segments
+	 * that are skipped over entirely are not opened.
+	 *
+	 * @param id - UUID of player
+	 * @param type - Logger type
+	 * @param from - Start time
+	 * @param to - End time
+	 * @param skip - Number of newest logs to skip
+	 * @param limit - Most logs to read
+	 * @param logs - Column to add the logs to, newest first
+	 */
+	void readNewest(UUID id, LogType type, long from, long to, int skip, int limit, Column logs) {
+		List<Segment> segments = getSegments(id, type);
+
+		for(int i = segments.size() - 1; i >= 0 && limit > 0; i--) {
+			if(!overlaps(segments, i, from, to))
+				continue;
+
+			Segment segment = segments.get(i);
+
+			if(segment.closed && contains(segments, i, from, to) && segment.count <= skip) {
+				skip -= segment.count;
+				continue;
+			}
+
+			Column column = new Column();
+			readSegment(segment, from, to, column);
+
+			if(column.size <= skip) {
+				skip -= column.size;
+				continue;
+			}
+
+			for(int n = column.size - 1 - skip; n >= 0 && limit > 0; n--, limit--)
+				logs.add(column.times[n], column.values[n]);
+
+			skip = 0;
+		}
+	}
+
+	/**
+	 * Counts the logs of the player between the given times. Closed segments entirely within the given
+	 * times are counted by their name, without being opened.
+	 *
+	 * @param id - UUID of player
+	 * @param type - Logger type
+	 * @param from - Start time
+	 * @param to - End time
+	 * @return Number of logs
+	 */
+	int count(UUID id, LogType type, long from, long to) {
+		List<Segment> segments = getSegments(id, type);
+		int count = 0;
+
+		for(int i = 0; i < segments.size(); i++) {
+			if(!overlaps(segments, i, from, to))
+				continue;
+
+			if(segments.get(i).closed && contains(segments, i, from, to))
+				count += segments.get(i).count;
+			else {
+				Column column = new Column();
+				readSegment(segments.get(i), from, to, column);
+				count += column.size;
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * Checks if the exact log has already been stored.
+	 *
+	 * @param id - UUID of player
+	 * @param type - Logger type
+	 * @param time - Time of the log
+	 * @param value - Value of the log
+	 * @return True - if the log is stored
+	 */
+	boolean contains(UUID id, LogType type, long time, String value) {
+		Column column = new Column();
+
+		read(id, type, time, time + 1, column);
+
+		for(int i = 0; i < column.size; i++) {
+			if(column.values[i].equals(value))
+				return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Starts keeping the logs of each closed segment that is read, until {@link #endReplay()} is called. Replaying
+	 * the journal checks every log against the archive, this way each segment is only decompressed once.
+	 */
+	public void startReplay() { replayed = new ConcurrentHashMap<File, Column>(); }
+
+	/**
+	 * Stops keeping the logs of read segments, and releases those kept.
+	 */
+	public void endReplay() { replayed = null; }
+
+	/**
+	 * Deletes the logs past the retention limits of every player within the archive, including players that
+	 * have not been online for a long time. Segments are otherwise only deleted when the same player closes
+	 * another segment.
+	 */
+	public void deleteExpired() {
+		File[] players = folder.listFiles(File::isDirectory);
+
+		if(players == null)
+			return;
+
+		for(File player : players) {
+			UUID id;
+
+			try {
+				id = UUID.fromString(player.getName());
+			} catch (IllegalArgumentException e) {
+				continue;
+			}
+
+			for(LogType type : LogType.values())
+				deleteExpired(id, type);
+		}
+	}
+
+	/**
+	 * Deletes all the stored logs of the player for the given type.
+	 *
+	 * @param id - UUID of player
+	 * @param type - Logger type
+	 */
+	void clear(UUID id, LogType type) {
+		for(Segment segment : getSegments(id, type)) {
+			verified.remove(segment.file);
+			segment.file.delete();
+		}
+	}
+
+	// Gets the folder of the player logs
+	private File getFolder(UUID id) { return new File(folder, id.toString()); }
+
+	// Gets the segments of the player logs, oldest first. An open segment that was compressed but not yet removed
+	// when the server stopped is skipped; it is deleted by deleteExpired.
+	private List<Segment> getSegments(UUID id, LogType type) {
+		List<Segment> ret = listSegments(id, type);
+
+		for(int i = ret.size() - 1; i > 0; i--) {
+			if(isLeftover(ret, i))
+				ret.remove(i);
+		}
+
+		return ret;
+	}
+
+	// Gets every segment file of the player logs, oldest first
+	private List<Segment> listSegments(UUID id, LogType type) {
+		String prefix = type.name().toLowerCase() + "-";
+		File[] files = getFolder(id).listFiles((dir, name) -> name.startsWith(prefix) && (name.endsWith(".log") || name.endsWith(".log.gz")));
+		List<Segment> ret = new ArrayList<Segment>();
+
+		if(files == null)
+			return ret;
+
+		for(File file : files) {
+			String[] parts = file.getName().substring(prefix.length(), file.getName().indexOf('.')).split("-");
+			Segment segment = new Segment(file, Long.parseUnsignedLong(parts[0], 16), parts.length > 1 ? Integer.parseInt(parts[1]) : -1);
+
+			ret.add(segment);
+		}
+
+		ret.sort((a, b) -> a.start != b.start ? Long.compare(a.start, b.start) : Boolean.compare(b.closed, a.closed));
+		return ret;
+	}
+
+	// Checks if the segment is an open segment that already has a closed copy; closed segments are sorted first
+	private static boolean isLeftover(List<Segment> segments, int index) {
+		return index > 0 && !segments.get(index).closed && segments.get(index).start == segments.get(index - 1).start;
+	}
+
+	// Checks if the segment may contain logs within the given times. No log of a segment is after
+	// the first log of the next segment.
+	private static boolean overlaps(List<Segment> segments, int index, long from, long to) {
+		return segments.get(index).start < to && (index + 1 >= segments.size() || segments.get(index + 1).start >= from);
+	}
+
+	// Checks if all logs of the segment are within the given times
+	private static boolean contains(List<Segment> segments, int index, long from, long to) {
+		return segments.get(index).start >= from && index + 1 < segments.size() && segments.get(index + 1).start < to;
+	}
+
+	// Reads the logs of the segment within the given times
+	private void readSegment(Segment segment, long from, long to, Column logs) {
+		Map<File, Column> replayed = this.replayed;
+
+		if(replayed != null && segment.closed) {
+			// Kept in order of time, so only the logs within the times are looked at
+			Column all = replayed.computeIfAbsent(segment.file, file -> {
+				Column column = new Column(), sorted = new Column();
+
+				readFile(segment, Long.MIN_VALUE, Long.MAX_VALUE, column);
+
+				for(int i = 0; i < column.size; i++)
+					sorted.insert(column.times[i], column.values[i]);
+
+				return sorted;
+			});
+
+			for(int i = all.lowerBound(from); i < all.size && all.times[i] < to; i++)
+				logs.add(all.times[i], all.values[i]);
+
+			return;
+		}
+
+		readFile(segment, from, to, logs);
+	}
+
+	// Reads the logs of the segment file within the given times
+	private static void readFile(Segment segment, long from, long to, Column logs) {
+		try(DataInputStream in = open(segment)) {
+			while(true) {
+				long time = in.readLong();
+				String value = readValue(in);
+
+				if(time >= from && time < to)
+					logs.add(time, value);
+			}
+		} catch (EOFException e) {
+			// End of segment, or a partly written log
+		} catch (IOException e) {
+			FilesManager.LogException(e);
+		}
+	}
+
+	// Closes the open segment by compressing it into a new file
+	private void close(Segment segment) throws IOException {
+		verify(segment.file);
+
+		Column logs = new Column();
+		readSegment(segment, Long.MIN_VALUE, Long.MAX_VALUE, logs);
+
+		File closed = new File(segment.file.getParentFile(), segment.file.getName().replace(".log", "-" + logs.size + ".log.gz"));
+		File temp = new File(segment.file.getParentFile(), closed.getName() + ".tmp");
+
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(temp))))) {
+			for(int i = 0; i < logs.size; i++)
+				writeLog(out, logs.times[i], logs.values[i]);
+		}
+
+		PlayerStore.syncFile(temp);
+		Files.move(temp.toPath(), closed.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		unsynced.add(closed);
+		verified.remove(segment.file);
+		segment.file.delete();
+	}
+
+	// Deletes the segments that are past the retention limits, along with open segments left behind after being
+	// closed. The last log of a segment is before the first log of the next one; the last segment is as old as the
+	// last time it was written to.
+	private void deleteExpired(UUID id, LogType type) {
+		List<Segment> segments = listSegments(id, type);
+		long expire = System.currentTimeMillis() - retention;
+		int closed = 0;
+
+		for(int i = segments.size() - 1; i > 0; i--) {
+			if(isLeftover(segments, i)) {
+				verified.remove(segments.get(i).file);
+				segments.remove(i).file.delete();
+			}
+		}
+
+		for(Segment segment : segments) {
+			if(segment.closed)
+				closed++;
+		}
+
+		for(int i = 0; i < segments.size(); i++) {
+			Segment segment = segments.get(i);
+			long end = i + 1 < segments.size() ? segments.get(i + 1).start : segment.file.lastModified();
+			boolean expired = retention > 0L && end < expire;
+
+			if(!segment.closed) {
+				if(expired) {
+					verified.remove(segment.file);
+					segment.file.delete();
+				}
+
+				continue;
+			}
+
+			if(expired || (maxSegments > 0 && closed > maxSegments)) {
+				segment.file.delete();
+				closed--;
+			}
+		}
+	}
+
+	// Removes a partly written log from the end of the open segment, such as after a crash
+	private void verify(File file) throws IOException {
+		if(verified.contains(file))
+			return;
+
+		long valid = 0L;
+
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			while(true) {
+				in.readLong();
+
+				int length = in.readInt();
+
+				if(length < 0 || length > MAX_LOG_LENGTH || in.skipBytes(length) < length)
+					break;
+
+				valid += 12L + length;
+			}
+		} catch (EOFException e) {
+			// End of the valid logs
+		}
+
+		if(valid < file.length()) {
+			try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+				channel.truncate(valid);
+			}
+		}
+
+		verified.add(file);
+	}
+
+	private static DataInputStream open(Segment segment) throws IOException {
+		InputStream in = new FileInputStream(segment.file);
+
+		return new DataInputStream(new BufferedInputStream(segment.closed ? new GZIPInputStream(in) : in));
+	}
+
+	private static void writeLog(DataOutputStream out, long time, String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+
+		out.writeLong(time);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readValue(DataInputStream in) throws IOException {
+		int length = in.readInt();
+
+		if(length < 0 || length > MAX_LOG_LENGTH)
+			throw new IOException("Damaged player log, a log of " + length + " bytes was found");
+
+		byte[] bytes = new byte[length];
+
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * A single segment file of a player's logger.
+	 *
+	 * @author Sommod
+	 * @version 1.0
+	 *
+	 */
+	private static class Segment {
+
+		private final File file;
+		private final long start;
+		private final int count;
+		private final boolean closed;
+
+		private Segment(File file, long start, int count) {
+			this.file = file;
+			this.start = start;
+			this.count = count;
+			closed = count >= 0;
+		}
+	}
+}
@@ -27,6 +27,9 @@ public class PlayerMail {
 	private String dateTime;
 	private String message;
 	
+	// Player data this mail belongs to, used to mark the mail section as changed
+	PlayerConfig owner;
+	
 	// Used just for the Static Method 'loadFromConfig'
 	private PlayerMail() { }
 	
@@ -42,7 +45,7 @@ public class PlayerMail {
 	public PlayerMail(int id, OfflinePlayer sender, String message) {
 		this.id = id;
 		this.sender = sender;
-		senderID = senderID == null ? null : sender.getUniqueId();
+		senderID = sender == null ? null : sender.getUniqueId();
 		timeStamp = System.currentTimeMillis();
 		dateTime = new SimpleDateFormat("dd MMM YYYY kk:mm:ss").format(new Date(timeStamp));
 		unread = true;
@@ -74,6 +77,31 @@ public class PlayerMail {
 		return m;
 	}
 	
+	/**
+	 * Creates the mail object from data that has already been split into it's values, such as from a
+	 * binary player data file.
+	 * 
+	 * @param id - ID of the mail
+	 * @param senderID - UUID of the sender, NULL if console
+	 * @param timeStamp - Time the mail was sent
+	 * @param unread - If the mail has not been read
+	 * @param message - Message of the mail
+	 * @return {@link PlayerMail} object of the mail data
+	 */
+	static PlayerMail loadFromData(int id, UUID senderID, long timeStamp, boolean unread, String message) {
+		PlayerMail m = new PlayerMail();
+		
+		m.id = id;
+		m.senderID = senderID;
+		m.sender = senderID == null ? null : Bukkit.getServer().getOfflinePlayer(senderID);
+		m.timeStamp = timeStamp;
+		m.dateTime = new SimpleDateFormat("dd MMM YYYY kk:mm:ss").format(new Date(timeStamp));
+		m.unread = unread;
+		m.message = message;
+		
+		return m;
+	}
+	
 	/**
 	 * Simple method to concatenate the correct strings and id together to get the corresponding path to the
 	 * mail data.
@@ -144,6 +172,24 @@ public class PlayerMail {
 	public boolean isUnread() {
 		return unread;
 	}
+	
+	/**
+	 * Sets whether or not this mail has been read by the player it was sent to.
+	 * 
+	 * @param unread - True if the mail should be shown as unread
+	 */
+	public void setUnread(boolean unread) {
+		if(this.unread == unread)
+			return;
+		
+		this.unread = unread;
+		
+		if(owner != null)
+			owner.changed(PlayerConfig.DataSection.MAIL, PlayerJournal.Mutation.MAIL_READ, out -> {
+				out.writeInt(id);
+				out.writeBoolean(unread);
+			});
+	}
 
 	/**
 	 * The message that the player (or console) sent. Note that this can contain special characters (such as & or §). These
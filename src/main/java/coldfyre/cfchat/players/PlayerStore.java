@@ -0,0 +1,135 @@
+package coldfyre.cfchat.players;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.UUID;
+
+import org.bukkit.OfflinePlayer;
+
+/**
+ * Storage of the player data. This is where the {@link PlayerConfig} objects are read from and written
+ * to, the format of the stored data is left to the implementation. All methods may be called from any
+ * thread; writing of a single player is done while holding the lock of their PlayerConfig.
+ *
+ * @author Sommod
+ * @version 1.0
+ *
+ */
+public interface PlayerStore {
+
+	/**
+	 * Gets the name of this storage type, as used within the config.
+	 *
+	 * @return Name of storage type
+	 */
+	String getName();
+
+	/**
+	 * Loads the data of the player. If the player does not have any stored data, then new
+	 * data is created for them.
+	 *
+	 * @param player - Player to load
+	 * @return PlayerConfig of the player
+	 */
+	PlayerConfig load(OfflinePlayer player);
+
+	/**
+	 * Writes ALL the data of the player, regardless if it has changed or not.
+	 *
+	 * @param config - Player data to write
+	 */
+	void save(PlayerConfig config);
+
+	/**
+	 * Writes the data of the player only if it has changed since it was last written.
+	 *
+	 * @param config - Player data to write
+	 * @return True - if the data was written
+	 */
+	boolean saveChanges(PlayerConfig config);
+
+	/**
+	 * Checks if the player has any data stored.
+	 *
+	 * @param id - UUID of player
+	 * @return True - if data is stored
+	 */
+	boolean contains(UUID id);
+
+	/**
+	 * Gets the UUID's of all players with stored data.
+	 *
+	 * @return Collection of player UUID's
+	 */
+	Collection<UUID> getStoredPlayers();
+
+	/**
+	 * Closes any files held open by this storage. The storage can still be used after, in which
+	 * case the files are opened again.
+	 */
+	default void close() { }
+
+	/**
+	 * Forces all data written by this storage onto the disk. Until this returns, written data may only be held
+	 * in memory by the system, and could be lost should the system stop.
+	 *
+	 * @throws IOException If the data could not be synced
+	 */
+	default void sync() throws IOException { }
+
+	/**
+	 * Writes the data into the file by first writing a temporary file and then moving it over
+	 * the original. This ensures the file is never left half-written. The temporary file is synced
+	 * before it is moved; the move itself is synced by {@link #syncFolder(File)}.
+	 *
+	 * @param file - File to write
+	 * @param data - Data to write
+	 * @throws IOException If the data could not be written
+	 */
+	static void writeFile(File file, byte[] data) throws IOException {
+		File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+		ByteBuffer buffer = ByteBuffer.wrap(data);
+
+		try(FileChannel out = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			while(buffer.hasRemaining())
+				out.write(buffer);
+
+			out.force(true);
+		}
+
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Forces the contents of the file onto the disk.
+	 *
+	 * @param file - File to sync
+	 * @throws IOException If the file could not be synced
+	 */
+	static void syncFile(File file) throws IOException {
+		try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+			channel.force(true);
+		}
+	}
+
+	/**
+	 * Forces the entries of the folder onto the disk, so files created or moved within it are kept
+	 * should the system stop. Not every system allows a folder to be synced, in which case nothing
+	 * is done.
+	 *
+	 * @param folder - Folder to sync
+	 */
+	static void syncFolder(File folder) {
+		try(FileChannel channel = FileChannel.open(folder.toPath(), StandardOpenOption.READ)) {
+			channel.force(true);
+		} catch (IOException e) {
+			// Folders can not be opened on some systems (such as Windows)
+		}
+	}
+}
@@ -0,0 +1,545 @@
+package coldfyre.cfchat.players;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.bukkit.Bukkit;
+import org.bukkit.OfflinePlayer;
+
+import com.coldfyre.api.manager.FilesManager;
+
+/**
+ * Storage of the player data that keeps all players within a fixed number of shard files rather than a file per
+ * player. The UUID of a player decides which shard they are in. Each shard starts with an index (a hash table of
+ * UUID to location of the data) that is memory mapped, followed by the player data encoded by {@link BinaryPlayerCodec}.
+ * Reading a player is a lookup within the mapped index followed by a single read of their data.</br></br>
+ *
+ * Data is never written over; saving a player appends their data to the end of the shard and points the index at it.
+ * The index is only pointed at the new data once it has been synced (see {@link #sync()}); until then the new locations
+ * are kept in memory, so the index on the disk never points at data that may not be there. Once a shard contains more
+ * old data than current data, or the index is getting full, the shard is compacted by copying only the current data of
+ * each player into a new file.</br></br>
+ *
+ * The number of shards is kept within the store file of the folder; as the shard of a player depends on it, a folder
+ * created with a different number of shards is not opened.</br></br>
+ *
+ * Layout of a shard:</br>
+ * <strong>Header</strong> - MAGIC, VERSION, SLOTS, USED, DATA_END, DEAD_BYTES</br>
+ * <strong>Index</strong> - SLOTS x (UUID_MOST, UUID_LEAST, OFFSET, LENGTH)</br>
+ * <strong>Data</strong> - (UUID_MOST, UUID_LEAST, LENGTH, DATA) ...
+ *
+ * @author Sommod
+ * @version 1.0
+ *
+ */
+public class ShardedPlayerStore implements PlayerStore {
+
+	public static final String NAME = "SHARDED";
+
+	// Store file, holding the number of shards
+	private static final String STORE_FILE = "store.dat";
+	private static final int STORE_MAGIC = 0x43465354;
+	private static final int STORE_VERSION = 1;
+
+	private File folder;
+	private Shard[] shards;
+
+	/**
+	 * Creates a new sharded storage for the player data. The number of shards can not be changed once
+	 * data has been stored, without moving the data into another storage and back.
+	 *
+	 * @param folder - Folder the shard files are kept in
+	 * @param shardCount - Number of shard files
+	 * @throws IllegalStateException If the folder was created with a different number of shards
+	 */
+	public ShardedPlayerStore(File folder, int shardCount) {
+		this.folder = folder;
+		shards = new Shard[Math.max(1, shardCount)];
+		folder.mkdirs();
+
+		try {
+			checkShardCount(new File(folder, STORE_FILE), shards.length);
+		} catch (IOException e) {
+			throw new IllegalStateException("Could not read the player shard store of " + folder.getName(), e);
+		}
+
+		for(int i = 0; i < shards.length; i++)
+			shards[i] = new Shard(new File(folder, String.format("shard-%03d.dat", i)));
+	}
+
+	@Override
+	public String getName() { return NAME; }
+
+	@Override
+	public PlayerConfig load(OfflinePlayer player) {
+		try {
+			byte[] data = getShard(player.getUniqueId()).read(player.getUniqueId());
+
+			return data == null ? new PlayerConfig(player) : BinaryPlayerCodec.decode(player, data);
+		} catch (IOException e) {
+			throw new IllegalStateException("Could not load player data of " + player.getUniqueId(), e);
+		}
+	}
+
+	@Override
+	public void save(PlayerConfig config) {
+		config.setDirty();
+		saveChanges(config);
+	}
+
+	@Override
+	public boolean saveChanges(PlayerConfig config) {
+		byte[] data;
+
+		synchronized(config) {
+			if(config.takeChanges().isEmpty())
+				return false;
+
+			try {
+				data = BinaryPlayerCodec.encode(config);
+			} catch (IOException e) {
+				config.setDirty();
+				FilesManager.LogException(e);
+				return false;
+			}
+		}
+
+		try {
+			getShard(config.getPlayerID()).write(config.getPlayerID(), data);
+			return true;
+		} catch (IOException e) {
+			config.setDirty();
+			FilesManager.LogException(e);
+			return false;
+		}
+	}
+
+	@Override
+	public boolean contains(UUID id) {
+		try {
+			return getShard(id).contains(id);
+		} catch (IOException e) {
+			FilesManager.LogException(e);
+			return false;
+		}
+	}
+
+	@Override
+	public Collection<UUID> getStoredPlayers() {
+		List<UUID> ret = new ArrayList<UUID>();
+
+		for(Shard shard : shards) {
+			try {
+				shard.collect(ret);
+			} catch (IOException e) {
+				FilesManager.LogException(e);
+			}
+		}
+
+		return ret;
+	}
+
+	@Override
+	public void close() {
+		for(Shard shard : shards)
+			shard.close();
+	}
+
+	@Override
+	public void sync() throws IOException {
+		for(Shard shard : shards)
+			shard.sync();
+
+		PlayerStore.syncFolder(folder);
+	}
+
+	/**
+	 * Gets the folder the shard files are kept in.
+	 *
+	 * @return Shard folder
+	 */
+	public File getFolder() { return folder; }
+
+	// Reads the number of shards the folder was created with, writing it if the folder is new. Players would be
+	// looked for within the wrong shard if the number were changed, so a different number is refused.
+	private static void checkShardCount(File file, int count) throws IOException {
+		if(file.exists()) {
+			ByteBuffer header = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+
+			if(header.remaining() < 12 || header.getInt() != STORE_MAGIC || header.getInt() != STORE_VERSION)
+				throw new IOException("Not a CFChat player shard store: " + file.getName());
+
+			int stored = header.getInt();
+
+			if(stored != count)
+				throw new IllegalStateException("The player data was stored within " + stored + " shards, but 'storage.shards' is set to " + count
+						+ ". Set it back to " + stored + ", or migrate the data into another storage type before changing it.");
+
+			return;
+		}
+
+		ByteBuffer header = ByteBuffer.allocate(12).putInt(STORE_MAGIC).putInt(STORE_VERSION).putInt(count);
+
+		try(FileChannel out = FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+			header.flip();
+
+			while(header.hasRemaining())
+				out.write(header);
+
+			out.force(true);
+		}
+	}
+
+	// Gets the shard the player belongs to
+	private Shard getShard(UUID id) { return shards[Math.floorMod(hash(id) >>> 32, shards.length)]; }
+
+	// Mixes the bits of the UUID, the upper bits decide the shard and the lower bits the index slot.
+	private static long hash(UUID id) {
+		long h = id.getMostSignificantBits() ^ id.getLeastSignificantBits();
+
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+
+		return h;
+	}
+
+	/**
+	 * A single shard file. All access to a shard is done while holding it's lock; the file is
+	 * opened on first use.
+	 *
+	 * @author Sommod
+	 * @version 1.0
+	 *
+	 */
+	private static class Shard {
+
+		private static final int MAGIC = 0x43465348;
+		private static final int VERSION = 1;
+		private static final int HEADER_SIZE = 32;
+		private static final int SLOT_SIZE = 32;
+		private static final int RECORD_HEADER_SIZE = 20;
+		private static final int INITIAL_SLOTS = 256;
+
+		// Shards with less old data than this are not compacted, regardless of the ratio
+		private static final long MIN_COMPACT_BYTES = 1L << 20;
+
+		private File file;
+		private FileChannel channel;
+		private MappedByteBuffer index;
+		private int slots;
+		private int used;
+		private long dataEnd;
+		private long deadBytes;
+
+		// Records written since the last sync, which the index does not point at yet; UUID to (OFFSET, LENGTH)
+		private Map<UUID, long[]> unsynced;
+
+		private Shard(File file) {
+			this.file = file;
+			unsynced = new HashMap<UUID, long[]>();
+		}
+
+		synchronized byte[] read(UUID id) throws IOException {
+			open();
+
+			long[] location = getLocation(id);
+
+			if(location == null)
+				return null;
+
+			byte[] data = new byte[(int) location[1]];
+
+			readFully(ByteBuffer.wrap(data), location[0] + RECORD_HEADER_SIZE);
+			return data;
+		}
+
+		synchronized void write(UUID id, byte[] data) throws IOException {
+			open();
+
+			long[] previous = getLocation(id);
+
+			// Only a new player takes another slot of the index
+			if(previous == null && used + 1 > slots * 3 / 4)
+				compact(slots * 2);
+
+			ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + data.length);
+			record.putLong(id.getMostSignificantBits()).putLong(id.getLeastSignificantBits()).putInt(data.length).put(data).flip();
+
+			long offset = dataEnd;
+			while(record.hasRemaining())
+				channel.write(record, offset + record.position());
+
+			if(previous != null)
+				deadBytes += RECORD_HEADER_SIZE + previous[1];
+			else
+				used++;
+
+			dataEnd += RECORD_HEADER_SIZE + data.length;
+			unsynced.put(id, new long[] {offset, data.length});
+
+			if(deadBytes > MIN_COMPACT_BYTES && deadBytes > dataEnd - dataStart(slots) - deadBytes)
+				compact(slots);
+		}
+
+		synchronized boolean contains(UUID id) throws IOException {
+			open();
+			return getLocation(id) != null;
+		}
+
+		synchronized void collect(List<UUID> ids) throws IOException {
+			open();
+
+			for(int i = 0; i < slots; i++) {
+				if(index.getLong(slotPosition(i) + 16) != 0L)
+					ids.add(new UUID(index.getLong(slotPosition(i)), index.getLong(slotPosition(i) + 8)));
+			}
+
+			for(UUID id : unsynced.keySet()) {
+				if(find(id) < 0)
+					ids.add(id);
+			}
+		}
+
+		synchronized void sync() throws IOException {
+			if(channel != null)
+				commit();
+		}
+
+		synchronized void close() {
+			if(channel == null)
+				return;
+
+			try {
+				commit();
+				unmap(index);
+				channel.close();
+			} catch (IOException e) {
+				FilesManager.LogException(e);
+			}
+
+			channel = null;
+			index = null;
+		}
+
+		// Syncs the written records, then points the index at them and syncs the index. The data is synced before the
+		// index is changed, so the index never points at data that is not on the disk.
+		private void commit() throws IOException {
+			channel.force(false);
+
+			for(Map.Entry<UUID, long[]> entry : unsynced.entrySet()) {
+				int slot = find(entry.getKey());
+
+				setSlot(index, slot < 0 ? -slot - 1 : slot, entry.getKey(), entry.getValue()[0], (int) entry.getValue()[1]);
+			}
+
+			unsynced.clear();
+			writeHeader();
+			index.force();
+		}
+
+		// Gets the location (OFFSET, LENGTH) of the player's current record, or NULL if they have none
+		private long[] getLocation(UUID id) {
+			long[] location = unsynced.get(id);
+
+			if(location != null)
+				return location;
+
+			int slot = find(id);
+
+			return slot < 0 ? null : new long[] {index.getLong(slotPosition(slot) + 16), index.getInt(slotPosition(slot) + 24)};
+		}
+
+		// Opens the shard file, creating it with an empty index if it does not exist
+		private void open() throws IOException {
+			if(channel != null)
+				return;
+
+			boolean create = !file.exists() || file.length() < HEADER_SIZE;
+
+			channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+			if(create) {
+				slots = INITIAL_SLOTS;
+				used = 0;
+				dataEnd = dataStart(slots);
+				deadBytes = 0L;
+				index = channel.map(FileChannel.MapMode.READ_WRITE, 0, dataStart(slots));
+				writeHeader();
+				return;
+			}
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			readFully(header, 0);
+			header.flip();
+
+			if(header.getInt() != MAGIC || header.getInt() != VERSION) {
+				channel.close();
+				channel = null;
+				throw new IOException("Not a CFChat player shard: " + file.getName());
+			}
+
+			slots = header.getInt();
+			used = header.getInt();
+			dataEnd = header.getLong();
+			deadBytes = header.getLong();
+			index = channel.map(FileChannel.MapMode.READ_WRITE, 0, dataStart(slots));
+		}
+
+		// Finds the slot of the player. If the player is not within the index, then
+		// (-slot - 1) of the empty slot the player would be placed in is returned.
+		private int find(UUID id) { return find(index, slots, id); }
+
+		private static int find(MappedByteBuffer index, int slots, UUID id) {
+			int slot = (int) hash(id) & (slots - 1);
+
+			while(true) {
+				int pos = slotPosition(slot);
+
+				if(index.getLong(pos + 16) == 0L)
+					return -slot - 1;
+
+				if(index.getLong(pos) == id.getMostSignificantBits() && index.getLong(pos + 8) == id.getLeastSignificantBits())
+					return slot;
+
+				slot = (slot + 1) & (slots - 1);
+			}
+		}
+
+		// Copies the current data of every player into a new shard file with the given number of slots, then
+		// replaces this shard with it.
+		private void compact(int newSlots) throws IOException {
+			commit();
+
+			File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+			long newEnd = dataStart(newSlots);
+			int newUsed = 0;
+
+			try(FileChannel out = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+				MappedByteBuffer newIndex = out.map(FileChannel.MapMode.READ_WRITE, 0, dataStart(newSlots));
+
+				for(int i = 0; i < slots; i++) {
+					long offset = index.getLong(slotPosition(i) + 16);
+
+					if(offset == 0L)
+						continue;
+
+					UUID id = new UUID(index.getLong(slotPosition(i)), index.getLong(slotPosition(i) + 8));
+					int length = index.getInt(slotPosition(i) + 24);
+
+					transfer(out, offset, newEnd, RECORD_HEADER_SIZE + length);
+					setSlot(newIndex, -find(newIndex, newSlots, id) - 1, id, newEnd, length);
+
+					newEnd += RECORD_HEADER_SIZE + length;
+					newUsed++;
+				}
+
+				newIndex.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, newSlots).putInt(12, newUsed).putLong(16, newEnd).putLong(24, 0L);
+				out.force(false);
+				newIndex.force();
+				unmap(newIndex);
+			}
+
+			// Both files are unmapped first; a mapped file can not be replaced on some systems
+			close();
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			open();
+		}
+
+		// Copies the bytes of this shard into the given channel
+		private void transfer(FileChannel out, long from, long to, long count) throws IOException {
+			long done = 0L;
+
+			out.position(to);
+
+			while(done < count)
+				done += channel.transferTo(from + done, count - done, out);
+		}
+
+		private void writeHeader() {
+			index.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, slots).putInt(12, used).putLong(16, dataEnd).putLong(24, deadBytes);
+		}
+
+		private void readFully(ByteBuffer buffer, long position) throws IOException {
+			while(buffer.hasRemaining()) {
+				if(channel.read(buffer, position + buffer.position()) < 0)
+					throw new IOException("Unexpected end of player shard: " + file.getName());
+			}
+		}
+
+		private static void setSlot(MappedByteBuffer index, int slot, UUID id, long offset, int length) {
+			int pos = slotPosition(slot);
+
+			index.putLong(pos, id.getMostSignificantBits()).putLong(pos + 8, id.getLeastSignificantBits()).putLong(pos + 16, offset).putInt(pos + 24, length);
+		}
+
+		// Releases the mapping of the buffer straight away, rather than once it is garbage collected. The buffer
+		// must not be used afterwards. Does nothing if the JVM does not allow it (see Unmapper).
+		private static void unmap(MappedByteBuffer buffer) { Unmapper.unmap(buffer); }
+
+		private static int slotPosition(int slot) { return HEADER_SIZE + slot * SLOT_SIZE; }
+
+		private static long dataStart(int slots) { return HEADER_SIZE + (long) slots * SLOT_SIZE; }
+	}
+
+	/**
+	 * Releases the mapping of a file straight away, through the cleaner of the JVM. This uses an internal method of
+	 * the JVM, so it is looked up once and may not be available; in that case the mapping is only released once the
+	 * buffer is garbage collected, and shards are still replaced while mapped, which some systems (such as Windows)
+	 * do not allow.
+	 *
+	 * @author Sommod
+	 * @version 1.0
+	 *
+	 */
+	private static class Unmapper {
+
+		private static final Object UNSAFE;
+		private static final Method INVOKE_CLEANER;
+
+		static {
+			Object unsafe = null;
+			Method invokeCleaner = null;
+
+			try {
+				Field field = Class.forName("sun.misc.Unsafe").getDeclaredField("theUnsafe");
+
+				field.setAccessible(true);
+				unsafe = field.get(null);
+				invokeCleaner = unsafe.getClass().getMethod("invokeCleaner", ByteBuffer.class);
+			} catch (ReflectiveOperationException | RuntimeException e) {
+				Bukkit.getLogger().warning("[CFChat] Memory mapped player shards can not be released by this JVM (" + e + "); they are released once garbage collected.");
+			}
+
+			UNSAFE = unsafe;
+			INVOKE_CLEANER = invokeCleaner;
+		}
+
+		private static void unmap(MappedByteBuffer buffer) {
+			if(INVOKE_CLEANER == null)
+				return;
+
+			try {
+				INVOKE_CLEANER.invoke(UNSAFE, buffer);
+			} catch (ReflectiveOperationException | RuntimeException e) {
+				FilesManager.LogException(e);
+			}
+		}
+	}
+}
@@ -0,0 +1,178 @@
+package coldfyre.cfchat.players;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * An unchangeable set of UUID's, kept as pairs of longs rather than UUID objects. Each UUID is found through a table of
+ * positions placed by the hash of the UUID (open addressing), so checking a UUID is a hash and a compare of two longs.
+ * Adding or removing a UUID creates a new set; as ignore lists are read on every chat message but rarely changed, the
+ * set can be shared and read by any thread without locking.</br></br>
+ *
+ * UUID's are kept (and iterated) in the order they were added.
+ *
+ * @author Sommod
+ * @version 1.0
+ *
+ */
+public final class UUIDSet implements Iterable<UUID> {
+
+	/**
+	 * A set without any UUID's.
+	 */
+	public static final UUIDSet EMPTY = new UUIDSet(new long[0], 0);
+
+	// Most and least bits of each UUID, one after another
+	private final long[] keys;
+	private final int size;
+
+	// Position + 1 of each slot, 0 being an empty slot
+	private final int[] table;
+	private final int mask;
+
+	private UUIDSet(long[] keys, int size) {
+		this.keys = keys;
+		this.size = size;
+
+		int capacity = Integer.highestOneBit(Math.max(2, size * 2) - 1) << 1;
+
+		table = new int[capacity];
+		mask = capacity - 1;
+
+		for(int i = 0; i < size; i++) {
+			int slot = hash(keys[i * 2], keys[i * 2 + 1]) & mask;
+
+			while(table[slot] != 0)
+				slot = (slot + 1) & mask;
+
+			table[slot] = i + 1;
+		}
+	}
+
+	/**
+	 * Creates a set of the given UUID's. Duplicates are ignored.
+	 *
+	 * @param ids - UUID's of the set
+	 * @return UUIDSet
+	 */
+	public static UUIDSet of(Collection<UUID> ids) {
+		Set<UUID> distinct = new LinkedHashSet<UUID>(ids);
+		long[] keys = new long[distinct.size() * 2];
+		int i = 0;
+
+		for(UUID id : distinct) {
+			keys[i++] = id.getMostSignificantBits();
+			keys[i++] = id.getLeastSignificantBits();
+		}
+
+		return new UUIDSet(keys, distinct.size());
+	}
+
+	/**
+	 * Checks if the UUID is within this set.
+	 *
+	 * @param id - UUID to check
+	 * @return True - if found
+	 */
+	public boolean contains(UUID id) { return indexOf(id.getMostSignificantBits(), id.getLeastSignificantBits()) >= 0; }
+
+	/**
+	 * Creates a set with the given UUID added.
+	 *
+	 * @param id - UUID to add
+	 * @return New set, or this set if the UUID is already within it
+	 */
+	public UUIDSet with(UUID id) {
+		if(contains(id))
+			return this;
+
+		long[] updated = Arrays.copyOf(keys, size * 2 + 2);
+
+		updated[size * 2] = id.getMostSignificantBits();
+		updated[size * 2 + 1] = id.getLeastSignificantBits();
+		return new UUIDSet(updated, size + 1);
+	}
+
+	/**
+	 * Creates a set with the given UUID removed.
+	 *
+	 * @param id - UUID to remove
+	 * @return New set, or this set if the UUID is not within it
+	 */
+	public UUIDSet without(UUID id) {
+		int index = indexOf(id.getMostSignificantBits(), id.getLeastSignificantBits());
+
+		if(index < 0)
+			return this;
+
+		long[] updated = new long[size * 2 - 2];
+
+		System.arraycopy(keys, 0, updated, 0, index * 2);
+		System.arraycopy(keys, index * 2 + 2, updated, index * 2, (size - index - 1) * 2);
+		return new UUIDSet(updated, size - 1);
+	}
+
+	/**
+	 * Gets the number of UUID's within this set.
+	 *
+	 * @return Size of set
+	 */
+	public int size() { return size; }
+
+	/**
+	 * Checks if this set has no UUID's.
+	 *
+	 * @return True - if empty
+	 */
+	public boolean isEmpty() { return size == 0; }
+
+	/**
+	 * Gets the UUID at the given position, in the order they were added.
+	 *
+	 * @param index - Position of UUID
+	 * @return UUID
+	 */
+	public UUID get(int index) { return new UUID(keys[index * 2], keys[index * 2 + 1]); }
+
+	@Override
+	public Iterator<UUID> iterator() {
+		return new Iterator<UUID>() {
+			private int next;
+
+			@Override
+			public boolean hasNext() { return next < size; }
+
+			@Override
+			public UUID next() {
+				if(next >= size)
+					throw new NoSuchElementException();
+
+				return get(next++);
+			}
+		};
+	}
+
+	// Position of the UUID within the keys, or -1 if not found
+	private int indexOf(long most, long least) {
+		for(int slot = hash(most, least) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+			int index = table[slot] - 1;
+
+			if(keys[index * 2] == most && keys[index * 2 + 1] == least)
+				return index;
+		}
+
+		return -1;
+	}
+
+	private static int hash(long most, long least) {
+		long key = most * 0x9E3779B97F4A7C15L ^ least;
+
+		key = (key ^ (key >>> 33)) * 0xFF51AFD7ED558CCDL;
+		return (int) (key ^ (key >>> 32));
+	}
+}
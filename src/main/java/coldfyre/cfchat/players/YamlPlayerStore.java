@@ -0,0 +1,120 @@
+package coldfyre.cfchat.players;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+import org.bukkit.OfflinePlayer;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import com.coldfyre.api.manager.FilesManager;
+
+/**
+ * Default storage of the player data. Each player has their own YAML file within the 'Player Data'
+ * folder, named after their UUID. New files are created from the default player file within the JAR.
+ *
+ * @author Sommod
+ * @version 1.0
+ *
+ */
+public class YamlPlayerStore implements PlayerStore {
+
+	public static final String NAME = "YAML";
+
+	private JavaPlugin plugin;
+	private FilesManager filesManager;
+
+	/**
+	 * Creates a new YAML storage for the player data.
+	 *
+	 * @param plugin - Plugin that holds the default player file
+	 * @param filesManager - FilesManager of plugin
+	 */
+	public YamlPlayerStore(JavaPlugin plugin, FilesManager filesManager) {
+		this.plugin = plugin;
+		this.filesManager = filesManager;
+	}
+
+	@Override
+	public String getName() { return NAME; }
+
+	@Override
+	public PlayerConfig load(OfflinePlayer player) {
+		return new PlayerConfig(player, YamlConfiguration.loadConfiguration(getPlayerFile(player.getUniqueId())));
+	}
+
+	@Override
+	public void save(PlayerConfig config) { config.save(getPlayerFile(config.getPlayerID())); }
+
+	@Override
+	public boolean saveChanges(PlayerConfig config) { return config.saveChanges(getPlayerFile(config.getPlayerID())); }
+
+	@Override
+	public void sync() { PlayerStore.syncFolder(new File(plugin.getDataFolder(), "Player Data")); }
+
+	@Override
+	public boolean contains(UUID id) { return new File(plugin.getDataFolder(), "Player Data/" + id.toString() + ".yml").exists(); }
+
+	@Override
+	public Collection<UUID> getStoredPlayers() {
+		List<UUID> ret = new ArrayList<UUID>();
+		File[] files = new File(plugin.getDataFolder(), "Player Data").listFiles((dir, name) -> name.endsWith(".yml"));
+
+		if(files == null)
+			return ret;
+
+		for(File f : files) {
+			try {
+				ret.add(UUID.fromString(f.getName().substring(0, f.getName().length() - 4)));
+			} catch (IllegalArgumentException e) {
+				// Not a player file
+			}
+		}
+
+		return ret;
+	}
+
+	// Used to load the data from the JAR default files into the
+	// systems file.
+	private void loadFirstTimeData(File file, InputStream is) {
+		String line;
+
+		try(BufferedReader reader = new BufferedReader(new InputStreamReader(is)); BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+			while((line = reader.readLine()) != null)
+				writer.write(line);
+		} catch (IOException e) {
+			FilesManager.LogException(e);
+		}
+	}
+
+	// Gets the file of the player, creating it from the default player file if it does not exist.
+	private File getPlayerFile(UUID id) {
+		String filesManagerName = "player_" + id.toString();
+
+		synchronized(filesManager) {
+			if(filesManager.addFile(filesManagerName, "Player Data/" + id.toString() + ".yml")) {
+				loadFirstTimeData(filesManager.getFile(filesManagerName), plugin.getClass().getResourceAsStream("default_player.yml"));
+
+				YamlConfiguration pConfig = YamlConfiguration.loadConfiguration(filesManager.getFile(filesManagerName));
+				pConfig.set("name", plugin.getServer().getOfflinePlayer(id).getName());
+
+				try {
+					pConfig.save(filesManager.getFile(filesManagerName));
+				} catch (IOException e) {
+					FilesManager.LogException(plugin, e);
+				}
+			}
+
+			return filesManager.getFile(filesManagerName);
+		}
+	}
+}
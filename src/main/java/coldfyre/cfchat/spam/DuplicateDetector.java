@@ -0,0 +1,287 @@
+package coldfyre.cfchat.spam;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import coldfyre.cfchat.configuration.ConfigMain;
+import coldfyre.cfchat.filter.TextNormalizer;
+
+/**
+ * Finds messages that are the same, or nearly the same, as messages sent shortly before; such as a player repeating a
+ * message with a few letters changed to get past the spam limit, or several players (bots) sending the same message.
+ * Each message is turned into a 64-bit SimHash of it's plain form (see {@link TextNormalizer}); messages that differ
+ * by only a few characters have fingerprints that differ by only a few bits, so two messages are near duplicates if
+ * the number of different bits is within the set distance (chat.spam.duplicates.distance).</br></br>
+ *
+ * The fingerprints of recent messages are kept in two windows of a fixed size:
+ * <ul>
+ * <li>The last few messages of each player. A message close to one of these is a repeat.</li>
+ * <li>The last messages of all players. A message close to messages from enough different other players
+ * (chat.spam.duplicates.players) is a flood.</li>
+ * </ul>
+ *
+ * Making a fingerprint reads the message once and uses a buffer kept by each thread, and both windows are scanned
+ * in a fixed number of steps, so the check can be made on every chat message. Only messages within the last
+ * seconds set (chat.spam.duplicates.seconds) are compared.
+ *
+ * @author Sommod
+ * @version 1.0
+ *
+ */
+public class DuplicateDetector {
+
+	/**
+	 * What the message was found to be.
+	 *
+	 * @author Sommod
+	 * @version 1.0
+	 *
+	 */
+	public enum Result {
+		/** The message is not a near duplicate. */
+		NONE,
+		/** The player recently sent a near duplicate of the message. */
+		REPEATED,
+		/** Other players recently sent near duplicates of the message. */
+		FLOODED;
+	}
+
+	// Number of messages kept for each player, and for all players
+	private static final int PLAYER_WINDOW = 8;
+	private static final int GLOBAL_WINDOW = 128;
+
+	// Messages with fewer letters than this are too short to fingerprint well
+	private static final int MIN_LETTERS = 8;
+
+	// Letters within each shingle of the fingerprint
+	private static final int SHINGLE = 3;
+
+	private static final ThreadLocal<int[]> WEIGHTS = ThreadLocal.withInitial(() -> new int[64]);
+
+	// Times are kept in seconds from this point
+	private final long origin;
+
+	private final Map<UUID, PlayerWindow> players;
+
+	// Fingerprint and (time, player) of each message of all players, written in a ring
+	private final AtomicLongArray globalPrints, globalInfo;
+	private final AtomicInteger globalNext;
+
+	private volatile Settings settings;
+
+	/**
+	 * Creates a new detector using the settings of the main config.
+	 *
+	 * @param config - Main Config
+	 */
+	public DuplicateDetector(ConfigMain config) {
+		origin = System.currentTimeMillis();
+		players = new ConcurrentHashMap<UUID, PlayerWindow>();
+		globalPrints = new AtomicLongArray(GLOBAL_WINDOW);
+		globalInfo = new AtomicLongArray(GLOBAL_WINDOW);
+		globalNext = new AtomicInteger();
+		reload(config);
+	}
+
+	/**
+	 * Sets the settings from the main config. Recent messages are kept.
+	 *
+	 * @param config - Main Config
+	 */
+	public void reload(ConfigMain config) { settings = new Settings(config); }
+
+	/**
+	 * Checks if the detection of near duplicate messages is enabled.
+	 *
+	 * @return True - if enabled
+	 */
+	public boolean isEnabled() { return settings.enabled; }
+
+	/**
+	 * Gets the message sent to a player whose message was a near duplicate.
+	 *
+	 * @return Response message, or NULL if none is set
+	 */
+	public String getResponse() { return settings.response; }
+
+	/**
+	 * Checks the message against the recent messages of the player and of all players, then adds it to both
+	 * windows.
+	 *
+	 * @param id - UUID of the player who sent the message
+	 * @param message - Message
+	 * @param now - Current time, in milliseconds
+	 * @return What the message was found to be
+	 */
+	public Result check(UUID id, String message, long now) {
+		long print = fingerprint(TextNormalizer.forThread().normalize(message));
+
+		if(print == 0)
+			return Result.NONE;
+
+		Settings settings = this.settings;
+		int second = (int) ((now - origin) / 1000L);
+		int player = id.hashCode() | 1;
+		PlayerWindow window = players.computeIfAbsent(id, key -> new PlayerWindow());
+
+		boolean repeated = window.add(print, second, settings);
+
+		// Other players that sent a close message; a player sending it several times is counted once
+		int[] others = null;
+		int count = 0;
+
+		for(int i = 0; i < GLOBAL_WINDOW; i++) {
+			long info = globalInfo.get(i);
+			long other = globalPrints.get(i);
+
+			// Skips empty slots, and slots being written (the info is cleared first, then set last)
+			if(info == 0 || info != globalInfo.get(i))
+				continue;
+
+			if((int) info != player && second - (int) (info >>> 32) <= settings.seconds && Long.bitCount(other ^ print) <= settings.distance) {
+				if(others == null)
+					others = new int[8];
+				else if(contains(others, count, (int) info))
+					continue;
+				else if(count == others.length)
+					others = Arrays.copyOf(others, count * 2);
+
+				others[count++] = (int) info;
+			}
+		}
+
+		int slot = (globalNext.getAndIncrement() & Integer.MAX_VALUE) % GLOBAL_WINDOW;
+
+		globalInfo.set(slot, 0);
+		globalPrints.set(slot, print);
+		globalInfo.set(slot, (long) second << 32 | (player & 0xFFFFFFFFL));
+
+		if(repeated)
+			return Result.REPEATED;
+
+		return settings.players > 1 && count + 1 >= settings.players ? Result.FLOODED : Result.NONE;
+	}
+
+	// Checks if the player is within the first values of the array
+	private static boolean contains(int[] players, int size, int player) {
+		for(int i = 0; i < size; i++) {
+			if(players[i] == player)
+				return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Removes the recent messages of the player, such as when they leave the server.
+	 *
+	 * @param id - UUID of player
+	 */
+	public void remove(UUID id) { players.remove(id); }
+
+	/**
+	 * Creates the 64-bit SimHash of the text. Each run of three letters or digits (spaces and symbols are
+	 * skipped) is hashed, and each bit of the result is set if that bit was set within more than half of the
+	 * hashes.
+	 *
+	 * @param text - Text, normally in it's plain form
+	 * @return Fingerprint, or 0 if the text is too short
+	 */
+	public static long fingerprint(CharSequence text) {
+		int[] weights = WEIGHTS.get();
+		long shingle = 0;
+		int letters = 0;
+
+		for(int i = 0; i < 64; i++)
+			weights[i] = 0;
+
+		for(int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+
+			if(!Character.isLetterOrDigit(c))
+				continue;
+
+			shingle = (shingle << 16 | c) & 0xFFFFFFFFFFFFL;
+
+			if(++letters < SHINGLE)
+				continue;
+
+			long hash = mix(shingle);
+
+			for(int bit = 0; bit < 64; bit++)
+				weights[bit] += (int) ((hash >>> bit) & 1) * 2 - 1;
+		}
+
+		if(letters < MIN_LETTERS)
+			return 0;
+
+		long print = 0;
+
+		for(int bit = 0; bit < 64; bit++) {
+			if(weights[bit] > 0)
+				print |= 1L << bit;
+		}
+
+		// 0 marks a message without a fingerprint
+		return print == 0 ? 1 : print;
+	}
+
+	private static long mix(long key) {
+		key = (key ^ (key >>> 33)) * 0xFF51AFD7ED558CCDL;
+		key = (key ^ (key >>> 33)) * 0xC4CEB9FE1A85EC53L;
+		return key ^ (key >>> 33);
+	}
+
+	/**
+	 * The settings read from the main config.
+	 *
+	 * @author Sommod
+	 * @version 1.0
+	 *
+	 */
+	private static class Settings {
+
+		private final boolean enabled;
+		private final int distance, seconds, players;
+		private final String response;
+
+		private Settings(ConfigMain config) {
+			enabled = config.isDuplicateFilterEnabled();
+			distance = Math.max(0, Math.min(64, config.getDuplicateDistance()));
+			seconds = Math.max(1, config.getDuplicateSeconds());
+			players = config.getDuplicatePlayers();
+			response = config.getDuplicateMessage();
+		}
+	}
+
+	/**
+	 * The recent messages of a single player, written in a ring.
+	 *
+	 * @author Sommod
+	 * @version 1.0
+	 *
+	 */
+	private static class PlayerWindow {
+
+		private final long[] prints = new long[PLAYER_WINDOW];
+		private final int[] times = new int[PLAYER_WINDOW];
+		private int next;
+
+		// Adds the message, returning true if a recent message was close to it
+		private synchronized boolean add(long print, int second, Settings settings) {
+			boolean found = false;
+
+			for(int i = 0; i < PLAYER_WINDOW && !found; i++)
+				found = prints[i] != 0 && second - times[i] <= settings.seconds && Long.bitCount(prints[i] ^ print) <= settings.distance;
+
+			prints[next] = print;
+			times[next] = second;
+			next = (next + 1) % PLAYER_WINDOW;
+			return found;
+		}
+	}
+}
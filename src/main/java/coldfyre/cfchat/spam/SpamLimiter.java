@@ -0,0 +1,390 @@
+package coldfyre.cfchat.spam;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.bukkit.scheduler.BukkitTask;
+
+import coldfyre.cfchat.CFChat;
+import coldfyre.cfchat.configuration.ConfigMain;
+
+/**
+ * Keeps track of how fast each player is chatting. Two limits are kept for each player:
+ * <ul>
+ * <li>A token bucket for the time between messages (chat.spam.message_interval). A token is gained every interval,
+ * up to the burst size (chat.spam.burst), and each message takes one. The bucket is held as the single time at which
+ * it will be full again, so taking a token is one compare-and-set.</li>
+ * <li>A sliding window counter of how often the player spammed, for the auto-warn limit (warn.spam.spam_limit within
+ * warn.spam.spam_timer). The count of the current and previous window, along with the start of the current window,
+ * are packed into a single long.</li>
+ * </ul>
+ *
+ * The state is held within an open addressing table keyed by the two longs of the player's UUID, rather than a map of
+ * objects. Players are added by claiming an empty slot with a compare-and-set and all updates are compare-and-set
+ * loops, so the chat threads of the players never take a lock.</br></br>
+ *
+ * A task sweeps the table once in a while, marking the slots of players that have been idle long enough to be within
+ * their limits again as dead. Dead slots are not reused; instead, once there are too many, the sweep copies the live
+ * players into a new table sized to them, so the memory used follows the number of players actually chatting. Should
+ * the table fill up before the next sweep, then it is doubled right away. A message counted on the old table while it
+ * is being copied may be forgotten, which at most lets one extra message through.
+ *
+ * @author Sommod
+ * @version 1.0
+ *
+ */
+public class SpamLimiter implements Runnable {
+
+	// States of a slot
+	private static final int EMPTY = 0, BUSY = 1, FULL = 2, DEAD = 3;
+
+	private static final int MIN_CAPACITY = 256;
+
+	// Ticks between each sweep of the table
+	private static final long SWEEP_TICKS = 400L;
+
+	// Layout of the packed window counter
+	private static final int COUNT_BITS = 16;
+	private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+	// Times are kept in seconds from this point, so they fit within the packed counter
+	private final long origin;
+
+	private volatile Table table;
+	private volatile Settings settings;
+	private BukkitTask task;
+
+	/**
+	 * Creates a new limiter using the settings of the main config.
+	 *
+	 * @param config - Main Config
+	 */
+	public SpamLimiter(ConfigMain config) {
+		origin = System.currentTimeMillis();
+		table = new Table(MIN_CAPACITY);
+		reload(config);
+	}
+
+	/**
+	 * Sets the limits from the main config. The state of each player is kept.
+	 *
+	 * @param config - Main Config
+	 */
+	public void reload(ConfigMain config) { settings = new Settings(config); }
+
+	/**
+	 * Starts the task that sweeps idle players from the table. If the task is already running, then it is
+	 * restarted.
+	 *
+	 * @param plugin - Plugin to run the task under
+	 */
+	public void start(CFChat plugin) {
+		stop();
+		task = plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin, this, SWEEP_TICKS, SWEEP_TICKS);
+	}
+
+	/**
+	 * Stops the sweeping task.
+	 */
+	public void stop() {
+		if(task != null)
+			task.cancel();
+
+		task = null;
+	}
+
+	/**
+	 * Checks if the spam limit of messages is enabled.
+	 *
+	 * @return True - if enabled
+	 */
+	public boolean isEnabled() { return settings.enabled; }
+
+	/**
+	 * Checks if players are warned once they reach the spam limit; both the warning system and the
+	 * auto-warning system must be enabled.
+	 *
+	 * @return True - if enabled
+	 */
+	public boolean isAutoWarnEnabled() { return settings.autoWarn; }
+
+	/**
+	 * Gets the message sent to a player that is sending messages too quickly. The '%time%' within the message
+	 * is to be replaced with the seconds left.
+	 *
+	 * @return Response message, or NULL if none is set
+	 */
+	public String getResponse() { return settings.response; }
+
+	/**
+	 * Takes a token from the player's bucket for a new message. If the bucket is empty, then the message
+	 * should not be sent; should the timer reset (chat.spam.reset_timer), then the player must wait a full
+	 * interval again.
+	 *
+	 * @param id - UUID of player
+	 * @param now - Current time, in milliseconds
+	 * @return 0 if the message may be sent, otherwise the milliseconds until it may be
+	 */
+	public long acquire(UUID id, long now) {
+		Settings settings = this.settings;
+		Table table;
+		int slot;
+
+		while((slot = (table = this.table).find(id.getMostSignificantBits(), id.getLeastSignificantBits())) < 0)
+			grow(table);
+
+		long interval = settings.interval, tolerance = settings.interval * (settings.burst - 1);
+		int index = slot * 2;
+
+		for(;;) {
+			long full = table.state.get(index);
+
+			if(now >= full - tolerance) {
+				if(table.state.compareAndSet(index, full, Math.max(full, now) + interval))
+					return 0;
+
+				continue;
+			}
+
+			if(!settings.resetTimer)
+				return full - tolerance - now;
+
+			if(table.state.compareAndSet(index, full, Math.max(full, now + interval + tolerance)))
+				return interval;
+		}
+	}
+
+	/**
+	 * Counts a spam attempt of the player, such as a message sent too quickly. Once the player reaches the
+	 * spam limit within the spam timer, the count is cleared and true is returned, meaning the player should
+	 * be warned. Whether the warning system is enabled is not checked.
+	 *
+	 * @param id - UUID of player
+	 * @param now - Current time, in milliseconds
+	 * @return True - if the spam limit was reached
+	 */
+	public boolean recordSpam(UUID id, long now) {
+		Settings settings = this.settings;
+
+		if(settings.spamLimit <= 0)
+			return false;
+
+		Table table;
+		int slot;
+
+		while((slot = (table = this.table).find(id.getMostSignificantBits(), id.getLeastSignificantBits())) < 0)
+			grow(table);
+
+		int index = slot * 2 + 1;
+		long second = (now - origin) / 1000L, window = settings.spamTimer;
+
+		for(;;) {
+			long packed = table.state.get(index);
+			long start = packed >>> (COUNT_BITS * 2), previous = (packed >>> COUNT_BITS) & COUNT_MASK, current = packed & COUNT_MASK;
+			long count;
+
+			if(settings.spamTimerReset) {
+				// The timer starts over with each attempt, so only attempts close to each other are counted
+				if(second - start > window)
+					current = 0;
+
+				start = second;
+				previous = 0;
+				count = current + 1;
+			} else {
+				long windowStart = second - second % window;
+
+				if(windowStart - start >= window * 2)
+					previous = current = 0;
+				else if(windowStart != start) {
+					previous = current;
+					current = 0;
+				}
+
+				start = windowStart;
+				count = current + 1 + previous * (window - (second - windowStart)) / window;
+			}
+
+			boolean reached = count >= settings.spamLimit;
+			long next = reached ? 0 : pack(start, previous, Math.min(COUNT_MASK, current + 1));
+
+			if(table.state.compareAndSet(index, packed, next))
+				return reached;
+		}
+	}
+
+	/**
+	 * Gets the number of players currently held within the table.
+	 *
+	 * @return Number of players
+	 */
+	public int size() { return table.count(FULL); }
+
+	@Override
+	public void run() { sweep(System.currentTimeMillis()); }
+
+	// Marks the idle players as dead, and replaces the table once too many slots are dead or in use
+	void sweep(long now) {
+		Settings settings = this.settings;
+		Table table = this.table;
+		long second = (now - origin) / 1000L;
+		int live = 0, dead = 0;
+
+		for(int i = 0; i < table.capacity; i++) {
+			int status = table.status.get(i);
+
+			if(status == FULL && isIdle(settings, table, i, now, second) && table.status.compareAndSet(i, FULL, DEAD))
+				status = DEAD;
+
+			if(status == FULL || status == BUSY)
+				live++;
+			else if(status == DEAD)
+				dead++;
+		}
+
+		int capacity = Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(1, live * 4) - 1) << 1);
+
+		if(live + dead > table.capacity / 2 || capacity < table.capacity) {
+			synchronized(this) {
+				if(this.table == table)
+					this.table = table.copy(capacity);
+			}
+		}
+	}
+
+	// Doubles the size of a full table, unless another thread has already replaced it
+	private synchronized void grow(Table full) {
+		if(table == full)
+			table = full.copy(full.capacity * 2);
+	}
+
+	// A player is idle once their bucket is full and no spam attempts are within the window
+	private static boolean isIdle(Settings settings, Table table, int slot, long now, long second) {
+		long packed = table.state.get(slot * 2 + 1);
+
+		return table.state.get(slot * 2) <= now && (packed == 0 || second - (packed >>> (COUNT_BITS * 2)) > settings.spamTimer * 2);
+	}
+
+	private static long pack(long start, long previous, long current) { return start << (COUNT_BITS * 2) | previous << COUNT_BITS | current; }
+
+	/**
+	 * The limits read from the main config.
+	 *
+	 * @author Sommod
+	 * @version 1.0
+	 *
+	 */
+	private static class Settings {
+
+		private final boolean enabled, resetTimer, spamTimerReset, autoWarn;
+		private final long interval, spamTimer;
+		private final int burst, spamLimit;
+		private final String response;
+
+		private Settings(ConfigMain config) {
+			enabled = config.isSpamFilterEnabled();
+			autoWarn = config.isWarnSystemEnabled() && config.isAutoWarnEnabled();
+			response = config.getSpamMessage();
+			resetTimer = config.isSpamResetTimer();
+			interval = Math.max(0, config.getSpamMessageInterval()) * 1000L;
+			burst = Math.max(1, config.getSpamBurst());
+			spamLimit = config.getSpamLimit();
+			spamTimer = Math.max(1, config.getSpamTimer());
+			spamTimerReset = config.isSpamTimerReset();
+		}
+	}
+
+	/**
+	 * Open addressing table of the players. Each slot holds the status of the slot, the two longs of the
+	 * UUID and two longs of state; the time the bucket is full and the packed window counter.
+	 *
+	 * @author Sommod
+	 * @version 1.0
+	 *
+	 */
+	private static class Table {
+
+		private final int capacity, mask;
+		private final AtomicIntegerArray status;
+		private final long[] keys;
+		private final AtomicLongArray state;
+
+		private Table(int capacity) {
+			this.capacity = capacity;
+			mask = capacity - 1;
+			status = new AtomicIntegerArray(capacity);
+			keys = new long[capacity * 2];
+			state = new AtomicLongArray(capacity * 2);
+		}
+
+		// Finds the slot of the player, claiming an empty slot if not found. Returns -1 if the table is full.
+		// The key is written before the slot is marked as full, so it is seen by any thread that sees the status.
+		private int find(long most, long least) {
+			int slot = mix(most ^ least) & mask;
+
+			for(int probes = 0; probes < capacity;) {
+				int current = status.get(slot);
+
+				if(current == EMPTY) {
+					if(!status.compareAndSet(slot, EMPTY, BUSY))
+						continue;
+
+					keys[slot * 2] = most;
+					keys[slot * 2 + 1] = least;
+					status.set(slot, FULL);
+					return slot;
+				}
+
+				while(current == BUSY) {
+					Thread.onSpinWait();
+					current = status.get(slot);
+				}
+
+				if(current == FULL && keys[slot * 2] == most && keys[slot * 2 + 1] == least)
+					return slot;
+
+				slot = (slot + 1) & mask;
+				probes++;
+			}
+
+			return -1;
+		}
+
+		// Creates a table of the given size holding the live players of this table
+		private Table copy(int size) {
+			Table table = new Table(size);
+
+			for(int i = 0; i < capacity; i++) {
+				if(status.get(i) != FULL)
+					continue;
+
+				int slot = table.find(keys[i * 2], keys[i * 2 + 1]);
+
+				if(slot < 0)
+					break;
+
+				table.state.set(slot * 2, state.get(i * 2));
+				table.state.set(slot * 2 + 1, state.get(i * 2 + 1));
+			}
+
+			return table;
+		}
+
+		private int count(int wanted) {
+			int count = 0;
+
+			for(int i = 0; i < capacity; i++) {
+				if(status.get(i) == wanted)
+					count++;
+			}
+
+			return count;
+		}
+
+		private static int mix(long key) {
+			key = (key ^ (key >>> 33)) * 0xFF51AFD7ED558CCDL;
+			return (int) (key ^ (key >>> 33));
+		}
+	}
+}
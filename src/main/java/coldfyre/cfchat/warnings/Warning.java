@@ -61,6 +61,26 @@ public class Warning {
 		return w;
 	}
 	
+	/**
+	 * Used to load a warning from data that has already been split into it's values, such as
+	 * from a binary player data file.
+	 * 
+	 * @param timeStamp - Time of the warning
+	 * @param warner - UUID of the issuer, NULL if console
+	 * @param reason - Reason of warning
+	 * @return Warning
+	 */
+	public static Warning loadFromData(long timeStamp, UUID warner, String reason) {
+		Warning w = new Warning();
+		
+		w.timeStamp = timeStamp;
+		w.timeStampString = new SimpleDateFormat("dd MMM YYYY kk:mm:ss").format(new Date(timeStamp));
+		w.warner = warner == null ? null : Bukkit.getServer().getOfflinePlayer(warner);
+		w.reason = reason.replaceAll("§", "_CFUNIQUE_");
+		
+		return w;
+	}
+	
 	/**
 	 * Gets the reason for the warning.
 	 * 